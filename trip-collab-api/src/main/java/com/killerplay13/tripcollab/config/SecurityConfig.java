@@ -1,14 +1,22 @@
 package com.killerplay13.tripcollab.config;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 import com.killerplay13.tripcollab.repo.TripMemberRepository;
 import com.killerplay13.tripcollab.repo.TripRepository;
-import com.killerplay13.tripcollab.security.MemberTokenFilter;
-import com.killerplay13.tripcollab.security.TripTokenFilter;
+import com.killerplay13.tripcollab.security.AdminTokenGuard;
+import com.killerplay13.tripcollab.security.InviteTokenGuard;
+import com.killerplay13.tripcollab.security.MemberPrincipalCache;
+import com.killerplay13.tripcollab.security.MemberRevocationRegistry;
+import com.killerplay13.tripcollab.security.MemberTokenSigner;
+import com.killerplay13.tripcollab.security.TripAuthFilter;
+import com.killerplay13.tripcollab.service.MemberPresenceTracker;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
@@ -23,8 +31,7 @@ public class SecurityConfig {
   @Bean
   public SecurityFilterChain filterChain(
       HttpSecurity http,
-      TripTokenFilter tripTokenFilter,
-      MemberTokenFilter memberTokenFilter
+      TripAuthFilter tripAuthFilter
   ) throws Exception {
     http
       .csrf(csrf -> csrf.disable())
@@ -32,8 +39,7 @@ public class SecurityConfig {
       .authorizeHttpRequests(auth -> auth
         .anyRequest().permitAll()
       )
-      .addFilterBefore(tripTokenFilter, UsernamePasswordAuthenticationFilter.class)
-      .addFilterAfter(memberTokenFilter, TripTokenFilter.class)
+      .addFilterBefore(tripAuthFilter, UsernamePasswordAuthenticationFilter.class)
       .formLogin(form -> form.disable())
       .httpBasic(basic -> basic.disable());
 
@@ -41,20 +47,73 @@ public class SecurityConfig {
   }
 
   @Bean
-  public TripTokenFilter tripTokenFilter(TripRepository tripRepository) {
-    return new TripTokenFilter(tripRepository);
+  public TripAuthFilter tripAuthFilter(
+      InviteTokenGuard inviteTokenGuard,
+      TripMemberRepository tripMemberRepository,
+      MemberPrincipalCache memberPrincipalCache,
+      MemberTokenSigner memberTokenSigner,
+      MemberRevocationRegistry memberRevocationRegistry,
+      MemberPresenceTracker memberPresenceTracker
+  ) {
+    return new TripAuthFilter(
+        inviteTokenGuard,
+        tripMemberRepository,
+        memberPrincipalCache,
+        memberTokenSigner,
+        memberRevocationRegistry,
+        memberPresenceTracker
+    );
   }
 
   @Bean
-  public MemberTokenFilter memberTokenFilter(TripMemberRepository tripMemberRepository) {
-    return new MemberTokenFilter(tripMemberRepository);
+  public InviteTokenGuard inviteTokenGuard(
+      TripRepository tripRepository,
+      @Value("${tripcollab.auth.invite-guard.bucket-capacity:10}") int bucketCapacity,
+      @Value("${tripcollab.auth.invite-guard.refill-interval:6s}") Duration refillInterval,
+      @Value("${tripcollab.auth.invite-guard.negative-ttl:60s}") Duration negativeTtl,
+      @Value("${tripcollab.auth.invite-guard.positive-ttl:10s}") Duration positiveTtl,
+      @Value("${tripcollab.auth.invite-guard.max-entries:10000}") int maxEntries
+  ) {
+    return new InviteTokenGuard(tripRepository, bucketCapacity, refillInterval, negativeTtl, positiveTtl, maxEntries);
+  }
+
+  @Bean
+  public MemberPrincipalCache memberPrincipalCache(
+      @Value("${tripcollab.auth.principal-cache.max-size:10000}") int maxSize,
+      @Value("${tripcollab.auth.principal-cache.ttl:60s}") Duration ttl
+  ) {
+    return new MemberPrincipalCache(maxSize, ttl);
+  }
+
+  @Bean
+  public MemberTokenSigner memberTokenSigner(
+      @Value("${tripcollab.auth.member-token.secret:}") String secret
+  ) {
+    return new MemberTokenSigner(secret);
+  }
+
+  @Bean
+  public MemberRevocationRegistry memberRevocationRegistry(
+      TripMemberRepository tripMemberRepository,
+      MemberTokenSigner memberTokenSigner,
+      JdbcTemplate jdbcTemplate
+  ) {
+    return new MemberRevocationRegistry(tripMemberRepository, memberTokenSigner, jdbcTemplate);
+  }
+
+  @Bean
+  public AdminTokenGuard adminTokenGuard(
+      @Value("${tripcollab.admin.token:}") String token
+  ) {
+    return new AdminTokenGuard(token);
   }
 
   @Bean
   public CorsConfigurationSource corsConfigurationSource() {
     CorsConfiguration config = new CorsConfiguration();
     config.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-    config.setAllowedHeaders(List.of("Content-Type", "X-Trip-Token", "X-Member-Token"));
+    config.setAllowedHeaders(List.of("Content-Type", "X-Trip-Token", "X-Member-Token", "If-None-Match", "Idempotency-Key"));
+    config.setExposedHeaders(List.of("ETag", "Idempotent-Replayed"));
     config.setAllowCredentials(false);
 
     String rawOrigins = System.getenv("CORS_ALLOWED_ORIGINS");
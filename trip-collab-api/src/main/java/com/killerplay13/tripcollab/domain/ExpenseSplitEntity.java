@@ -34,6 +34,10 @@ public class ExpenseSplitEntity {
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
+    // maintained by the database (column default + set_updated_at trigger)
+    @Column(name = "updated_at", insertable = false, updatable = false)
+    private Instant updatedAt;
+
     @PrePersist
     void prePersist() {
         if (createdAt == null) createdAt = Instant.now();
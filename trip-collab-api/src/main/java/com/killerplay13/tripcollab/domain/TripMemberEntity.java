@@ -45,10 +45,15 @@ public class TripMemberEntity {
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
+    @Column(name = "token_epoch", nullable = false)
+    @Builder.Default
+    private Integer tokenEpoch = 0;
+
     @Column(name = "joined_at", nullable = false)
     private Instant joinedAt;
 
-    @Column(name = "last_seen_at")
+    // written only by MemberPresenceTracker's batched flush
+    @Column(name = "last_seen_at", insertable = false, updatable = false)
     private Instant lastSeenAt;
 
     @Column(name = "created_at", nullable = false)
@@ -65,6 +70,7 @@ public class TripMemberEntity {
         if (updatedAt == null) updatedAt = now;
         if (role == null || role.isBlank()) role = "member";
         if (isActive == null) isActive = true;
+        if (tokenEpoch == null) tokenEpoch = 0;
     }
 
     @PreUpdate
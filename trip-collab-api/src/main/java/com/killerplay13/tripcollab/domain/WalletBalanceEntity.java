@@ -46,6 +46,19 @@ public class WalletBalanceEntity {
     @Column(name = "balance", nullable = false, precision = 18, scale = 6)
     private BigDecimal balance;
 
+    // base-currency totals of this currency's ledger rows, maintained by the wallet command statements
+    @Column(name = "deposits_in_base", insertable = false, updatable = false, precision = 20, scale = 6)
+    private BigDecimal depositsInBase;
+
+    @Column(name = "withdrawals_out_base", insertable = false, updatable = false, precision = 20, scale = 6)
+    private BigDecimal withdrawalsOutBase;
+
+    @Column(name = "spent_out_base", insertable = false, updatable = false, precision = 20, scale = 6)
+    private BigDecimal spentOutBase;
+
+    @Column(name = "adjustments_net_base", insertable = false, updatable = false, precision = 20, scale = 6)
+    private BigDecimal adjustmentsNetBase;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
@@ -28,7 +28,7 @@ import java.util.UUID;
 @Table(
         name = "wallet_transactions",
         indexes = {
-                @Index(name = "idx_wallet_transactions_wallet_id_created_at", columnList = "wallet_id,created_at")
+                @Index(name = "idx_wallet_transactions_wallet_created_id", columnList = "wallet_id,created_at DESC,id DESC")
         }
 )
 public class WalletTransactionEntity {
@@ -0,0 +1,164 @@
+package com.killerplay13.tripcollab.error;
+
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Encodes the JSON error body shared by filters and controllers:
+ * {@code {"status":..,"error":..,"message":..,"path":..,"timestamp":..}}.
+ * The constant part per status is encoded once; bodies are built in pooled byte buffers.
+ */
+public final class ApiErrorWriter {
+
+  public static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+
+  // filled once during class initialization, which publishes every entry to all threads
+  private static final byte[][] HEADS = new byte[600][];
+  private static final byte[] PATH = ascii("\",\"path\":\"");
+  private static final byte[] TIMESTAMP = ascii("\",\"timestamp\":\"");
+  private static final byte[] TAIL = ascii("\"}");
+
+  private static final int POOL_MAX = 64;
+  private static final ConcurrentLinkedQueue<Buffer> POOL = new ConcurrentLinkedQueue<>();
+
+  static {
+    for (int status = 100; status < HEADS.length; status++) {
+      HEADS[status] = encodeHead(status);
+    }
+  }
+
+  public static void write(HttpServletResponse res, int status, String message, String path) throws IOException {
+    Buffer buf = acquire();
+    try {
+      encode(buf, status, message, path);
+      res.setStatus(status);
+      res.setContentType(CONTENT_TYPE);
+      res.setContentLength(buf.len);
+      res.getOutputStream().write(buf.bytes, 0, buf.len);
+    } finally {
+      release(buf);
+    }
+  }
+
+  public static byte[] toBytes(int status, String message, String path) {
+    Buffer buf = acquire();
+    try {
+      encode(buf, status, message, path);
+      return Arrays.copyOf(buf.bytes, buf.len);
+    } finally {
+      release(buf);
+    }
+  }
+
+  private static void encode(Buffer buf, int status, String message, String path) {
+    buf.len = 0;
+    buf.append(head(status));
+    buf.appendEscaped(message);
+    buf.append(PATH);
+    buf.appendEscaped(path);
+    buf.append(TIMESTAMP);
+    buf.appendEscaped(Instant.now().toString());
+    buf.append(TAIL);
+  }
+
+  private static byte[] head(int status) {
+    if (status < 100 || status >= HEADS.length) return encodeHead(status);
+    return HEADS[status];
+  }
+
+  private static byte[] encodeHead(int status) {
+    HttpStatus resolved = HttpStatus.resolve(status);
+    String error = resolved != null ? resolved.getReasonPhrase() : "Error";
+    return ("{\"status\":" + status + ",\"error\":\"" + error + "\",\"message\":\"").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static Buffer acquire() {
+    Buffer buf = POOL.poll();
+    return buf != null ? buf : new Buffer();
+  }
+
+  private static void release(Buffer buf) {
+    // don't keep buffers that grew for an unusually large message
+    if (buf.bytes.length <= 4096 && POOL.size() < POOL_MAX) POOL.offer(buf);
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static final class Buffer {
+    byte[] bytes = new byte[512];
+    int len;
+
+    void ensure(int extra) {
+      if (len + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, len + extra));
+      }
+    }
+
+    void append(byte[] b) {
+      ensure(b.length);
+      System.arraycopy(b, 0, bytes, len, b.length);
+      len += b.length;
+    }
+
+    void appendByte(int b) {
+      ensure(1);
+      bytes[len++] = (byte) b;
+    }
+
+    void appendEscaped(String s) {
+      if (s == null) return;
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        switch (c) {
+          case '\\' -> { appendByte('\\'); appendByte('\\'); }
+          case '"' -> { appendByte('\\'); appendByte('"'); }
+          case '\n' -> { appendByte('\\'); appendByte('n'); }
+          case '\r' -> { appendByte('\\'); appendByte('r'); }
+          case '\t' -> { appendByte('\\'); appendByte('t'); }
+          default -> {
+            if (c < 0x20) {
+              appendUnicodeEscape(c);
+            } else if (c < 0x80) {
+              appendByte(c);
+            } else if (c < 0x800) {
+              appendByte(0xc0 | (c >> 6));
+              appendByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(i + 1))) {
+              int cp = Character.toCodePoint(c, s.charAt(++i));
+              appendByte(0xf0 | (cp >> 18));
+              appendByte(0x80 | ((cp >> 12) & 0x3f));
+              appendByte(0x80 | ((cp >> 6) & 0x3f));
+              appendByte(0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+              appendByte('?');
+            } else {
+              appendByte(0xe0 | (c >> 12));
+              appendByte(0x80 | ((c >> 6) & 0x3f));
+              appendByte(0x80 | (c & 0x3f));
+            }
+          }
+        }
+      }
+    }
+
+    private void appendUnicodeEscape(char c) {
+      final String hex = "0123456789abcdef";
+      appendByte('\\');
+      appendByte('u');
+      appendByte('0');
+      appendByte('0');
+      appendByte(hex.charAt(c >> 4));
+      appendByte(hex.charAt(c & 0x0f));
+    }
+  }
+
+  private ApiErrorWriter() {}
+}
@@ -0,0 +1,26 @@
+package com.killerplay13.tripcollab.error;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Expected request failure (validation, not found, conflict). No stack trace is captured:
+ * these are thrown on hot, client-driven paths and the trace carries no useful information.
+ * Rendered by {@code ApiExceptionHandler} through {@link ApiErrorWriter}.
+ */
+public class ApiException extends RuntimeException {
+
+  private final HttpStatus status;
+
+  public ApiException(HttpStatus status, String message) {
+    super(message != null ? message : status.getReasonPhrase(), null, false, false);
+    this.status = status;
+  }
+
+  public ApiException(HttpStatus status) {
+    this(status, null);
+  }
+
+  public HttpStatus getStatus() {
+    return status;
+  }
+}
@@ -4,6 +4,7 @@ import com.killerplay13.tripcollab.domain.ExpenseEntity;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
 
@@ -28,8 +29,69 @@ public interface ExpenseRepository extends JpaRepository<ExpenseEntity, UUID> {
             @Param("to") LocalDate to
     );
 
+    // keyset pages in (expense_date, created_at, id) order, served by idx_expenses_trip_date_created_id
+    @Query(value = """
+        SELECT e.* FROM expenses e
+        WHERE e.trip_id = :tripId
+          AND (CAST(:from AS date) IS NULL OR e.expense_date >= CAST(:from AS date))
+          AND (CAST(:to AS date) IS NULL OR e.expense_date <= CAST(:to AS date))
+          AND (CAST(:q AS text) IS NULL OR CAST(:q AS text) = '' OR e.title ILIKE '%' || CAST(:q AS text) || '%')
+        ORDER BY e.expense_date, e.created_at, e.id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<ExpenseEntity> findFirstPage(
+            @Param("tripId") UUID tripId,
+            @Param("q") String q,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to,
+            @Param("limit") int limit
+    );
+
+    @Query(value = """
+        SELECT e.* FROM expenses e
+        WHERE e.trip_id = :tripId
+          AND (CAST(:from AS date) IS NULL OR e.expense_date >= CAST(:from AS date))
+          AND (CAST(:to AS date) IS NULL OR e.expense_date <= CAST(:to AS date))
+          AND (CAST(:q AS text) IS NULL OR CAST(:q AS text) = '' OR e.title ILIKE '%' || CAST(:q AS text) || '%')
+          AND (e.expense_date, e.created_at, e.id) > (:afterDate, :afterCreatedAt, :afterId)
+        ORDER BY e.expense_date, e.created_at, e.id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<ExpenseEntity> findPageAfter(
+            @Param("tripId") UUID tripId,
+            @Param("q") String q,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to,
+            @Param("afterDate") LocalDate afterDate,
+            @Param("afterCreatedAt") Instant afterCreatedAt,
+            @Param("afterId") UUID afterId,
+            @Param("limit") int limit
+    );
+
+    // substring match on the bare column so idx_expenses_title_trgm applies; best matches first
+    @Query(value = """
+        SELECT e.* FROM expenses e
+        WHERE e.trip_id = :tripId
+          AND e.title ILIKE '%' || :q || '%'
+          AND (CAST(:from AS date) IS NULL OR e.expense_date >= CAST(:from AS date))
+          AND (CAST(:to AS date) IS NULL OR e.expense_date <= CAST(:to AS date))
+        ORDER BY similarity(e.title, :q) DESC, e.expense_date, e.created_at, e.id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<ExpenseEntity> searchByTitle(
+            @Param("tripId") UUID tripId,
+            @Param("q") String q,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to,
+            @Param("limit") int limit
+    );
+
     Optional<ExpenseEntity> findByIdAndTripId(UUID id, UUID tripId);
 
+    List<ExpenseEntity> findByTripIdAndIdIn(UUID tripId, Collection<UUID> ids);
+
+    List<ExpenseEntity> findByTripIdAndUpdatedAtAfter(UUID tripId, Instant since);
+
     void deleteByIdAndTripId(UUID id, UUID tripId);
 
     @Query("""
@@ -2,15 +2,22 @@ package com.killerplay13.tripcollab.repo;
 
 import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.*;
 
 public interface ExpenseSplitRepository extends JpaRepository<ExpenseSplitEntity, UUID> {
     List<ExpenseSplitEntity> findByExpenseId(UUID expenseId);
+    List<ExpenseSplitEntity> findByExpenseIdIn(Collection<UUID> expenseIds);
     void deleteByExpenseId(UUID expenseId);
 
+    @Modifying
+    @Query("delete from ExpenseSplitEntity s where s.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<UUID> ids);
+
     @Query("""
     select s.memberId, coalesce(sum(s.shareAmount), 0)
     from ExpenseSplitEntity s, ExpenseEntity e
@@ -20,4 +27,13 @@ public interface ExpenseSplitRepository extends JpaRepository<ExpenseSplitEntity
 """)
     List<Object[]> sumOwedByMember(@Param("tripId") UUID tripId);
 
+    @Query("""
+    select s
+    from ExpenseSplitEntity s, ExpenseEntity e
+    where s.expenseId = e.id
+      and e.tripId = :tripId
+      and s.updatedAt > :since
+""")
+    List<ExpenseSplitEntity> findByTripIdAndUpdatedAtAfter(@Param("tripId") UUID tripId, @Param("since") Instant since);
+
 }
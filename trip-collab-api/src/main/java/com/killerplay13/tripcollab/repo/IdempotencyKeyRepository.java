@@ -0,0 +1,38 @@
+package com.killerplay13.tripcollab.repo;
+
+import com.killerplay13.tripcollab.domain.IdempotencyKeyEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, Long> {
+
+    Optional<IdempotencyKeyEntity> findByTripIdAndIdemKey(UUID tripId, String idemKey);
+
+    /**
+     * Returns 0 when the key is already stored. A concurrent insert of the same key blocks here
+     * until the other transaction ends, so at most one command per key can commit.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO idempotency_keys (trip_id, idem_key, request_hash, status_code, response_body, created_at)
+        VALUES (:tripId, :idemKey, :requestHash, :statusCode, :responseBody, NOW())
+        ON CONFLICT (trip_id, idem_key) DO NOTHING
+        """, nativeQuery = true)
+    int insertIfAbsent(
+            @Param("tripId") UUID tripId,
+            @Param("idemKey") String idemKey,
+            @Param("requestHash") String requestHash,
+            @Param("statusCode") int statusCode,
+            @Param("responseBody") byte[] responseBody
+    );
+
+    @Modifying
+    @Query("delete from IdempotencyKeyEntity k where k.createdAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
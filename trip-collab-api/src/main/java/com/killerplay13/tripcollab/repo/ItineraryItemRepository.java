@@ -1,6 +1,7 @@
 package com.killerplay13.tripcollab.repo;
 
 import com.killerplay13.tripcollab.domain.ItineraryItem;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -61,6 +62,7 @@ int updateSortOrder(@Param("tripId") UUID tripId, @Param("id") UUID id, @Param("
       @Param("to") LocalDate to
   );
 
+  // bare columns so the trigram indexes (V10) apply; ranked by best similarity over the three fields
   @Query(
   value = """
     select *
@@ -68,10 +70,11 @@ int updateSortOrder(@Param("tripId") UUID tripId, @Param("id") UUID id, @Param("
     where trip_id = :tripId
       and (
         title ilike '%' || :q || '%'
-        or coalesce(location_name,'') ilike '%' || :q || '%'
-        or coalesce(note,'') ilike '%' || :q || '%'
+        or location_name ilike '%' || :q || '%'
+        or note ilike '%' || :q || '%'
       )
-    order by day_date asc, sort_order asc, start_time asc nulls last, created_at asc , id asc                                                                                             
+    order by greatest(similarity(title, :q), similarity(location_name, :q), similarity(note, :q)) desc,
+             day_date asc, sort_order asc, start_time asc nulls last, created_at asc, id asc
     limit :limit
   """,
   nativeQuery = true
@@ -85,4 +88,6 @@ List<ItineraryItem> searchInTrip(
 
   long countByTripIdAndDayDate(UUID tripId, LocalDate dayDate);
 
+  List<ItineraryItem> findByTripIdAndUpdatedAtAfter(UUID tripId, Instant since);
+
 }
@@ -0,0 +1,67 @@
+package com.killerplay13.tripcollab.repo;
+
+import com.killerplay13.tripcollab.domain.MemberBalanceEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+public interface MemberBalanceRepository extends JpaRepository<MemberBalanceEntity, Long> {
+
+    List<MemberBalanceEntity> findAllByTripId(UUID tripId);
+
+    /** Active members with their running totals: [memberId, nickname, paidTotal, owedTotal]. */
+    @Query("""
+        select m.id, m.nickname, coalesce(b.paidTotal, 0), coalesce(b.owedTotal, 0)
+        from TripMemberEntity m
+        left join MemberBalanceEntity b on b.tripId = m.tripId and b.memberId = m.id
+        where m.tripId = :tripId
+          and m.isActive = true
+        order by m.joinedAt asc
+        """)
+    List<Object[]> findActiveMemberTotals(@Param("tripId") UUID tripId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from MemberBalanceEntity b where b.tripId = :tripId")
+    List<MemberBalanceEntity> findAllByTripIdForUpdate(@Param("tripId") UUID tripId);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO member_balances (trip_id, member_id, paid_total, owed_total, created_at, updated_at)
+        VALUES (:tripId, :memberId, :paidDelta, :owedDelta, NOW(), NOW())
+        ON CONFLICT (trip_id, member_id)
+        DO UPDATE SET
+          paid_total = member_balances.paid_total + EXCLUDED.paid_total,
+          owed_total = member_balances.owed_total + EXCLUDED.owed_total,
+          updated_at = NOW()
+        """, nativeQuery = true)
+    void applyDelta(
+            @Param("tripId") UUID tripId,
+            @Param("memberId") UUID memberId,
+            @Param("paidDelta") BigDecimal paidDelta,
+            @Param("owedDelta") BigDecimal owedDelta
+    );
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO member_balances (trip_id, member_id, paid_total, owed_total, created_at, updated_at)
+        VALUES (:tripId, :memberId, :paidTotal, :owedTotal, NOW(), NOW())
+        ON CONFLICT (trip_id, member_id)
+        DO UPDATE SET
+          paid_total = EXCLUDED.paid_total,
+          owed_total = EXCLUDED.owed_total,
+          updated_at = NOW()
+        """, nativeQuery = true)
+    void overwrite(
+            @Param("tripId") UUID tripId,
+            @Param("memberId") UUID memberId,
+            @Param("paidTotal") BigDecimal paidTotal,
+            @Param("owedTotal") BigDecimal owedTotal
+    );
+}
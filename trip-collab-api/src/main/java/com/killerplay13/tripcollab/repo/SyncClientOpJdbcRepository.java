@@ -0,0 +1,103 @@
+package com.killerplay13.tripcollab.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * sync_client_ops: which client operation ids of a trip have been applied, and the row each
+ * create produced. All statements take arrays, so a batch costs a fixed number of round trips.
+ */
+@Repository
+public class SyncClientOpJdbcRepository {
+
+    public record Claim(UUID clientId, String opType) {}
+
+    public record Recorded(String opType, UUID entityId) {}
+
+    // a concurrent batch claiming the same ids blocks on the conflict until the first one ends
+    private static final String CLAIM_SQL = """
+        INSERT INTO sync_client_ops (trip_id, client_id, op_type)
+        SELECT ?, c.client_id, c.op_type
+        FROM unnest(?::uuid[], ?::text[]) AS c(client_id, op_type)
+        ON CONFLICT (trip_id, client_id) DO NOTHING
+        RETURNING client_id
+        """;
+
+    private static final String FIND_SQL = """
+        SELECT client_id, op_type, entity_id
+        FROM sync_client_ops
+        WHERE trip_id = ? AND client_id = ANY(?::uuid[])
+        """;
+
+    private static final String SET_ENTITY_IDS_SQL = """
+        UPDATE sync_client_ops o
+        SET entity_id = c.entity_id
+        FROM unnest(?::uuid[], ?::uuid[]) AS c(client_id, entity_id)
+        WHERE o.trip_id = ? AND o.client_id = c.client_id
+        """;
+
+    private final JdbcTemplate jdbc;
+
+    public SyncClientOpJdbcRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Inserts the claims that are new and returns their client ids; the others were applied before. */
+    public Set<UUID> claim(UUID tripId, List<Claim> claims) {
+        if (claims.isEmpty()) return Set.of();
+        Set<UUID> claimed = new HashSet<>();
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CLAIM_SQL);
+            ps.setObject(1, tripId);
+            ps.setArray(2, con.createArrayOf("uuid", claims.stream().map(Claim::clientId).toArray()));
+            ps.setArray(3, con.createArrayOf("text", claims.stream().map(Claim::opType).toArray()));
+            return ps;
+        }, rs -> {
+            claimed.add(rs.getObject(1, UUID.class));
+        });
+        return claimed;
+    }
+
+    public Map<UUID, Recorded> find(UUID tripId, Collection<UUID> clientIds) {
+        if (clientIds.isEmpty()) return Map.of();
+        Map<UUID, Recorded> found = new HashMap<>();
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_SQL);
+            ps.setObject(1, tripId);
+            ps.setArray(2, con.createArrayOf("uuid", clientIds.toArray()));
+            return ps;
+        }, rs -> {
+            found.put(rs.getObject(1, UUID.class), new Recorded(rs.getString(2), rs.getObject(3, UUID.class)));
+        });
+        return found;
+    }
+
+    public void setEntityIds(UUID tripId, Map<UUID, UUID> entityIdsByClientId) {
+        if (entityIdsByClientId.isEmpty()) return;
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement(SET_ENTITY_IDS_SQL);
+            Array clientIds = con.createArrayOf("uuid", entityIdsByClientId.keySet().toArray());
+            Array entityIds = con.createArrayOf("uuid", entityIdsByClientId.values().toArray());
+            ps.setArray(1, clientIds);
+            ps.setArray(2, entityIds);
+            ps.setObject(3, tripId);
+            return ps;
+        });
+    }
+
+    public int deleteOlderThan(Instant before) {
+        return jdbc.update("DELETE FROM sync_client_ops WHERE created_at < ?", Timestamp.from(before));
+    }
+}
@@ -0,0 +1,20 @@
+package com.killerplay13.tripcollab.repo;
+
+import com.killerplay13.tripcollab.domain.SyncTombstoneEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface SyncTombstoneRepository extends JpaRepository<SyncTombstoneEntity, Long> {
+
+    List<SyncTombstoneEntity> findByTripIdAndDeletedAtAfterOrderByIdAsc(UUID tripId, Instant since);
+
+    @Modifying
+    @Query("delete from SyncTombstoneEntity t where t.deletedAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
@@ -2,18 +2,50 @@ package com.killerplay13.tripcollab.repo;
 
 import com.killerplay13.tripcollab.domain.TripMemberEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.*;
 
 public interface TripMemberRepository extends JpaRepository<TripMemberEntity, UUID> {
 
     boolean existsByIdAndTripIdAndIsActiveTrue(UUID id, UUID tripId);
 
+    @Query("""
+    select m.id
+    from TripMemberEntity m
+    where m.tripId = :tripId
+      and m.isActive = true
+      and m.id in :ids
+    """)
+    Set<UUID> findActiveIdsByTripIdAndIdIn(@Param("tripId") UUID tripId, @Param("ids") Collection<UUID> ids);
+
     List<TripMemberEntity> findByTripIdAndIsActiveTrueOrderByJoinedAtAsc(UUID tripId);
 
     Optional<TripMemberEntity> findByIdAndTripId(UUID id, UUID tripId);
 
     Optional<TripMemberEntity> findByMemberTokenHashAndIsActiveTrue(String memberTokenHash);
 
+    Optional<TripMemberEntity> findByMemberTokenHash(String memberTokenHash);
+
     boolean existsByTripIdAndNickname(UUID tripId, String nickname);
+
+    List<TripMemberEntity> findByTripIdAndUpdatedAtAfter(UUID tripId, Instant since);
+
+    // rows: [id, tokenEpoch, isActive, updatedAt]
+    @Query("""
+    select m.id, m.tokenEpoch, m.isActive, m.updatedAt
+    from TripMemberEntity m
+    where m.tokenEpoch > 0 or m.isActive = false
+    """)
+    List<Object[]> findRevokedAuthState();
+
+    // rows: [id, tokenEpoch, isActive, updatedAt]
+    @Query("""
+    select m.id, m.tokenEpoch, m.isActive, m.updatedAt
+    from TripMemberEntity m
+    where m.updatedAt > :since
+    """)
+    List<Object[]> findAuthStateUpdatedAfter(@Param("since") Instant since);
 }
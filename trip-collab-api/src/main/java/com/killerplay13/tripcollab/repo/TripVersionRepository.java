@@ -0,0 +1,27 @@
+package com.killerplay13.tripcollab.repo;
+
+import com.killerplay13.tripcollab.domain.TripVersionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface TripVersionRepository extends JpaRepository<TripVersionEntity, UUID> {
+
+    @Query("select v.version from TripVersionEntity v where v.tripId = :tripId")
+    Optional<Long> findVersion(@Param("tripId") UUID tripId);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO trip_versions (trip_id, version, updated_at)
+        VALUES (:tripId, 1, NOW())
+        ON CONFLICT (trip_id)
+        DO UPDATE SET
+          version = trip_versions.version + 1,
+          updated_at = NOW()
+        """, nativeQuery = true)
+    void bump(@Param("tripId") UUID tripId);
+}
@@ -1,6 +1,7 @@
 package com.killerplay13.tripcollab.repo;
 
 import com.killerplay13.tripcollab.domain.WalletBalanceEntity;
+import com.killerplay13.tripcollab.wallet.dto.TotalsInBaseDto;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,38 +10,57 @@ import org.springframework.data.repository.query.Param;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 public interface WalletBalanceRepository extends JpaRepository<WalletBalanceEntity, Long> {
     List<WalletBalanceEntity> findAllByWalletIdOrderByCurrencyAsc(Long walletId);
     Optional<WalletBalanceEntity> findByWalletIdAndCurrency(Long walletId, String currency);
 
-    @Modifying
+    /** The wallet's base-currency totals, summed over its (few) per-currency balance rows. */
+    @Query("""
+        select new com.killerplay13.tripcollab.wallet.dto.TotalsInBaseDto(
+            coalesce(sum(b.depositsInBase), 0),
+            coalesce(sum(b.withdrawalsOutBase), 0),
+            coalesce(sum(b.spentOutBase), 0),
+            coalesce(sum(b.adjustmentsNetBase), 0)
+        )
+        from WalletBalanceEntity b
+        where b.walletId = :walletId
+    """)
+    TotalsInBaseDto sumTotalsInBase(@Param("walletId") Long walletId);
+
+    /** Sum of the change counters of the trip's balance rows; every wallet write raises it. */
     @Query(value = """
-        INSERT INTO wallet_balances (wallet_id, currency, balance, created_at, updated_at)
-        VALUES (:walletId, :currency, :delta, NOW(), NOW())
-        ON CONFLICT (wallet_id, currency)
-        DO UPDATE SET
-          balance = wallet_balances.balance + EXCLUDED.balance,
-          updated_at = NOW()
+        SELECT CAST(COALESCE(SUM(b.version), 0) AS BIGINT)
+        FROM wallet_balances b
+        JOIN shared_wallets w ON w.id = b.wallet_id
+        WHERE w.trip_id = :tripId
         """, nativeQuery = true)
-    void upsertBalance(
-            @Param("walletId") Long walletId,
-            @Param("currency") String currency,
-            @Param("delta") BigDecimal delta
-    );
+    long sumVersionsByTripId(@Param("tripId") UUID tripId);
 
     @Modifying
     @Query(value = """
-        UPDATE wallet_balances
-        SET balance = balance - :amount,
-            updated_at = NOW()
-        WHERE wallet_id = :walletId
-          AND currency = :currency
-          AND balance >= :amount
+        INSERT INTO wallet_balances (
+          wallet_id, currency, balance,
+          deposits_in_base, withdrawals_out_base, spent_out_base, adjustments_net_base,
+          created_at, updated_at
+        )
+        VALUES (:walletId, :currency, 0, :depositsIn, :withdrawalsOut, :spentOut, :adjustmentsNet, NOW(), NOW())
+        ON CONFLICT (wallet_id, currency)
+        DO UPDATE SET
+          deposits_in_base = EXCLUDED.deposits_in_base,
+          withdrawals_out_base = EXCLUDED.withdrawals_out_base,
+          spent_out_base = EXCLUDED.spent_out_base,
+          adjustments_net_base = EXCLUDED.adjustments_net_base,
+          version = wallet_balances.version + 1,
+          updated_at = NOW()
         """, nativeQuery = true)
-    int debitIfSufficient(
+    void overwriteTotals(
             @Param("walletId") Long walletId,
             @Param("currency") String currency,
-            @Param("amount") BigDecimal amount
+            @Param("depositsIn") BigDecimal depositsIn,
+            @Param("withdrawalsOut") BigDecimal withdrawalsOut,
+            @Param("spentOut") BigDecimal spentOut,
+            @Param("adjustmentsNet") BigDecimal adjustmentsNet
     );
 }
@@ -0,0 +1,546 @@
+package com.killerplay13.tripcollab.repo;
+
+import com.killerplay13.tripcollab.domain.WalletTransactionEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Wallet commands as single statements: each one resolves the trip's wallet, credits or debits
+ * the per-currency balance row (which also carries that currency's base totals) and appends the
+ * ledger rows, in one round trip. The statements lock only the balance rows they touch, and
+ * callers bump no per-trip or per-wallet row for them (wallet reads take their ETag from the
+ * balance rows' version counters), so writes to different currencies of one wallet do not queue
+ * behind each other unless write lanes are enabled.
+ * Each statement takes the wallet's advisory lock in shared mode before touching a row: commands
+ * do not block each other on it, but none runs while a repair holds it exclusively
+ * ({@link #lockWallet}), so a repair never overwrites a balance from a ledger it has not seen.
+ * An empty result means the wallet is missing or, for debits, the balance was insufficient.
+ */
+@Repository
+public class WalletLedgerJdbcRepository {
+
+    private static final String RETURNING = """
+        RETURNING id, wallet_id, txn_type, direction, original_amount, original_currency, fx_rate,
+                  computed_base_amount, member_id, expense_id, exchange_group_id, fx_source, note,
+                  created_at, updated_at
+        """;
+
+    private static final String DEPOSIT_SQL = """
+        WITH w AS MATERIALIZED (
+          SELECT id, pg_advisory_xact_lock_shared(id) FROM shared_wallets WHERE trip_id = :tripId
+        ), credit AS (
+          INSERT INTO wallet_balances (wallet_id, currency, balance, deposits_in_base, created_at, updated_at)
+          SELECT w.id, :currency, :amount, :baseAmount, NOW(), NOW() FROM w
+          ON CONFLICT (wallet_id, currency)
+          DO UPDATE SET
+            balance = wallet_balances.balance + EXCLUDED.balance,
+            deposits_in_base = wallet_balances.deposits_in_base + EXCLUDED.deposits_in_base,
+            version = wallet_balances.version + 1,
+            updated_at = NOW()
+          RETURNING wallet_id
+        )
+        INSERT INTO wallet_transactions (
+          wallet_id, txn_type, direction, original_amount, original_currency, fx_rate,
+          computed_base_amount, member_id, fx_source, note, created_at, updated_at
+        )
+        SELECT credit.wallet_id, 'DEPOSIT', 'IN', :amount, :currency, :fxRate,
+               :baseAmount, CAST(:memberId AS uuid), :fxSource, :note, NOW(), NOW()
+        FROM credit
+        """ + RETURNING;
+
+    private static final String EXPENSE_SQL = """
+        WITH w AS MATERIALIZED (
+          SELECT id, pg_advisory_xact_lock_shared(id) FROM shared_wallets WHERE trip_id = :tripId
+        ), debit AS (
+          UPDATE wallet_balances b
+          SET balance = b.balance - :amount,
+              spent_out_base = b.spent_out_base + :baseAmount,
+              version = b.version + 1,
+              updated_at = NOW()
+          FROM w
+          WHERE b.wallet_id = w.id
+            AND b.currency = :currency
+            AND b.balance >= :amount
+          RETURNING b.wallet_id
+        )
+        INSERT INTO wallet_transactions (
+          wallet_id, txn_type, direction, original_amount, original_currency, fx_rate,
+          computed_base_amount, member_id, expense_id, fx_source, note, created_at, updated_at
+        )
+        SELECT debit.wallet_id, 'EXPENSE', 'OUT', :amount, :currency, :fxRate,
+               :baseAmount, CAST(:memberId AS uuid), CAST(:expenseId AS uuid), :fxSource, :note, NOW(), NOW()
+        FROM debit
+        """ + RETURNING;
+
+    // exchanges move no base totals; the two legs are inserted OUT first so ids follow that order
+    private static final String EXCHANGE_SQL = """
+        WITH w AS MATERIALIZED (
+          SELECT id, pg_advisory_xact_lock_shared(id) FROM shared_wallets WHERE trip_id = :tripId
+        ), debit AS (
+          UPDATE wallet_balances b
+          SET balance = b.balance - :fromAmount,
+              version = b.version + 1,
+              updated_at = NOW()
+          FROM w
+          WHERE b.wallet_id = w.id
+            AND b.currency = :fromCurrency
+            AND b.balance >= :fromAmount
+          RETURNING b.wallet_id
+        ), credit AS (
+          INSERT INTO wallet_balances (wallet_id, currency, balance, created_at, updated_at)
+          SELECT debit.wallet_id, :toCurrency, :toAmount, NOW(), NOW() FROM debit
+          ON CONFLICT (wallet_id, currency)
+          DO UPDATE SET
+            balance = wallet_balances.balance + EXCLUDED.balance,
+            version = wallet_balances.version + 1,
+            updated_at = NOW()
+          RETURNING wallet_id
+        )
+        INSERT INTO wallet_transactions (
+          wallet_id, txn_type, direction, original_amount, original_currency, fx_rate,
+          computed_base_amount, member_id, exchange_group_id, fx_source, note, created_at, updated_at
+        )
+        SELECT credit.wallet_id, 'EXCHANGE', leg.direction, leg.amount, leg.currency, leg.fx_rate,
+               leg.base_amount, CAST(:memberId AS uuid), CAST(:exchangeGroupId AS uuid), :fxSource, :note, NOW(), NOW()
+        FROM credit
+        CROSS JOIN (VALUES
+          (1, 'OUT', CAST(:fromAmount AS numeric), CAST(:fromCurrency AS char(3)), CAST(:fromFxRate AS numeric), CAST(:outBase AS numeric)),
+          (2, 'IN', :toAmount, :toCurrency, :toFxRate, :inBase)
+        ) AS leg(ord, direction, amount, currency, fx_rate, base_amount)
+        ORDER BY leg.ord
+        """ + RETURNING;
+
+    // every wallet writer takes this while write lanes are enabled; see WalletWriteLanes
+    private static final String LOCK_TRIP_WALLET_SQL =
+            "SELECT pg_advisory_xact_lock(id) FROM shared_wallets WHERE trip_id = :tripId";
+
+    private static final String WALLET_ID_SQL = "SELECT id FROM shared_wallets WHERE trip_id = :tripId";
+
+    private static final String LOCK_WALLET_SQL = "SELECT pg_advisory_xact_lock(:walletId)";
+
+    private static final String LOCK_WALLET_SHARED_SQL = "SELECT pg_advisory_xact_lock_shared(:walletId)";
+
+    private static final String BALANCES_SQL =
+            "SELECT wallet_id, currency, balance FROM wallet_balances WHERE wallet_id IN (:walletIds)";
+
+    private static final String INSERT_ROW_SQL = """
+        INSERT INTO wallet_transactions (
+          wallet_id, txn_type, direction, original_amount, original_currency, fx_rate,
+          computed_base_amount, member_id, expense_id, exchange_group_id, fx_source, note, created_at, updated_at
+        )
+        VALUES (:walletId, :txnType, :direction, :amount, :currency, :fxRate,
+                :baseAmount, CAST(:memberId AS uuid), CAST(:expenseId AS uuid), CAST(:exchangeGroupId AS uuid),
+                :fxSource, :note, NOW(), NOW())
+        """;
+
+    private static final String APPLY_DELTA_SQL = """
+        INSERT INTO wallet_balances (
+          wallet_id, currency, balance,
+          deposits_in_base, withdrawals_out_base, spent_out_base, adjustments_net_base,
+          created_at, updated_at
+        )
+        VALUES (:walletId, :currency, :balance, :depositsIn, :withdrawalsOut, :spentOut, :adjustmentsNet, NOW(), NOW())
+        ON CONFLICT (wallet_id, currency)
+        DO UPDATE SET
+          balance = wallet_balances.balance + EXCLUDED.balance,
+          deposits_in_base = wallet_balances.deposits_in_base + EXCLUDED.deposits_in_base,
+          withdrawals_out_base = wallet_balances.withdrawals_out_base + EXCLUDED.withdrawals_out_base,
+          spent_out_base = wallet_balances.spent_out_base + EXCLUDED.spent_out_base,
+          adjustments_net_base = wallet_balances.adjustments_net_base + EXCLUDED.adjustments_net_base,
+          version = wallet_balances.version + 1,
+          updated_at = NOW()
+        """;
+
+    private static final String PAGE_SELECT = """
+        SELECT id, wallet_id, txn_type, direction, original_amount, original_currency, fx_rate,
+               computed_base_amount, member_id, expense_id, exchange_group_id, fx_source, note,
+               created_at, updated_at
+        FROM wallet_transactions
+        WHERE wallet_id = :walletId
+        """;
+
+    /** Optional history filters; null fields are left out of the query rather than tested for null. */
+    public record TransactionFilter(
+            String currency,
+            String txnType,
+            UUID exchangeGroupId,
+            UUID memberId,
+            Instant from,
+            Instant to
+    ) {}
+
+    /** One ledger row to append, for the batched writers that check balances themselves. */
+    public record LedgerRow(
+            Long walletId,
+            String txnType,
+            String direction,
+            BigDecimal amount,
+            String currency,
+            BigDecimal fxRate,
+            BigDecimal baseAmount,
+            UUID memberId,
+            UUID expenseId,
+            UUID exchangeGroupId,
+            String fxSource,
+            String note
+    ) {
+        /** The scale of computed_base_amount and the base totals. */
+        public static final int BASE_SCALE = 6;
+
+        // rounded here, as the column would round it, so netted deltas add up to the stored rows
+        public LedgerRow {
+            if (baseAmount != null) {
+                baseAmount = baseAmount.setScale(BASE_SCALE, RoundingMode.HALF_UP);
+            }
+        }
+
+        public LedgerRow onWallet(Long walletId) {
+            return new LedgerRow(walletId, txnType, direction, amount, currency, fxRate, baseAmount,
+                    memberId, expenseId, exchangeGroupId, fxSource, note);
+        }
+
+        /** The balance change for this row's currency: +amount when IN, -amount when OUT. */
+        public BigDecimal signedAmount() {
+            return "IN".equals(direction) ? amount : amount.negate();
+        }
+    }
+
+    /**
+     * Net change of one balance row and its base totals; the totals follow the same buckets as
+     * {@link WalletTransactionRepository#aggregateTotalsInBase}.
+     */
+    public record BalanceDelta(
+            Long walletId,
+            String currency,
+            BigDecimal balance,
+            BigDecimal depositsIn,
+            BigDecimal withdrawalsOut,
+            BigDecimal spentOut,
+            BigDecimal adjustmentsNet
+    ) {
+        public static BalanceDelta of(LedgerRow r) {
+            BigDecimal base = r.baseAmount();
+            boolean in = "IN".equals(r.direction());
+            BigDecimal zero = BigDecimal.ZERO;
+            return new BalanceDelta(
+                    r.walletId(),
+                    r.currency(),
+                    r.signedAmount(),
+                    "DEPOSIT".equals(r.txnType()) && in ? base : zero,
+                    "WITHDRAW".equals(r.txnType()) && !in ? base : zero,
+                    "EXPENSE".equals(r.txnType()) && !in ? base : zero,
+                    "ADJUSTMENT".equals(r.txnType()) ? (in ? base : base.negate()) : zero
+            );
+        }
+
+        public BalanceDelta plus(BalanceDelta o) {
+            return new BalanceDelta(
+                    walletId,
+                    currency,
+                    balance.add(o.balance),
+                    depositsIn.add(o.depositsIn),
+                    withdrawalsOut.add(o.withdrawalsOut),
+                    spentOut.add(o.spentOut),
+                    adjustmentsNet.add(o.adjustmentsNet)
+            );
+        }
+    }
+
+    private static final RowMapper<WalletTransactionEntity> ROW_MAPPER = (rs, i) -> {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return WalletTransactionEntity.builder()
+                .id(rs.getLong("id"))
+                .walletId(rs.getLong("wallet_id"))
+                .txnType(rs.getString("txn_type"))
+                .direction(rs.getString("direction"))
+                .originalAmount(rs.getBigDecimal("original_amount"))
+                .originalCurrency(rs.getString("original_currency"))
+                .fxRate(rs.getBigDecimal("fx_rate"))
+                .computedBaseAmount(rs.getBigDecimal("computed_base_amount"))
+                .memberId(rs.getObject("member_id", UUID.class))
+                .expenseId(rs.getObject("expense_id", UUID.class))
+                .exchangeGroupId(rs.getObject("exchange_group_id", UUID.class))
+                .fxSource(rs.getString("fx_source"))
+                .note(rs.getString("note"))
+                .createdAt(createdAt != null ? createdAt.toInstant() : null)
+                .updatedAt(updatedAt != null ? updatedAt.toInstant() : null)
+                .build();
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public WalletLedgerJdbcRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<WalletTransactionEntity> deposit(
+            UUID tripId,
+            String currency,
+            BigDecimal amount,
+            BigDecimal fxRate,
+            BigDecimal baseAmount,
+            UUID memberId,
+            String fxSource,
+            String note
+    ) {
+        var params = new MapSqlParameterSource()
+                .addValue("tripId", tripId)
+                .addValue("currency", currency)
+                .addValue("amount", amount)
+                .addValue("fxRate", fxRate)
+                .addValue("baseAmount", baseAmount)
+                .addValue("memberId", memberId, Types.OTHER)
+                .addValue("fxSource", fxSource)
+                .addValue("note", note);
+        return jdbc.query(DEPOSIT_SQL, params, ROW_MAPPER);
+    }
+
+    /** Throws DuplicateKeyException when the expense already has its EXPENSE row. */
+    public List<WalletTransactionEntity> recordExpense(
+            UUID tripId,
+            UUID expenseId,
+            String currency,
+            BigDecimal amount,
+            BigDecimal fxRate,
+            BigDecimal baseAmount,
+            UUID memberId,
+            String fxSource,
+            String note
+    ) {
+        // the ledger row references the expense, which may still be a pending JPA insert
+        entityManager.flush();
+        var params = new MapSqlParameterSource()
+                .addValue("tripId", tripId)
+                .addValue("expenseId", expenseId, Types.OTHER)
+                .addValue("currency", currency)
+                .addValue("amount", amount)
+                .addValue("fxRate", fxRate)
+                .addValue("baseAmount", baseAmount)
+                .addValue("memberId", memberId, Types.OTHER)
+                .addValue("fxSource", fxSource)
+                .addValue("note", note);
+        return jdbc.query(EXPENSE_SQL, params, ROW_MAPPER);
+    }
+
+    /** Returns the OUT leg, then the IN leg. */
+    public List<WalletTransactionEntity> exchange(
+            UUID tripId,
+            UUID exchangeGroupId,
+            String fromCurrency,
+            BigDecimal fromAmount,
+            BigDecimal fromFxRate,
+            BigDecimal outBase,
+            String toCurrency,
+            BigDecimal toAmount,
+            BigDecimal toFxRate,
+            BigDecimal inBase,
+            UUID memberId,
+            String fxSource,
+            String note
+    ) {
+        var params = new MapSqlParameterSource()
+                .addValue("tripId", tripId)
+                .addValue("exchangeGroupId", exchangeGroupId, Types.OTHER)
+                .addValue("fromCurrency", fromCurrency)
+                .addValue("fromAmount", fromAmount)
+                .addValue("fromFxRate", fromFxRate)
+                .addValue("outBase", outBase)
+                .addValue("toCurrency", toCurrency)
+                .addValue("toAmount", toAmount)
+                .addValue("toFxRate", toFxRate)
+                .addValue("inBase", inBase)
+                .addValue("memberId", memberId, Types.OTHER)
+                .addValue("fxSource", fxSource)
+                .addValue("note", note);
+        return jdbc.query(EXCHANGE_SQL, params, ROW_MAPPER).stream()
+                .sorted(Comparator.comparing(WalletTransactionEntity::getId))
+                .toList();
+    }
+
+    /** The trip's wallet id, over plain JDBC so no persistence context is opened for it. */
+    public Optional<Long> findWalletId(UUID tripId) {
+        return jdbc.queryForList(WALLET_ID_SQL, new MapSqlParameterSource("tripId", tripId), Long.class)
+                .stream()
+                .findFirst();
+    }
+
+    /** Transaction-scoped advisory lock on the trip's wallet; a no-op when the trip has none. */
+    public void lockTripWallet(UUID tripId) {
+        jdbc.queryForList(LOCK_TRIP_WALLET_SQL, new MapSqlParameterSource("tripId", tripId));
+    }
+
+    /** Exclusive: taken by lane batches, wallet batches, every writer while lanes are on, and repairs. */
+    public void lockWallet(Long walletId) {
+        jdbc.queryForList(LOCK_WALLET_SQL, new MapSqlParameterSource("walletId", walletId));
+    }
+
+    /** Shared: what the command statements take for themselves; it only keeps repairs out. */
+    public void lockWalletShared(Long walletId) {
+        jdbc.queryForList(LOCK_WALLET_SHARED_SQL, new MapSqlParameterSource("walletId", walletId));
+    }
+
+    /** Current balances by wallet id, then currency; wallets without balance rows are absent. */
+    public Map<Long, Map<String, BigDecimal>> findBalances(Collection<Long> walletIds) {
+        Map<Long, Map<String, BigDecimal>> balances = new HashMap<>();
+        if (walletIds.isEmpty()) {
+            return balances;
+        }
+        jdbc.query(BALANCES_SQL, new MapSqlParameterSource("walletIds", walletIds), (RowCallbackHandler) rs ->
+                balances.computeIfAbsent(rs.getLong("wallet_id"), k -> new HashMap<>())
+                        .put(rs.getString("currency"), rs.getBigDecimal("balance")));
+        return balances;
+    }
+
+    /**
+     * Appends the rows in one JDBC batch without touching balances; the caller has already checked
+     * them and applies the netted change with {@link #applyDeltas}. Returns the rows in input order.
+     */
+    public List<WalletTransactionEntity> insertAll(List<LedgerRow> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        SqlParameterSource[] batch = new SqlParameterSource[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            var r = rows.get(i);
+            batch[i] = new MapSqlParameterSource()
+                    .addValue("walletId", r.walletId())
+                    .addValue("txnType", r.txnType())
+                    .addValue("direction", r.direction())
+                    .addValue("amount", r.amount())
+                    .addValue("currency", r.currency())
+                    .addValue("fxRate", r.fxRate())
+                    .addValue("baseAmount", r.baseAmount())
+                    .addValue("memberId", r.memberId(), Types.OTHER)
+                    .addValue("expenseId", r.expenseId(), Types.OTHER)
+                    .addValue("exchangeGroupId", r.exchangeGroupId(), Types.OTHER)
+                    .addValue("fxSource", r.fxSource())
+                    .addValue("note", r.note());
+        }
+        var keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate(INSERT_ROW_SQL, batch, keys, new String[] {"id", "created_at", "updated_at"});
+
+        List<Map<String, Object>> generated = keys.getKeyList();
+        List<WalletTransactionEntity> inserted = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            var r = rows.get(i);
+            var k = generated.get(i);
+            inserted.add(WalletTransactionEntity.builder()
+                    .id(((Number) k.get("id")).longValue())
+                    .walletId(r.walletId())
+                    .txnType(r.txnType())
+                    .direction(r.direction())
+                    .originalAmount(r.amount())
+                    .originalCurrency(r.currency())
+                    .fxRate(r.fxRate())
+                    .computedBaseAmount(r.baseAmount())
+                    .memberId(r.memberId())
+                    .expenseId(r.expenseId())
+                    .exchangeGroupId(r.exchangeGroupId())
+                    .fxSource(r.fxSource())
+                    .note(r.note())
+                    .createdAt(toInstant(k.get("created_at")))
+                    .updatedAt(toInstant(k.get("updated_at")))
+                    .build());
+        }
+        return inserted;
+    }
+
+    /** Adds each delta to its balance row (created if missing), in the given order. */
+    public void applyDeltas(List<BalanceDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = deltas.stream()
+                .map(d -> new MapSqlParameterSource()
+                        .addValue("walletId", d.walletId())
+                        .addValue("currency", d.currency())
+                        .addValue("balance", d.balance())
+                        .addValue("depositsIn", d.depositsIn())
+                        .addValue("withdrawalsOut", d.withdrawalsOut())
+                        .addValue("spentOut", d.spentOut())
+                        .addValue("adjustmentsNet", d.adjustmentsNet()))
+                .toArray(SqlParameterSource[]::new);
+        jdbc.batchUpdate(APPLY_DELTA_SQL, batch);
+    }
+
+    private static Instant toInstant(Object value) {
+        if (value instanceof Timestamp ts) return ts.toInstant();
+        if (value instanceof OffsetDateTime odt) return odt.toInstant();
+        return null;
+    }
+
+    /**
+     * Keyset page of a wallet's ledger in (created_at DESC, id DESC) order, starting after the
+     * given position (or at the newest row when {@code afterCreatedAt} is null). Only the filters
+     * that are set become predicates, so each query can use its idx_wallet_transactions_wallet_*
+     * index; {@code from} is inclusive and {@code to} exclusive.
+     */
+    public List<WalletTransactionEntity> findPage(
+            Long walletId,
+            TransactionFilter filter,
+            Instant afterCreatedAt,
+            Long afterId,
+            int limit
+    ) {
+        var sql = new StringBuilder(PAGE_SELECT);
+        var params = new MapSqlParameterSource("walletId", walletId);
+        if (filter.currency() != null) {
+            sql.append("  AND original_currency = :currency\n");
+            params.addValue("currency", filter.currency());
+        }
+        if (filter.txnType() != null) {
+            sql.append("  AND txn_type = :txnType\n");
+            params.addValue("txnType", filter.txnType());
+        }
+        if (filter.exchangeGroupId() != null) {
+            sql.append("  AND exchange_group_id = :exchangeGroupId\n");
+            params.addValue("exchangeGroupId", filter.exchangeGroupId(), Types.OTHER);
+        }
+        if (filter.memberId() != null) {
+            sql.append("  AND member_id = :memberId\n");
+            params.addValue("memberId", filter.memberId(), Types.OTHER);
+        }
+        if (filter.from() != null) {
+            sql.append("  AND created_at >= :from\n");
+            params.addValue("from", Timestamp.from(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append("  AND created_at < :to\n");
+            params.addValue("to", Timestamp.from(filter.to()));
+        }
+        if (afterCreatedAt != null) {
+            sql.append("  AND (created_at, id) < (:afterCreatedAt, :afterId)\n");
+            params.addValue("afterCreatedAt", Timestamp.from(afterCreatedAt));
+            params.addValue("afterId", afterId);
+        }
+        sql.append("ORDER BY created_at DESC, id DESC\nLIMIT :limit");
+        params.addValue("limit", limit);
+        return jdbc.query(sql.toString(), params, ROW_MAPPER);
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 import java.util.Optional;
 
@@ -47,5 +49,25 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
 
     Optional<WalletTransactionEntity> findByIdAndWalletId(Long id, Long walletId);
 
-    boolean existsByExpenseIdAndTxnType(UUID expenseId, String txnType);
+    List<WalletTransactionEntity> findByWalletIdAndUpdatedAtAfterOrderByIdAsc(Long walletId, Instant since);
+
+    /** Same buckets as {@link #aggregateTotalsInBase}, per original currency: [currency, deposits, withdrawals, spent, adjustments]. */
+    @Query("""
+        select t.originalCurrency,
+            coalesce(sum(case when t.txnType = 'DEPOSIT' and t.direction = 'IN' then t.computedBaseAmount else 0 end), 0),
+            coalesce(sum(case when t.txnType = 'WITHDRAW' and t.direction = 'OUT' then t.computedBaseAmount else 0 end), 0),
+            coalesce(sum(case when t.txnType = 'EXPENSE' and t.direction = 'OUT' then t.computedBaseAmount else 0 end), 0),
+            coalesce(sum(case
+                when t.txnType = 'ADJUSTMENT' and t.direction = 'IN' then t.computedBaseAmount
+                when t.txnType = 'ADJUSTMENT' and t.direction = 'OUT' then -t.computedBaseAmount
+                else 0 end), 0)
+        from WalletTransactionEntity t
+        where t.walletId = :walletId
+        group by t.originalCurrency
+    """)
+    List<Object[]> aggregateTotalsInBaseByCurrency(@Param("walletId") Long walletId);
+
+    /** Time of the latest ledger write; served by idx_wallet_transactions_wallet_created_id. */
+    @Query("select max(t.createdAt) from WalletTransactionEntity t where t.walletId = :walletId")
+    Optional<Instant> findLatestCreatedAt(@Param("walletId") Long walletId);
 }
@@ -0,0 +1,30 @@
+package com.killerplay13.tripcollab.security;
+
+import com.killerplay13.tripcollab.error.ApiException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Guards the operator endpoints under /api/admin, which sit outside the trip auth filter. They
+ * answer 404 unless tripcollab.admin.token is set, and then require it in the X-Admin-Token header.
+ */
+public class AdminTokenGuard {
+
+  public static final String HEADER = "X-Admin-Token";
+
+  private final byte[] token;
+
+  public AdminTokenGuard(String token) {
+    this.token = token == null ? new byte[0] : token.getBytes(StandardCharsets.UTF_8);
+  }
+
+  public void require(String presented) {
+    if (token.length == 0) {
+      throw new ApiException(HttpStatus.NOT_FOUND, "Not found");
+    }
+    if (presented == null || !MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8))) {
+      throw new ApiException(HttpStatus.UNAUTHORIZED, "Invalid admin token");
+    }
+  }
+}
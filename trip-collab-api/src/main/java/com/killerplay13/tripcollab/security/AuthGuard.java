@@ -8,7 +8,7 @@ import org.springframework.http.ResponseEntity;
 public final class AuthGuard {
 
   public static ResponseEntity<String> requireMember(HttpServletRequest request) {
-    Object memberId = request.getAttribute(MemberTokenFilter.ATTR_MEMBER_ID);
+    Object memberId = request.getAttribute(TripAuthFilter.ATTR_MEMBER_ID);
     if (!(memberId instanceof UUID)) {
       return buildErrorResponse(request, 401, "Missing member identity");
     }
@@ -19,7 +19,7 @@ public final class AuthGuard {
     ResponseEntity<String> memberGuard = requireMember(request);
     if (memberGuard != null) return memberGuard;
 
-    Object roleObj = request.getAttribute(MemberTokenFilter.ATTR_ROLE);
+    Object roleObj = request.getAttribute(TripAuthFilter.ATTR_ROLE);
     if (!(roleObj instanceof String)) {
       return buildErrorResponse(request, 401, "Missing member role");
     }
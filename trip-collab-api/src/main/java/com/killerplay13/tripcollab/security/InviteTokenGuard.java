@@ -0,0 +1,124 @@
+package com.killerplay13.tripcollab.security;
+
+import com.killerplay13.tripcollab.repo.TripRepository;
+import com.killerplay13.tripcollab.support.BoundedTtlCache;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shields invite-token verification on join: a token bucket per (trip, client address) caps
+ * attempts, failed (trip, hash) pairs are remembered briefly, and valid invite hashes are cached,
+ * so repeated or guessed tokens don't reach PostgreSQL. Counters are served on GET /api/admin/stats.
+ */
+public class InviteTokenGuard {
+
+  public enum Result { ACCEPTED, REJECTED, RATE_LIMITED }
+
+  public record Stats(
+      long rateLimited,
+      long positiveHits,
+      long negativeHits,
+      long dbChecks,
+      BoundedTtlCache.Stats buckets
+  ) {}
+
+  private final TripRepository tripRepository;
+  private final int bucketCapacity;
+  private final long refillIntervalNanos;
+
+  private final BoundedTtlCache<String, TokenBucket> buckets;
+  private final BoundedTtlCache<String, Boolean> rejected;
+  private final BoundedTtlCache<UUID, String> validHashes;
+
+  private final LongAdder rateLimited = new LongAdder();
+  private final LongAdder positiveHits = new LongAdder();
+  private final LongAdder negativeHits = new LongAdder();
+  private final LongAdder dbChecks = new LongAdder();
+
+  public InviteTokenGuard(
+      TripRepository tripRepository,
+      int bucketCapacity,
+      Duration refillInterval,
+      Duration negativeTtl,
+      Duration positiveTtl,
+      int maxEntries
+  ) {
+    this.tripRepository = tripRepository;
+    this.bucketCapacity = bucketCapacity;
+    this.refillIntervalNanos = refillInterval.toNanos();
+    // an idle bucket is full again after capacity * interval, so it can be forgotten by then
+    this.buckets = new BoundedTtlCache<>(maxEntries, refillInterval.multipliedBy(bucketCapacity));
+    this.rejected = new BoundedTtlCache<>(maxEntries, negativeTtl);
+    this.validHashes = new BoundedTtlCache<>(maxEntries, positiveTtl);
+  }
+
+  public Result check(UUID tripId, String clientAddress, String tokenHash) {
+    if (!acquire(tripId + "|" + clientAddress)) {
+      rateLimited.increment();
+      return Result.RATE_LIMITED;
+    }
+
+    String valid = validHashes.get(tripId);
+    if (tokenHash.equals(valid)) {
+      positiveHits.increment();
+      return Result.ACCEPTED;
+    }
+
+    String rejectedKey = tripId + "|" + tokenHash;
+    if (rejected.get(rejectedKey) != null) {
+      negativeHits.increment();
+      return Result.REJECTED;
+    }
+
+    dbChecks.increment();
+    if (tripRepository.existsByIdAndInviteTokenHashAndInviteEnabledTrue(tripId, tokenHash)) {
+      validHashes.put(tripId, tokenHash);
+      return Result.ACCEPTED;
+    }
+    rejected.put(rejectedKey, Boolean.TRUE);
+    return Result.REJECTED;
+  }
+
+  /**
+   * Called by TripService once a trip's invite token is rotated or disabled. Only this node's
+   * cache is cleared; other nodes accept the old token until positive-ttl expires.
+   */
+  public void invalidate(UUID tripId) {
+    validHashes.invalidate(tripId);
+  }
+
+  public long retryAfterSeconds() {
+    return Math.max(1, Duration.ofNanos(refillIntervalNanos).toSeconds());
+  }
+
+  public Stats stats() {
+    return new Stats(rateLimited.sum(), positiveHits.sum(), negativeHits.sum(), dbChecks.sum(), buckets.stats());
+  }
+
+  // every attempt restarts the bucket's TTL, so a bucket only expires after sitting idle long
+  // enough to have refilled anyway; creation is atomic so concurrent first attempts share one
+  private boolean acquire(String key) {
+    TokenBucket bucket = buckets.getOrCreate(key, k -> new TokenBucket(bucketCapacity, System.nanoTime()));
+    return bucket.tryAcquire(bucketCapacity, refillIntervalNanos);
+  }
+
+  private static final class TokenBucket {
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(int capacity, long now) {
+      this.tokens = capacity;
+      this.lastRefillNanos = now;
+    }
+
+    synchronized boolean tryAcquire(int capacity, long refillIntervalNanos) {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (double) (now - lastRefillNanos) / refillIntervalNanos);
+      lastRefillNanos = now;
+      if (tokens < 1) return false;
+      tokens -= 1;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.killerplay13.tripcollab.security;
+
+import com.killerplay13.tripcollab.support.BoundedTtlCache;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Caches member token lookups (keyed by token hash) so authenticated requests
+ * don't hit trip_members on every call. Entries expire after the TTL; auth-relevant
+ * member changes must call {@link #invalidateMember(UUID)}, which also drops entries for
+ * tokens the member no longer holds. Counters are served on GET /api/admin/stats.
+ */
+public class MemberPrincipalCache {
+
+  public record CachedPrincipal(UUID memberId, UUID tripId, String role, boolean active) {}
+
+  private final BoundedTtlCache<String, CachedPrincipal> cache;
+
+  public MemberPrincipalCache(int maxSize, Duration ttl) {
+    this.cache = new BoundedTtlCache<>(maxSize, ttl);
+  }
+
+  public CachedPrincipal get(String tokenHash) {
+    return cache.get(tokenHash);
+  }
+
+  public void put(String tokenHash, CachedPrincipal principal) {
+    cache.put(tokenHash, principal);
+  }
+
+  public void invalidateMember(UUID memberId) {
+    cache.invalidateIf(p -> p.memberId().equals(memberId));
+  }
+
+  public BoundedTtlCache.Stats stats() {
+    return cache.stats();
+  }
+}
@@ -0,0 +1,90 @@
+package com.killerplay13.tripcollab.security;
+
+import com.killerplay13.tripcollab.repo.TripMemberRepository;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * In-memory view of which members can no longer use signed tokens: inactive members and
+ * members whose token_epoch moved past 0. Only those rows are held, so the map stays small.
+ * Refreshed incrementally from trip_members.updated_at, which the V7 trigger stamps with the DB
+ * clock, so the watermark is taken from the DB too. Local changes are applied via {@link #record}.
+ */
+public class MemberRevocationRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(MemberRevocationRegistry.class);
+
+  // re-read a little behind the watermark so rows committed late with an older updated_at aren't missed
+  private static final Duration OVERLAP = Duration.ofSeconds(5);
+
+  private record State(int epoch, boolean active) {}
+
+  private final TripMemberRepository tripMemberRepository;
+  private final MemberTokenSigner signer;
+  private final JdbcTemplate jdbcTemplate;
+  private final Map<UUID, State> revoked = new ConcurrentHashMap<>();
+  private volatile Instant watermark;
+
+  public MemberRevocationRegistry(
+      TripMemberRepository tripMemberRepository,
+      MemberTokenSigner signer,
+      JdbcTemplate jdbcTemplate
+  ) {
+    this.tripMemberRepository = tripMemberRepository;
+    this.signer = signer;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /** False until the first load from the DB has finished; callers should fall back to a DB lookup. */
+  public boolean ready() {
+    return watermark != null;
+  }
+
+  public boolean isRevoked(UUID memberId, int tokenEpoch) {
+    State s = revoked.get(memberId);
+    if (s == null) return tokenEpoch != 0;
+    return !s.active() || s.epoch() != tokenEpoch;
+  }
+
+  public void record(UUID memberId, int epoch, boolean active) {
+    if (active && epoch == 0) {
+      revoked.remove(memberId);
+    } else {
+      revoked.put(memberId, new State(epoch, active));
+    }
+  }
+
+  @Scheduled(
+      initialDelayString = "${tripcollab.auth.member-token.revocation-initial-delay-ms:0}",
+      fixedDelayString = "${tripcollab.auth.member-token.revocation-refresh-ms:10000}"
+  )
+  public void refresh() {
+    if (!signer.enabled()) return;
+    try {
+      Instant since = watermark;
+      Instant startedAt = jdbcTemplate.queryForObject("select now()", Timestamp.class).toInstant();
+      List<Object[]> rows = since == null
+          ? tripMemberRepository.findRevokedAuthState()
+          : tripMemberRepository.findAuthStateUpdatedAfter(since.minus(OVERLAP));
+
+      Instant max = since != null ? since : startedAt;
+      for (Object[] row : rows) {
+        record((UUID) row[0], (Integer) row[1], Boolean.TRUE.equals(row[2]));
+        Instant updatedAt = (Instant) row[3];
+        if (updatedAt != null && updatedAt.isAfter(max)) max = updatedAt;
+      }
+      watermark = max;
+    } catch (RuntimeException e) {
+      log.warn("Member revocation refresh failed", e);
+    }
+  }
+}
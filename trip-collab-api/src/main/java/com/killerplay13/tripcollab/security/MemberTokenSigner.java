@@ -0,0 +1,111 @@
+package com.killerplay13.tripcollab.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.UUID;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and verifies self-contained member tokens:
+ * {@code m1.<base64url(tripId|memberId|role|epoch)>.<base64url(hmac-sha256)>}.
+ * Verification is CPU only; revocation is checked separately against {@link MemberRevocationRegistry}.
+ * Disabled (and never issuing) when no secret is configured.
+ */
+public class MemberTokenSigner {
+
+  public record Claims(UUID tripId, UUID memberId, String role, int epoch) {}
+
+  static final String PREFIX = "m1.";
+
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final int PAYLOAD_LENGTH = 16 + 16 + 1 + 4;
+  private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+  private final Mac prototype;
+
+  public MemberTokenSigner(String secret) {
+    if (secret == null || secret.isBlank()) {
+      this.prototype = null;
+      return;
+    }
+    byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+    if (key.length < 32) {
+      throw new IllegalStateException("Member token secret must be at least 32 bytes");
+    }
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(new SecretKeySpec(key, ALGORITHM));
+      this.prototype = mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(ALGORITHM + " not available", e);
+    }
+  }
+
+  public boolean enabled() {
+    return prototype != null;
+  }
+
+  public static boolean isSigned(String token) {
+    return token != null && token.startsWith(PREFIX);
+  }
+
+  public String issue(UUID tripId, UUID memberId, String role, int epoch) {
+    if (!enabled()) throw new IllegalStateException("Member token signing is not configured");
+
+    ByteBuffer buf = ByteBuffer.allocate(PAYLOAD_LENGTH);
+    buf.putLong(tripId.getMostSignificantBits()).putLong(tripId.getLeastSignificantBits());
+    buf.putLong(memberId.getMostSignificantBits()).putLong(memberId.getLeastSignificantBits());
+    buf.put((byte) ("owner".equals(role) ? 'o' : 'm'));
+    buf.putInt(epoch);
+
+    String payload = B64.encodeToString(buf.array());
+    return PREFIX + payload + "." + B64.encodeToString(sign(payload));
+  }
+
+  /** @return the claims, or null when the token is malformed or the signature doesn't match */
+  public Claims verify(String token) {
+    if (!enabled() || !isSigned(token)) return null;
+
+    int dot = token.indexOf('.', PREFIX.length());
+    if (dot < 0 || token.indexOf('.', dot + 1) >= 0) return null;
+
+    String payload = token.substring(PREFIX.length(), dot);
+    byte[] raw;
+    byte[] sig;
+    try {
+      raw = B64_DECODER.decode(payload);
+      sig = B64_DECODER.decode(token.substring(dot + 1));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if (raw.length != PAYLOAD_LENGTH) return null;
+    if (!MessageDigest.isEqual(sig, sign(payload))) return null;
+
+    ByteBuffer buf = ByteBuffer.wrap(raw);
+    UUID tripId = new UUID(buf.getLong(), buf.getLong());
+    UUID memberId = new UUID(buf.getLong(), buf.getLong());
+    byte roleByte = buf.get();
+    String role = switch (roleByte) {
+      case 'o' -> "owner";
+      case 'm' -> "member";
+      default -> null;
+    };
+    if (role == null) return null;
+    return new Claims(tripId, memberId, role, buf.getInt());
+  }
+
+  private byte[] sign(String payload) {
+    Mac mac;
+    try {
+      mac = (Mac) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(ALGORITHM + " is not cloneable", e);
+    }
+    return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+  }
+}
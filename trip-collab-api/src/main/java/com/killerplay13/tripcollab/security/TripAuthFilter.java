@@ -0,0 +1,162 @@
+package com.killerplay13.tripcollab.security;
+
+import com.killerplay13.tripcollab.domain.TripMemberEntity;
+import com.killerplay13.tripcollab.repo.TripMemberRepository;
+import com.killerplay13.tripcollab.security.MemberPrincipalCache.CachedPrincipal;
+import com.killerplay13.tripcollab.service.MemberPresenceTracker;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.UUID;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Single auth stage for /api/trips/**: the request is classified once by {@link TripRouteTable},
+ * then either the invite token (join) or the member token is checked.
+ */
+public class TripAuthFilter extends OncePerRequestFilter {
+
+  public static final String ATTR_PRINCIPAL = "tripPrincipal";
+  public static final String ATTR_MEMBER_ID = "memberId";
+  public static final String ATTR_TRIP_ID = "tripId";
+  public static final String ATTR_ROLE = "role";
+
+  private final TripRouteTable routes = TripRouteTable.defaults();
+
+  private final InviteTokenGuard inviteTokenGuard;
+  private final TripMemberRepository tripMemberRepository;
+  private final MemberPrincipalCache principalCache;
+  private final MemberTokenSigner tokenSigner;
+  private final MemberRevocationRegistry revocationRegistry;
+  private final MemberPresenceTracker presenceTracker;
+
+  public TripAuthFilter(
+      InviteTokenGuard inviteTokenGuard,
+      TripMemberRepository tripMemberRepository,
+      MemberPrincipalCache principalCache,
+      MemberTokenSigner tokenSigner,
+      MemberRevocationRegistry revocationRegistry,
+      MemberPresenceTracker presenceTracker
+  ) {
+    this.inviteTokenGuard = inviteTokenGuard;
+    this.tripMemberRepository = tripMemberRepository;
+    this.principalCache = principalCache;
+    this.tokenSigner = tokenSigner;
+    this.revocationRegistry = revocationRegistry;
+    this.presenceTracker = presenceTracker;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      FilterChain filterChain
+  ) throws ServletException, IOException {
+
+    TripRouteTable.Match match = routes.classify(request.getMethod(), request.getRequestURI());
+    boolean ok = switch (match.access()) {
+      case PUBLIC -> true;
+      case INVITE -> checkInviteToken(request, response, match);
+      case MEMBER -> checkMemberToken(request, response, match);
+    };
+    if (ok) {
+      filterChain.doFilter(request, response);
+    }
+  }
+
+  private boolean checkInviteToken(HttpServletRequest request, HttpServletResponse response, TripRouteTable.Match match)
+      throws IOException {
+    String token = request.getHeader("X-Trip-Token");
+    if (token == null || token.isBlank()) {
+      FilterErrorUtil.writeJsonError(request, response, 401, "Missing X-Trip-Token");
+      return false;
+    }
+
+    UUID tripId = match.tripId();
+    if (tripId == null) {
+      FilterErrorUtil.writeJsonError(request, response, 400, "Invalid trip id");
+      return false;
+    }
+
+    String tokenHash = TripTokenUtil.sha256Hex(token.trim());
+    switch (inviteTokenGuard.check(tripId, request.getRemoteAddr(), tokenHash)) {
+      case ACCEPTED -> {
+        return true;
+      }
+      case RATE_LIMITED -> {
+        response.setHeader("Retry-After", Long.toString(inviteTokenGuard.retryAfterSeconds()));
+        FilterErrorUtil.writeJsonError(request, response, 429, "Too many join attempts");
+        return false;
+      }
+      default -> {
+        FilterErrorUtil.writeJsonError(request, response, 401, "Invalid trip token");
+        return false;
+      }
+    }
+  }
+
+  private boolean checkMemberToken(HttpServletRequest request, HttpServletResponse response, TripRouteTable.Match match)
+      throws IOException {
+    String token = request.getHeader("X-Member-Token");
+    if (token == null || token.isBlank()) {
+      FilterErrorUtil.writeJsonError(request, response, 401, "Missing X-Member-Token");
+      return false;
+    }
+
+    UUID tripId = match.tripId();
+    if (tripId == null) {
+      FilterErrorUtil.writeJsonError(request, response, 400, "Invalid trip id");
+      return false;
+    }
+
+    CachedPrincipal principal = resolvePrincipal(token.trim());
+    if (principal == null || !principal.active()) {
+      FilterErrorUtil.writeJsonError(request, response, 401, "Invalid member token");
+      return false;
+    }
+
+    if (!tripId.equals(principal.tripId())) {
+      FilterErrorUtil.writeJsonError(request, response, 403, "Member token does not belong to this trip");
+      return false;
+    }
+
+    request.setAttribute(ATTR_PRINCIPAL, new TripPrincipal(principal.tripId(), principal.memberId(), principal.role()));
+    request.setAttribute(ATTR_MEMBER_ID, principal.memberId());
+    request.setAttribute(ATTR_TRIP_ID, principal.tripId());
+    request.setAttribute(ATTR_ROLE, principal.role());
+    presenceTracker.touch(principal.memberId());
+    return true;
+  }
+
+  private CachedPrincipal resolvePrincipal(String token) {
+    // signed tokens are checked with CPU work only; before the revocation registry has loaded
+    // they go through the hash lookup below, which works because their hash is stored as well
+    if (tokenSigner.enabled() && MemberTokenSigner.isSigned(token) && revocationRegistry.ready()) {
+      MemberTokenSigner.Claims claims = tokenSigner.verify(token);
+      if (claims == null) return null;
+      boolean active = !revocationRegistry.isRevoked(claims.memberId(), claims.epoch());
+      return new CachedPrincipal(claims.memberId(), claims.tripId(), claims.role(), active);
+    }
+    return resolveByHash(TripTokenUtil.sha256Hex(token));
+  }
+
+  private CachedPrincipal resolveByHash(String tokenHash) {
+    CachedPrincipal cached = principalCache.get(tokenHash);
+    if (cached != null) return cached;
+
+    // inactive members are cached too, so a revoked token doesn't fall through to the DB every time
+    TripMemberEntity member = tripMemberRepository.findByMemberTokenHash(tokenHash).orElse(null);
+    if (member == null) return null;
+
+    CachedPrincipal principal = new CachedPrincipal(
+        member.getId(),
+        member.getTripId(),
+        member.getRole(),
+        Boolean.TRUE.equals(member.getIsActive())
+    );
+    principalCache.put(tokenHash, principal);
+    return principal;
+  }
+}
@@ -0,0 +1,11 @@
+package com.killerplay13.tripcollab.security;
+
+import java.util.UUID;
+
+/** Authenticated member for the current request, stored under {@link TripAuthFilter#ATTR_PRINCIPAL}. */
+public record TripPrincipal(UUID tripId, UUID memberId, String role) {
+
+  public boolean isOwner() {
+    return "owner".equals(role);
+  }
+}
@@ -0,0 +1,114 @@
+package com.killerplay13.tripcollab.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decides once per request which auth check applies, without regex matching.
+ * Patterns are split into segments at startup and matched against the uri in place;
+ * {@code {tripId}} captures and parses the trip id, {@code **} matches any remaining segments. First matching route wins.
+ */
+final class TripRouteTable {
+
+  enum Access {
+    /** no token required */
+    PUBLIC,
+    /** X-Trip-Token (invite) required: joining a trip */
+    INVITE,
+    /** X-Member-Token required */
+    MEMBER
+  }
+
+  /** @param tripId parsed trip id, or null when the route has none or it is not a valid UUID */
+  record Match(Access access, UUID tripId) {
+    static final Match PUBLIC = new Match(Access.PUBLIC, null);
+  }
+
+  private static final String TRIP_ID = "{tripId}";
+  private static final String REST = "**";
+
+  private record Route(String method, String[] segments, Access access) {}
+
+  private final List<Route> routes = new ArrayList<>();
+
+  TripRouteTable route(String method, String pattern, Access access) {
+    routes.add(new Route(method, split(pattern), access));
+    return this;
+  }
+
+  static TripRouteTable defaults() {
+    return new TripRouteTable()
+        .route("OPTIONS", "/**", Access.PUBLIC)
+        .route("POST", "/api/trips", Access.PUBLIC)
+        .route("POST", "/api/trips/{tripId}/members", Access.INVITE)
+        .route("*", "/api/trips/{tripId}/**", Access.MEMBER);
+  }
+
+  Match classify(String method, String uri) {
+    for (Route route : routes) {
+      if (!route.method().equals("*") && !route.method().equalsIgnoreCase(method)) continue;
+      Match m = match(route, uri == null ? "" : uri);
+      if (m != null) return m;
+    }
+    return Match.PUBLIC;
+  }
+
+  // walks the uri in place rather than splitting it, so a request allocates nothing but the trip id
+  private static Match match(Route route, String uri) {
+    int length = uri.length();
+    boolean more = length > 0 && !uri.equals("/");
+    int pos = length > 0 && uri.charAt(0) == '/' ? 1 : 0;
+    int tripStart = -1;
+    int tripEnd = -1;
+
+    for (String p : route.segments()) {
+      if (p.equals(REST)) {
+        return new Match(route.access(), parseUuid(uri, tripStart, tripEnd));
+      }
+      if (!more) return null;
+      int end = uri.indexOf('/', pos);
+      if (end < 0) {
+        end = length;
+        more = false;
+      }
+      if (p.equals(TRIP_ID)) {
+        tripStart = pos;
+        tripEnd = end;
+      } else if (end - pos != p.length() || !uri.startsWith(p, pos)) {
+        return null;
+      }
+      pos = end + 1;
+    }
+    if (more) return null;
+    return new Match(route.access(), parseUuid(uri, tripStart, tripEnd));
+  }
+
+  // "/api/trips/x/" -> [api, trips, x, ""]: a trailing slash is kept as an empty segment
+  private static String[] split(String path) {
+    if (path == null || path.isEmpty() || path.equals("/")) return new String[0];
+    int start = path.charAt(0) == '/' ? 1 : 0;
+    int count = 1;
+    for (int i = start; i < path.length(); i++) {
+      if (path.charAt(i) == '/') count++;
+    }
+    String[] out = new String[count];
+    int idx = 0;
+    for (int i = start; i <= path.length(); i++) {
+      if (i == path.length() || path.charAt(i) == '/') {
+        out[idx++] = path.substring(start, i);
+        start = i + 1;
+      }
+    }
+    return out;
+  }
+
+  private static UUID parseUuid(String uri, int start, int end) {
+    if (start < 0) return null;
+    try {
+      return UUID.fromString(uri.substring(start, end));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -2,34 +2,73 @@ package com.killerplay13.tripcollab.security;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 
 public final class TripTokenUtil {
-  private static final SecureRandom RND = new SecureRandom();
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  // digests are pooled rather than thread-local so virtual threads don't each pin their own instance
+  private static final int DIGEST_POOL_MAX = 64;
+  private static final ConcurrentLinkedQueue<MessageDigest> DIGESTS = new ConcurrentLinkedQueue<>();
+
+  // generators picked at random per call spread join bursts over several locks; each one still
+  // synchronizes inside nextBytes, so generation can block (see TripTokenUtilBenchmark)
+  private static final SecureRandom[] RANDOMS = newRandoms();
 
   // 32 bytes -> 64 hex chars (token)
   public static String generateToken() {
     byte[] bytes = new byte[32];
-    RND.nextBytes(bytes);
+    RANDOMS[ThreadLocalRandom.current().nextInt(RANDOMS.length)].nextBytes(bytes);
     return toHex(bytes);
   }
 
   public static String sha256Hex(String token) {
+    MessageDigest md = DIGESTS.poll();
+    if (md == null) md = newSha256();
     try {
-      MessageDigest md = MessageDigest.getInstance("SHA-256");
-      byte[] hash = md.digest(token.getBytes(StandardCharsets.UTF_8));
-      return toHex(hash);
-    } catch (Exception e) {
-      throw new IllegalStateException("SHA-256 not available", e);
+      return toHex(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } finally {
+      // digest() already reset it; the size check is approximate, which is fine for a cap
+      if (DIGESTS.size() < DIGEST_POOL_MAX) DIGESTS.offer(md);
     }
   }
 
   private static String toHex(byte[] bytes) {
-    StringBuilder sb = new StringBuilder(bytes.length * 2);
-    for (byte b : bytes) {
-      sb.append(String.format("%02x", b));
+    char[] out = new char[bytes.length * 2];
+    for (int i = 0, j = 0; i < bytes.length; i++) {
+      int v = bytes[i] & 0xff;
+      out[j++] = HEX[v >>> 4];
+      out[j++] = HEX[v & 0x0f];
+    }
+    return new String(out);
+  }
+
+  private static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private static SecureRandom[] newRandoms() {
+    int n = Math.max(2, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2));
+    SecureRandom[] randoms = new SecureRandom[n];
+    for (int i = 0; i < n; i++) {
+      SecureRandom rnd;
+      try {
+        // each DRBG instance is seeded once and has its own lock
+        rnd = SecureRandom.getInstance("DRBG");
+      } catch (NoSuchAlgorithmException e) {
+        rnd = new SecureRandom();
+      }
+      randoms[i] = rnd;
     }
-    return sb.toString();
+    return randoms;
   }
 
   private TripTokenUtil() {}
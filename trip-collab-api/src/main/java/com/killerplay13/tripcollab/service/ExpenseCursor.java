@@ -0,0 +1,37 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.ExpenseEntity;
+import com.killerplay13.tripcollab.error.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.UUID;
+
+/** Opaque keyset position in (expense_date, created_at, id) order. */
+record ExpenseCursor(LocalDate expenseDate, Instant createdAt, UUID id) {
+
+    static ExpenseCursor of(ExpenseEntity e) {
+        return new ExpenseCursor(e.getExpenseDate(), e.getCreatedAt(), e.getId());
+    }
+
+    String encode() {
+        String raw = expenseDate + "|" + createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns null for a missing cursor (first page). */
+    static ExpenseCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3) throw new IllegalArgumentException(raw);
+            return new ExpenseCursor(LocalDate.parse(parts[0]), Instant.parse(parts[1]), UUID.fromString(parts[2]));
+        } catch (RuntimeException e) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
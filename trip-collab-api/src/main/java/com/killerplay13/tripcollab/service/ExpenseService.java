@@ -2,22 +2,22 @@ package com.killerplay13.tripcollab.service;
 
 import com.killerplay13.tripcollab.domain.ExpenseEntity;
 import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
-import com.killerplay13.tripcollab.domain.TripMemberEntity;
+import com.killerplay13.tripcollab.error.ApiException;
 import com.killerplay13.tripcollab.repo.ExpenseRepository;
 import com.killerplay13.tripcollab.repo.ExpenseSplitRepository;
+import com.killerplay13.tripcollab.repo.MemberBalanceRepository;
 import com.killerplay13.tripcollab.repo.TripMemberRepository;
 import com.killerplay13.tripcollab.repo.TripRepository;
+import com.killerplay13.tripcollab.service.settlement.SettlementEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,12 +27,17 @@ public class ExpenseService {
 
     private static final String PAYMENT_SOURCE_PERSONAL = "PERSONAL";
     private static final String PAYMENT_SOURCE_SHARED_WALLET = "SHARED_WALLET";
+    private static final int MAX_PAGE_SIZE = 200;
 
     private final ExpenseRepository expenseRepository;
     private final ExpenseSplitRepository splitRepository;
     private final TripMemberRepository tripMemberRepository;
     private final TripRepository tripRepository;
     private final WalletCommandService walletCommandService;
+    private final MemberBalanceRepository memberBalanceRepository;
+    private final MemberBalanceService memberBalanceService;
+    private final List<SettlementEngine> settlementEngines;
+    private final TripVersionService tripVersionService;
 
     // ---------- Queries ----------
     public List<ExpenseEntity> listDay(UUID tripId, LocalDate day) {
@@ -43,27 +48,83 @@ public class ExpenseService {
         return expenseRepository.findByTripIdOrderByExpenseDateAscCreatedAtAsc(tripId);
     }
 
-    public List<ExpenseEntity> search(UUID tripId, String q, LocalDate from, LocalDate to) {
-        return expenseRepository.search(tripId, q, from, to);
+    /** Without q: all expenses in the date range by date. With q: best title matches first, at most limit. */
+    public List<ExpenseEntity> search(UUID tripId, String q, LocalDate from, LocalDate to, Integer limit) {
+        String keyword = q == null ? "" : q.trim();
+        if (keyword.isEmpty()) {
+            return expenseRepository.search(tripId, null, from, to);
+        }
+        int lim = limit == null ? 50 : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return expenseRepository.searchByTitle(tripId, keyword, from, to, lim);
+    }
+
+    public record ExpensePage(List<ExpenseEntity> items, String nextCursor) {}
+
+    /** Keyset page in (expenseDate, createdAt, id) order; nextCursor is null on the last page. */
+    public ExpensePage page(UUID tripId, String q, LocalDate from, LocalDate to, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        var after = ExpenseCursor.decode(cursor);
+        // one extra row tells whether another page exists
+        var rows = after == null
+                ? expenseRepository.findFirstPage(tripId, q, from, to, size + 1)
+                : expenseRepository.findPageAfter(tripId, q, from, to,
+                        after.expenseDate(), after.createdAt(), after.id(), size + 1);
+        if (rows.size() <= size) {
+            return new ExpensePage(rows, null);
+        }
+        var items = List.copyOf(rows.subList(0, size));
+        return new ExpensePage(items, ExpenseCursor.of(items.get(size - 1)).encode());
     }
 
     public ExpenseEntity get(UUID tripId, UUID expenseId) {
         return expenseRepository.findByIdAndTripId(expenseId, tripId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Expense not found"));
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Expense not found"));
     }
 
     public List<ExpenseSplitEntity> getSplits(UUID expenseId) {
         return splitRepository.findByExpenseId(expenseId);
     }
 
+    /** Expenses of the trip with the given ids, in request order; unknown ids are skipped. */
+    public List<ExpenseEntity> getMany(UUID tripId, List<UUID> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+        var unique = new LinkedHashSet<>(ids);
+        if (unique.size() > MAX_PAGE_SIZE) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "at most " + MAX_PAGE_SIZE + " ids per request");
+        }
+        var byId = new HashMap<UUID, ExpenseEntity>();
+        for (var e : expenseRepository.findByTripIdAndIdIn(tripId, unique)) byId.put(e.getId(), e);
+        var result = new ArrayList<ExpenseEntity>(byId.size());
+        for (var id : unique) {
+            var e = byId.get(id);
+            if (e != null) result.add(e);
+        }
+        return result;
+    }
+
+    /** Splits of all given expenses with one query, grouped by expense id. */
+    public Map<UUID, List<ExpenseSplitEntity>> getSplitsByExpenseIds(Collection<ExpenseEntity> expenses) {
+        if (expenses.isEmpty()) return Map.of();
+        var ids = expenses.stream().map(ExpenseEntity::getId).toList();
+        var grouped = new HashMap<UUID, List<ExpenseSplitEntity>>();
+        for (var s : splitRepository.findByExpenseIdIn(ids)) {
+            grouped.computeIfAbsent(s.getExpenseId(), k -> new ArrayList<>()).add(s);
+        }
+        return grouped;
+    }
+
     public List<ExpenseSplitEntity> getSplitsByExpense(UUID tripId, UUID expenseId) {
         get(tripId, expenseId);
         return splitRepository.findByExpenseId(expenseId);
     }
 
     // ---------- Commands ----------
+
+    /** An expense together with the splits persisted by the same command. */
+    public record ExpenseWithSplits(ExpenseEntity expense, List<ExpenseSplitEntity> splits) {}
+
     @Transactional
-    public ExpenseEntity create(
+    public ExpenseWithSplits create(
             UUID tripId,
             String title,
             BigDecimal amount,
@@ -86,13 +147,13 @@ public class ExpenseService {
 
         if (isSharedWallet) {
             if (originalCurrency == null || originalCurrency.isBlank()) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "originalCurrency is required for shared wallet payments");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "originalCurrency is required for shared wallet payments");
             }
             if (originalAmount == null) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "originalAmount is required for shared wallet payments");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "originalAmount is required for shared wallet payments");
             }
             if (fxRate == null) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fxRate is required for shared wallet payments");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "fxRate is required for shared wallet payments");
             }
         }
 
@@ -102,7 +163,7 @@ public class ExpenseService {
 
         FxResolved fx = resolveAmountInTripCurrency(tripCurrency, amount, currency, originalAmount, originalCurrency, fxRate);
         if (isSharedWallet && fx.overridden()) {
-            throw new ResponseStatusException(
+            throw new ApiException(
                     HttpStatus.BAD_REQUEST,
                     "Amount override is not allowed for SHARED_WALLET. Top-level amount must equal original.amount * original.fxRate in trip base currency."
             );
@@ -129,8 +190,10 @@ public class ExpenseService {
 
         expense = expenseRepository.save(expense);
 
-        var splits = buildSplits(expense.getId(), fx.finalAmount(), splitMethod, participantMemberIds, customSplits);
-        splitRepository.saveAll(splits);
+        // inserts are deferred to flush, where hibernate batches them (see jdbc.batch_size)
+        var splits = splitRepository.saveAll(
+                buildSplits(expense.getId(), fx.finalAmount(), splitMethod, participantMemberIds, customSplits));
+        memberBalanceService.apply(tripId, null, MemberBalanceService.Effect.of(expense, splits));
 
         if (isSharedWallet) {
             var walletCurrency = normalizedOriginalCurrency != null ? normalizedOriginalCurrency : tripCurrency;
@@ -149,11 +212,12 @@ public class ExpenseService {
             );
         }
 
-        return expense;
+        tripVersionService.bump(tripId);
+        return new ExpenseWithSplits(expense, splits);
     }
 
     @Transactional
-    public ExpenseEntity update(
+    public ExpenseWithSplits update(
             UUID tripId,
             UUID expenseId,
             String title,
@@ -172,7 +236,7 @@ public class ExpenseService {
     ) {
         var expense = get(tripId, expenseId);
         if (PAYMENT_SOURCE_SHARED_WALLET.equals(expense.getPaymentSource())) {
-            throw new ResponseStatusException(
+            throw new ApiException(
                     HttpStatus.CONFLICT,
                     "Editing shared-wallet-paid expenses is not supported in v0.1"
             );
@@ -184,6 +248,10 @@ public class ExpenseService {
 
         FxResolved fx = resolveAmountInTripCurrency(tripCurrency, amount, currency, originalAmount, originalCurrency, fxRate);
 
+        // captured before the entity is mutated
+        var existingSplits = splitRepository.findByExpenseId(expenseId);
+        var before = MemberBalanceService.Effect.of(expense, existingSplits);
+
         expense.setTitle(requireNonBlank(title, "title"));
         expense.setAmount(fx.finalAmount());
         expense.setCurrency(tripCurrency);
@@ -198,13 +266,105 @@ public class ExpenseService {
 
         expenseRepository.save(expense);
 
-        // Replace splits
-        splitRepository.deleteByExpenseId(expenseId);
-        splitRepository.flush();
-        var splits = buildSplits(expenseId, fx.finalAmount(), splitMethod, participantMemberIds, customSplits);
-        splitRepository.saveAll(splits);
+        var splits = replaceSplits(
+                existingSplits,
+                buildSplits(expenseId, fx.finalAmount(), splitMethod, participantMemberIds, customSplits));
+        memberBalanceService.apply(tripId, before, MemberBalanceService.Effect.of(expense, splits));
+
+        tripVersionService.bump(tripId);
+        return new ExpenseWithSplits(expense, splits);
+    }
+
+    /** Partial update: null fields are left as they are. */
+    public record ExpensePatch(
+            String title,
+            BigDecimal amount,
+            String currency,
+            UUID paidByMemberId,
+            LocalDate expenseDate,
+            String note,
+            SplitMethod splitMethod,
+            List<UUID> participantMemberIds,
+            List<MemberAmount> customSplits,
+            OriginalPatch original
+    ) {}
+
+    public record OriginalPatch(BigDecimal amount, String currency, BigDecimal fxRate, String fxSource) {}
+
+    @Transactional
+    public ExpenseWithSplits patch(UUID tripId, UUID expenseId, ExpensePatch patch) {
+        var expense = get(tripId, expenseId);
+        if (PAYMENT_SOURCE_SHARED_WALLET.equals(expense.getPaymentSource())) {
+            throw new ApiException(
+                    HttpStatus.CONFLICT,
+                    "Editing shared-wallet-paid expenses is not supported in v0.1"
+            );
+        }
+
+        boolean splitsSent = patch.splitMethod() != null
+                || patch.participantMemberIds() != null
+                || patch.customSplits() != null;
+        boolean moneySent = patch.amount() != null || patch.currency() != null || patch.original() != null;
+
+        if (patch.paidByMemberId() != null || splitsSent) {
+            validateMembers(tripId, patch.paidByMemberId(), patch.participantMemberIds(), patch.customSplits(),
+                    patch.paidByMemberId() != null);
+        }
+
+        var existingSplits = splitRepository.findByExpenseId(expenseId);
+        var before = MemberBalanceService.Effect.of(expense, existingSplits);
+
+        if (moneySent) {
+            String tripCurrency = getTripCurrency(tripId);
+            var original = patch.original();
+            BigDecimal originalAmount = original != null ? original.amount() : expense.getOriginalAmount();
+            String originalCurrency = original != null ? original.currency() : expense.getOriginalCurrency();
+            BigDecimal fxRate = original != null ? original.fxRate() : expense.getFxRate();
+            String fxSource = original != null ? original.fxSource() : expense.getFxSource();
+            // a new original without amount means "recompute from original", as in PUT
+            BigDecimal amount = patch.amount() != null ? patch.amount() : original != null ? null : expense.getAmount();
+            String currency = patch.currency() != null ? patch.currency() : tripCurrency;
+
+            FxResolved fx = resolveAmountInTripCurrency(tripCurrency, amount, currency, originalAmount, originalCurrency, fxRate);
+            if (fx.finalAmount().compareTo(expense.getAmount()) != 0 && patch.splitMethod() == null) {
+                throw new ApiException(HttpStatus.BAD_REQUEST, "splitMethod is required when amount changes");
+            }
+
+            if (fx.finalAmount().compareTo(expense.getAmount()) != 0) expense.setAmount(fx.finalAmount());
+            if (!tripCurrency.equals(expense.getCurrency())) expense.setCurrency(tripCurrency);
+            if (original != null) {
+                expense.setOriginalAmount(normalizeMoneyNullable(originalAmount));
+                expense.setOriginalCurrency(normalizeCurrencyNullable(originalCurrency));
+                expense.setFxRate(fxRate);
+                expense.setFxSource(fxSource);
+            }
+            if (!Objects.equals(fx.overridden(), expense.getAmountOverridden())) expense.setAmountOverridden(fx.overridden());
+        }
+
+        if (patch.title() != null) {
+            var title = requireNonBlank(patch.title(), "title");
+            if (!title.equals(expense.getTitle())) expense.setTitle(title);
+        }
+        if (patch.paidByMemberId() != null && !patch.paidByMemberId().equals(expense.getPaidByMemberId())) {
+            expense.setPaidByMemberId(patch.paidByMemberId());
+        }
+        if (patch.expenseDate() != null && !patch.expenseDate().equals(expense.getExpenseDate())) {
+            expense.setExpenseDate(patch.expenseDate());
+        }
+        if (patch.note() != null && !patch.note().equals(expense.getNote())) {
+            expense.setNote(patch.note());
+        }
+
+        var splits = splitsSent
+                ? replaceSplits(existingSplits, buildSplits(
+                        expenseId, expense.getAmount(), patch.splitMethod(), patch.participantMemberIds(), patch.customSplits()))
+                : existingSplits;
+
+        // the expense is managed: only a real change makes hibernate issue an UPDATE at flush
+        memberBalanceService.apply(tripId, before, MemberBalanceService.Effect.of(expense, splits));
 
-        return expense;
+        tripVersionService.bump(tripId);
+        return new ExpenseWithSplits(expense, splits);
     }
 
     @Transactional
@@ -212,24 +372,65 @@ public class ExpenseService {
         // ensure exists and belongs to trip
         var expense = get(tripId, expenseId);
         if (PAYMENT_SOURCE_SHARED_WALLET.equals(expense.getPaymentSource())) {
-            throw new ResponseStatusException(
+            throw new ApiException(
                     HttpStatus.CONFLICT,
                     "Deleting shared-wallet-paid expenses is not supported in v0.1"
             );
         }
+        var splits = splitRepository.findByExpenseId(expenseId);
+        memberBalanceService.apply(tripId, MemberBalanceService.Effect.of(expense, splits), null);
+
         // splits cascade by FK, but we delete explicitly to be safe/clear
-        splitRepository.deleteByExpenseId(expenseId);
+        if (!splits.isEmpty()) {
+            splitRepository.deleteAllByIdIn(splits.stream().map(ExpenseSplitEntity::getId).toList());
+        }
         expenseRepository.deleteByIdAndTripId(expenseId, tripId);
+        tripVersionService.bump(tripId);
     }
 
     @Transactional
     public ExpenseEntity move(UUID tripId, UUID expenseId, LocalDate newDate) {
         if (newDate == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "newDate is required");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "newDate is required");
         }
         var expense = get(tripId, expenseId);
         expense.setExpenseDate(newDate);
-        return expenseRepository.save(expense);
+        var saved = expenseRepository.save(expense);
+        tripVersionService.bump(tripId);
+        return saved;
+    }
+
+    /**
+     * Brings the stored splits in line with {@code desired}: changed shares are updated in place,
+     * new members inserted and removed members deleted with one bulk DELETE.
+     * Splits whose share is unchanged are not written at all.
+     */
+    private List<ExpenseSplitEntity> replaceSplits(List<ExpenseSplitEntity> existing, List<ExpenseSplitEntity> desired) {
+        var current = new HashMap<UUID, ExpenseSplitEntity>();
+        for (var s : existing) current.put(s.getMemberId(), s);
+
+        var result = new ArrayList<ExpenseSplitEntity>(desired.size());
+        var inserts = new ArrayList<ExpenseSplitEntity>();
+        for (var want : desired) {
+            var have = current.remove(want.getMemberId());
+            if (have == null) {
+                inserts.add(want);
+                result.add(want);
+                continue;
+            }
+            if (have.getShareAmount().compareTo(want.getShareAmount()) != 0) {
+                have.setShareAmount(want.getShareAmount());
+            }
+            result.add(have);
+        }
+
+        if (!current.isEmpty()) {
+            splitRepository.deleteAllByIdIn(current.values().stream().map(ExpenseSplitEntity::getId).toList());
+        }
+        if (!inserts.isEmpty()) {
+            splitRepository.saveAll(inserts);
+        }
+        return result;
     }
 
     // ---------- Split building ----------
@@ -262,33 +463,26 @@ public class ExpenseService {
     ) {}
 
     public List<MemberSummary> summary(UUID tripId) {
-        String tripCurrency = getTripCurrency(tripId);
-        // 1) members（用你已經有的 listActive）
-        List<TripMemberEntity> members = tripMemberRepository.findByTripIdAndIsActiveTrueOrderByJoinedAtAsc(tripId);
-
-        // 2) paid map
-        Map<UUID, BigDecimal> paidMap = expenseRepository.sumPaidByMember(tripId).stream()
-                .collect(Collectors.toMap(
-                        row -> (UUID) row[0],
-                        row -> ((BigDecimal) row[1]).setScale(2)
-                ));
-
-        // 3) owed map
-        Map<UUID, BigDecimal> owedMap = splitRepository.sumOwedByMember(tripId).stream()
-                .collect(Collectors.toMap(
-                        row -> (UUID) row[0],
-                        row -> ((BigDecimal) row[1]).setScale(2)
-                ));
-
-        // 4) merge
-        return members.stream().map(m -> {
-            BigDecimal paid = paidMap.getOrDefault(m.getId(), BigDecimal.ZERO).setScale(2);
-            BigDecimal owed = owedMap.getOrDefault(m.getId(), BigDecimal.ZERO).setScale(2);
+        return summary(tripId, getTripCurrency(tripId));
+    }
+
+    private List<MemberSummary> summary(UUID tripId, String tripCurrency) {
+        // active members joined with their running totals in member_balances
+        return memberBalanceRepository.findActiveMemberTotals(tripId).stream().map(row -> {
+            BigDecimal paid = ((BigDecimal) row[2]).setScale(2);
+            BigDecimal owed = ((BigDecimal) row[3]).setScale(2);
             BigDecimal net = paid.subtract(owed).setScale(2);
-            return new MemberSummary(m.getId(), m.getNickname(), paid, owed, net, tripCurrency);
+            return new MemberSummary((UUID) row[0], (String) row[1], paid, owed, net, tripCurrency);
         }).toList();
     }
 
+    public MemberBalanceService.DriftReport verifyBalances(UUID tripId, boolean repair) {
+        if (!tripRepository.existsById(tripId)) {
+            throw new ApiException(HttpStatus.NOT_FOUND, "Trip not found");
+        }
+        return memberBalanceService.verify(tripId, repair);
+    }
+
     public record SettlementTransfer(
             UUID fromMemberId,
             String fromNickname,
@@ -299,72 +493,54 @@ public class ExpenseService {
     ) {}
 
     public List<SettlementTransfer> settlements(UUID tripId) {
-        String tripCurrency = getTripCurrency(tripId);
-
-        var summaries = summary(tripId);
+        return settlements(tripId, SettlementEngine.Mode.GREEDY);
+    }
 
-        // creditors: net > 0 (should receive)
-        // debtors: net < 0 (should pay)
-        record Node(UUID id, String name, BigDecimal remaining) {}
+    public List<SettlementTransfer> settlements(UUID tripId, SettlementEngine.Mode mode) {
+        String tripCurrency = getTripCurrency(tripId);
 
-        List<Node> creditors = new ArrayList<>();
-        List<Node> debtors = new ArrayList<>();
+        // stable deterministic order: engines work on indexes into this list
+        var summaries = new ArrayList<>(summary(tripId, tripCurrency));
+        summaries.sort(Comparator.comparing(MemberSummary::memberId));
 
-        for (var s : summaries) {
-            var net = s.net().setScale(2);
-            int cmp = net.compareTo(BigDecimal.ZERO);
-            if (cmp > 0) {
-                creditors.add(new Node(s.memberId(), s.nickname(), net));
-            } else if (cmp < 0) {
-                debtors.add(new Node(s.memberId(), s.nickname(), net.abs())); // use positive remaining to pay
-            }
+        long[] nets = new long[summaries.size()];
+        for (int k = 0; k < nets.length; k++) {
+            nets[k] = summaries.get(k).net().movePointRight(2).longValueExact();
         }
 
-        // stable deterministic order (optional but recommended)
-        creditors.sort(Comparator.comparing(Node::id));
-        debtors.sort(Comparator.comparing(Node::id));
-
         List<SettlementTransfer> transfers = new ArrayList<>();
-        int i = 0, j = 0;
-
-        while (i < debtors.size() && j < creditors.size()) {
-            var d = debtors.get(i);
-            var c = creditors.get(j);
-
-            BigDecimal pay = d.remaining().min(c.remaining()).setScale(2);
-            if (pay.compareTo(BigDecimal.ZERO) > 0) {
-                transfers.add(new SettlementTransfer(
-                        d.id(), d.name(),
-                        c.id(), c.name(),
-                        pay,
-                        tripCurrency
-                ));
-            }
-
-            BigDecimal dLeft = d.remaining().subtract(pay).setScale(2);
-            BigDecimal cLeft = c.remaining().subtract(pay).setScale(2);
-
-            if (dLeft.compareTo(BigDecimal.ZERO) == 0) i++;
-            else debtors.set(i, new Node(d.id(), d.name(), dLeft));
-
-            if (cLeft.compareTo(BigDecimal.ZERO) == 0) j++;
-            else creditors.set(j, new Node(c.id(), c.name(), cLeft));
+        for (var t : settlementEngine(mode).settle(nets)) {
+            var from = summaries.get(t.from());
+            var to = summaries.get(t.to());
+            transfers.add(new SettlementTransfer(
+                    from.memberId(), from.nickname(),
+                    to.memberId(), to.nickname(),
+                    BigDecimal.valueOf(t.cents(), 2),
+                    tripCurrency
+            ));
         }
-
         return transfers;
     }
 
+    private SettlementEngine settlementEngine(SettlementEngine.Mode mode) {
+        var wanted = mode != null ? mode : SettlementEngine.Mode.GREEDY;
+        for (var engine : settlementEngines) {
+            if (engine.mode() == wanted) return engine;
+        }
+        throw new IllegalStateException("No settlement engine for mode " + wanted);
+    }
+
 
     private List<ExpenseSplitEntity> buildEqualSplits(UUID expenseId, BigDecimal total, List<UUID> participants) {
         if (participants == null || participants.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "participantMemberIds is required for EQUAL split");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "participantMemberIds is required for EQUAL split");
         }
 
         var seen = new HashSet<UUID>();
         for (var mid : participants) {
             if (mid == null) continue;
             if (!seen.add(mid)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duplicate memberId in participantMemberIds");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "duplicate memberId in participantMemberIds");
             }
         }
 
@@ -392,7 +568,7 @@ public class ExpenseService {
 
     private List<ExpenseSplitEntity> buildCustomAmountSplits(UUID expenseId, BigDecimal total, List<MemberAmount> customSplits) {
         if (customSplits == null || customSplits.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "customSplits is required for CUSTOM_AMOUNT split");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "customSplits is required for CUSTOM_AMOUNT split");
         }
 
         BigDecimal sum = BigDecimal.ZERO;
@@ -401,14 +577,14 @@ public class ExpenseService {
 
         for (var s : customSplits) {
             if (s == null || s.memberId() == null) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "customSplits.memberId is required");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "customSplits.memberId is required");
             }
             if (!seen.add(s.memberId())) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duplicate memberId in customSplits");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "duplicate memberId in customSplits");
             }
             BigDecimal amt = normalizeMoney(s.amount());
             if (amt.compareTo(BigDecimal.ZERO) < 0) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "customSplits.amount must be >= 0");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "customSplits.amount must be >= 0");
             }
             sum = sum.add(amt);
             result.add(ExpenseSplitEntity.builder()
@@ -419,14 +595,14 @@ public class ExpenseService {
         }
 
         if (sum.compareTo(total) != 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sum(customSplits.amount) must equal total amount");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "sum(customSplits.amount) must equal total amount");
         }
         return result;
     }
 
     private String getTripCurrency(UUID tripId) {
         var trip = tripRepository.findById(tripId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Trip not found"));
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Trip not found"));
         String currency = trip.getCurrency();
         if (currency == null || currency.isBlank()) {
             return "TWD";
@@ -444,7 +620,7 @@ public class ExpenseService {
     ) {
         String normalizedReqCurrency = normalizeCurrencyNullable(reqCurrency);
         if (normalizedReqCurrency == null || !normalizedReqCurrency.equals(tripCurrency)) {
-            throw new ResponseStatusException(
+            throw new ApiException(
                     HttpStatus.BAD_REQUEST,
                     "currency must equal trip base currency (" + tripCurrency + "). Use originalAmount/originalCurrency + fxRate for foreign expenses."
             );
@@ -454,14 +630,14 @@ public class ExpenseService {
         if (normalizedOriginalCurrency == null) {
             BigDecimal finalAmount = normalizeMoneyRequired(reqAmount, "amount");
             if (finalAmount.compareTo(BigDecimal.ZERO) <= 0) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "amount must be > 0");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "amount must be > 0");
             }
             return new FxResolved(finalAmount, null, false);
         }
 
         BigDecimal checkedOriginalAmount = normalizeMoneyRequired(originalAmount, "original.amount");
         if (checkedOriginalAmount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "original.amount must be > 0");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "original.amount must be > 0");
         }
         BigDecimal checkedFxRate = requirePositiveNumber(fxRate, "original.fxRate");
         BigDecimal computed = checkedOriginalAmount.multiply(checkedFxRate).setScale(2, RoundingMode.HALF_UP);
@@ -476,6 +652,8 @@ public class ExpenseService {
     }
 
     // ---------- Validation helpers ----------
+
+    /** Validates payer/participants against the trip's active members with one query; first offender wins. */
     private void validateMembers(
             UUID tripId,
             UUID paidBy,
@@ -483,19 +661,34 @@ public class ExpenseService {
             List<MemberAmount> customSplits,
             boolean requirePaidBy
     ) {
-        if (requirePaidBy) {
-            if (paidBy == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "paidByMemberId is required");
-            if (!tripMemberRepository.existsByIdAndTripIdAndIsActiveTrue(paidBy, tripId)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "paidByMemberId is not an active member of this trip");
+        if (requirePaidBy && paidBy == null) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "paidByMemberId is required");
+        }
+
+        var ids = new HashSet<UUID>();
+        if (requirePaidBy) ids.add(paidBy);
+        if (participants != null) {
+            for (var mid : participants) {
+                if (mid != null) ids.add(mid);
             }
         }
+        if (customSplits != null) {
+            for (var s : customSplits) {
+                if (s != null && s.memberId() != null) ids.add(s.memberId());
+            }
+        }
+        Set<UUID> active = ids.isEmpty() ? Set.of() : tripMemberRepository.findActiveIdsByTripIdAndIdIn(tripId, ids);
+
+        if (requirePaidBy && !active.contains(paidBy)) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "paidByMemberId is not an active member of this trip");
+        }
 
         // for EQUAL participants
         if (participants != null) {
             for (var mid : participants) {
                 if (mid == null) continue;
-                if (!tripMemberRepository.existsByIdAndTripIdAndIsActiveTrue(mid, tripId)) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "participant is not an active member of this trip: " + mid);
+                if (!active.contains(mid)) {
+                    throw new ApiException(HttpStatus.BAD_REQUEST, "participant is not an active member of this trip: " + mid);
                 }
             }
         }
@@ -504,25 +697,25 @@ public class ExpenseService {
         if (customSplits != null) {
             for (var s : customSplits) {
                 if (s == null || s.memberId() == null) continue;
-                if (!tripMemberRepository.existsByIdAndTripIdAndIsActiveTrue(s.memberId(), tripId)) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "customSplits member is not an active member of this trip: " + s.memberId());
+                if (!active.contains(s.memberId())) {
+                    throw new ApiException(HttpStatus.BAD_REQUEST, "customSplits member is not an active member of this trip: " + s.memberId());
                 }
             }
         }
     }
 
     private static String requireNonBlank(String v, String field) {
-        if (v == null || v.isBlank()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " is required");
+        if (v == null || v.isBlank()) throw new ApiException(HttpStatus.BAD_REQUEST, field + " is required");
         return v.trim();
     }
 
     private static BigDecimal normalizeMoney(BigDecimal v) {
-        if (v == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "amount is required");
+        if (v == null) throw new ApiException(HttpStatus.BAD_REQUEST, "amount is required");
         return v.setScale(2, RoundingMode.HALF_UP);
     }
 
     private static BigDecimal normalizeMoneyRequired(BigDecimal v, String field) {
-        if (v == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " is required");
+        if (v == null) throw new ApiException(HttpStatus.BAD_REQUEST, field + " is required");
         return v.setScale(2, RoundingMode.HALF_UP);
     }
 
@@ -532,9 +725,9 @@ public class ExpenseService {
     }
 
     private static BigDecimal requirePositiveNumber(BigDecimal v, String field) {
-        if (v == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " is required");
+        if (v == null) throw new ApiException(HttpStatus.BAD_REQUEST, field + " is required");
         if (v.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " must be > 0");
+            throw new ApiException(HttpStatus.BAD_REQUEST, field + " must be > 0");
         }
         return v;
     }
@@ -542,14 +735,14 @@ public class ExpenseService {
     private static String normalizeCurrency(String ccy) {
         if (ccy == null || ccy.isBlank()) return "TWD";
         var v = ccy.trim().toUpperCase(Locale.ROOT);
-        if (v.length() != 3) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "currency must be 3 letters");
+        if (v.length() != 3) throw new ApiException(HttpStatus.BAD_REQUEST, "currency must be 3 letters");
         return v;
     }
 
     private static String normalizeCurrencyNullable(String ccy) {
         if (ccy == null || ccy.isBlank()) return null;
         var v = ccy.trim().toUpperCase(Locale.ROOT);
-        if (v.length() != 3) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "currency must be 3 letters");
+        if (v.length() != 3) throw new ApiException(HttpStatus.BAD_REQUEST, "currency must be 3 letters");
         return v;
     }
 
@@ -559,7 +752,7 @@ public class ExpenseService {
         }
         String v = paymentSource.trim().toUpperCase(Locale.ROOT);
         if (!PAYMENT_SOURCE_PERSONAL.equals(v) && !PAYMENT_SOURCE_SHARED_WALLET.equals(v)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "paymentSource is invalid");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "paymentSource is invalid");
         }
         return v;
     }
@@ -0,0 +1,89 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.ExpenseEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Reads a trip's expenses row by row through a JDBC cursor, bypassing the persistence context.
+ * PostgreSQL only honours the fetch size inside a transaction, hence the read-only TransactionTemplate.
+ */
+@Component
+public class ExpenseStreamReader {
+
+    private static final String SQL = """
+        SELECT id, trip_id, title, amount, currency, paid_by_member_id, expense_date, note,
+               created_by_member_id, created_at, updated_at, original_amount, original_currency,
+               fx_rate, fx_source, amount_overridden, payment_source
+        FROM expenses
+        WHERE trip_id = ?
+        ORDER BY expense_date, created_at, id
+        """;
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(ExpenseEntity expense) throws Exception;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExpenseStreamReader(
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            @Value("${tripcollab.expenses.stream-fetch-size:500}") int fetchSize
+    ) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /** Calls {@code consumer} for every expense of the trip in (expense_date, created_at, id) order. */
+    public void forEach(UUID tripId, RowConsumer consumer) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.query(SQL, rs -> {
+                    try {
+                        consumer.accept(map(rs));
+                    } catch (SQLException | RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Expense stream consumer failed", e);
+                    }
+                }, tripId));
+    }
+
+    private static ExpenseEntity map(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return ExpenseEntity.builder()
+                .id(rs.getObject("id", UUID.class))
+                .tripId(rs.getObject("trip_id", UUID.class))
+                .title(rs.getString("title"))
+                .amount(rs.getBigDecimal("amount"))
+                .currency(rs.getString("currency"))
+                .paidByMemberId(rs.getObject("paid_by_member_id", UUID.class))
+                .expenseDate(rs.getObject("expense_date", LocalDate.class))
+                .note(rs.getString("note"))
+                .createdByMemberId(rs.getObject("created_by_member_id", UUID.class))
+                .createdAt(createdAt != null ? createdAt.toInstant() : null)
+                .updatedAt(updatedAt != null ? updatedAt.toInstant() : null)
+                .originalAmount(rs.getBigDecimal("original_amount"))
+                .originalCurrency(rs.getString("original_currency"))
+                .fxRate(rs.getBigDecimal("fx_rate"))
+                .fxSource(rs.getString("fx_source"))
+                .amountOverridden(rs.getBoolean("amount_overridden"))
+                .paymentSource(rs.getString("payment_source"))
+                .build();
+    }
+}
@@ -0,0 +1,216 @@
+package com.killerplay13.tripcollab.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.killerplay13.tripcollab.domain.IdempotencyKeyEntity;
+import com.killerplay13.tripcollab.error.ApiErrorWriter;
+import com.killerplay13.tripcollab.error.ApiException;
+import com.killerplay13.tripcollab.repo.IdempotencyKeyRepository;
+import com.killerplay13.tripcollab.security.TripTokenUtil;
+import com.killerplay13.tripcollab.support.BoundedTtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a write at most once per (trip, Idempotency-Key) and replays its serialized response to
+ * retries. The response is stored in the write's own transaction, so a key exists exactly when
+ * its command committed; recent responses are also kept in memory. A duplicate arriving while
+ * the first is still running waits for it instead of executing the command again.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final MediaType JSON_UTF8 = MediaType.valueOf(ApiErrorWriter.CONTENT_TYPE);
+
+    private record Stored(String requestHash, int status, byte[] body) {}
+
+    private record Outcome(Stored stored, boolean replayed) {}
+
+    /** Thrown inside the write transaction to roll it back when the key was stored concurrently. */
+    private static final class AlreadyStored extends RuntimeException {
+        AlreadyStored() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final IdempotencyKeyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final BoundedTtlCache<String, Stored> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<Stored>> inFlight = new ConcurrentHashMap<>();
+    private final Duration waitTimeout;
+    private final Duration retention;
+
+    public IdempotencyService(
+            IdempotencyKeyRepository repository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${tripcollab.idempotency.cache-max-size:10000}") int cacheMaxSize,
+            @Value("${tripcollab.idempotency.cache-ttl:10m}") Duration cacheTtl,
+            @Value("${tripcollab.idempotency.wait-timeout:30s}") Duration waitTimeout,
+            @Value("${tripcollab.idempotency.retention:24h}") Duration retention
+    ) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cache = new BoundedTtlCache<>(cacheMaxSize, cacheTtl);
+        this.waitTimeout = waitTimeout;
+        this.retention = retention;
+    }
+
+    /**
+     * Executes {@code command} and answers with its result as {@code status}, unless {@code key}
+     * was already used on this trip: then the stored response is returned without running it.
+     * Without a key the command simply runs. {@code path} and {@code request} identify the
+     * request, so reusing a key for a different one is rejected with 422.
+     */
+    public ResponseEntity<?> execute(
+            UUID tripId,
+            String key,
+            String path,
+            Object request,
+            HttpStatus status,
+            Supplier<?> command
+    ) {
+        if (key == null || key.isBlank()) {
+            return ResponseEntity.status(status).body(command.get());
+        }
+        String idemKey = key.trim();
+        if (idemKey.length() > MAX_KEY_LENGTH) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = TripTokenUtil.sha256Hex(path + "\n" + serializeToString(request));
+        String cacheKey = tripId + "|" + idemKey;
+
+        while (true) {
+            Stored cached = cache.get(cacheKey);
+            if (cached != null) {
+                return respond(new Outcome(cached, true), requestHash);
+            }
+
+            var mine = new CompletableFuture<Stored>();
+            var running = inFlight.putIfAbsent(cacheKey, mine);
+            if (running != null) {
+                Stored done = await(running);
+                if (done != null) {
+                    return respond(new Outcome(done, true), requestHash);
+                }
+                // the first attempt failed and stored nothing: run it ourselves
+                continue;
+            }
+
+            Stored result = null;
+            try {
+                var outcome = runOnce(tripId, idemKey, requestHash, status, command);
+                result = outcome.stored();
+                cache.put(cacheKey, result);
+                return respond(outcome, requestHash);
+            } finally {
+                inFlight.remove(cacheKey, mine);
+                mine.complete(result);
+            }
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${tripcollab.idempotency.purge-interval-ms:3600000}",
+            fixedDelayString = "${tripcollab.idempotency.purge-interval-ms:3600000}"
+    )
+    @Transactional
+    public void purgeExpired() {
+        int purged = repository.deleteOlderThan(Instant.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} idempotency keys older than {}", purged, retention);
+        }
+    }
+
+    private Outcome runOnce(UUID tripId, String idemKey, String requestHash, HttpStatus status, Supplier<?> command) {
+        var existing = repository.findByTripIdAndIdemKey(tripId, idemKey);
+        if (existing.isPresent()) {
+            return new Outcome(toStored(existing.get()), true);
+        }
+        try {
+            return transactionTemplate.execute(tx -> {
+                byte[] body = serialize(command.get());
+                if (repository.insertIfAbsent(tripId, idemKey, requestHash, status.value(), body) == 0) {
+                    throw new AlreadyStored();
+                }
+                return new Outcome(new Stored(requestHash, status.value(), body), false);
+            });
+        } catch (AlreadyStored e) {
+            // another instance committed the same key while we ran; our writes were rolled back
+            return repository.findByTripIdAndIdemKey(tripId, idemKey)
+                    .map(k -> new Outcome(toStored(k), true))
+                    .orElseThrow(() -> new ApiException(HttpStatus.CONFLICT, HEADER + " is being processed, retry later"));
+        }
+    }
+
+    private Stored await(CompletableFuture<Stored> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ApiException(HttpStatus.CONFLICT, HEADER + " is being processed, retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for " + HEADER);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static ResponseEntity<byte[]> respond(Outcome outcome, String requestHash) {
+        Stored stored = outcome.stored();
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new ApiException(HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used for a different request");
+        }
+        var builder = ResponseEntity.status(stored.status()).contentType(JSON_UTF8);
+        if (outcome.replayed()) {
+            builder.header(REPLAYED_HEADER, "true");
+        }
+        return builder.body(stored.body());
+    }
+
+    private static Stored toStored(IdempotencyKeyEntity k) {
+        return new Stored(k.getRequestHash(), k.getStatusCode(), k.getResponseBody());
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
+    }
+
+    private String serializeToString(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize request", e);
+        }
+    }
+}
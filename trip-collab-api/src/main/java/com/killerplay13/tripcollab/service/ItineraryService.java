@@ -1,6 +1,7 @@
 package com.killerplay13.tripcollab.service;
 
 import com.killerplay13.tripcollab.domain.ItineraryItem;
+import com.killerplay13.tripcollab.error.ApiException;
 import com.killerplay13.tripcollab.repo.ItineraryItemRepository;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -12,15 +13,16 @@ import com.killerplay13.tripcollab.web.ItineraryController;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 
 @Service
 public class ItineraryService {
 
   private final ItineraryItemRepository repo;
+  private final TripVersionService tripVersionService;
 
-  public ItineraryService(ItineraryItemRepository repo) {
+  public ItineraryService(ItineraryItemRepository repo, TripVersionService tripVersionService) {
     this.repo = repo;
+    this.tripVersionService = tripVersionService;
   }
 
   @Transactional(readOnly = true)
@@ -45,13 +47,15 @@ public class ItineraryService {
     item.setSortOrder(cmd.sortOrder() != null ? cmd.sortOrder() : next);
 
 
-    return repo.save(item);
+    ItineraryItem saved = repo.save(item);
+    tripVersionService.bump(tripId);
+    return saved;
   }
 
   @Transactional
   public ItineraryItem patch(UUID tripId, UUID itemId, PatchItineraryItemCommand cmd) {
     ItineraryItem item = repo.findByIdAndTripId(itemId, tripId)
-        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND));
 
     if (cmd.dayDate() != null) item.setDayDate(cmd.dayDate());
     if (cmd.title() != null) item.setTitle(cmd.title());
@@ -62,23 +66,26 @@ public class ItineraryService {
     if (cmd.note() != null) item.setNote(cmd.note());
     if (cmd.sortOrder() != null) item.setSortOrder(cmd.sortOrder());
 
-    return repo.save(item);
+    ItineraryItem saved = repo.save(item);
+    tripVersionService.bump(tripId);
+    return saved;
   }
 
   @Transactional
   public void delete(UUID tripId, UUID itemId) {
     ItineraryItem item = repo.findByIdAndTripId(itemId, tripId)
-        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND));
     repo.delete(item);
+    tripVersionService.bump(tripId);
   }
 
   @Transactional
   public void reorder(UUID tripId, LocalDate dayDate, List<ReorderItem> items) {
   if (dayDate == null) {
-    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "date is required");
+    throw new ApiException(HttpStatus.BAD_REQUEST, "date is required");
   }
   if (items == null || items.isEmpty()) {
-    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "items is empty");
+    throw new ApiException(HttpStatus.BAD_REQUEST, "items is empty");
   }
 
   // 1) 驗證：request 裡的 id 必須全部屬於該 trip + day
@@ -87,10 +94,10 @@ public class ItineraryService {
 
   for (ReorderItem r : items) {
     if (r.id() == null) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "id is required");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "id is required");
     }
     if (!existingSet.contains(r.id())) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "item not in this trip/day: " + r.id());
+      throw new ApiException(HttpStatus.BAD_REQUEST, "item not in this trip/day: " + r.id());
     }
   }
 
@@ -100,16 +107,17 @@ public class ItineraryService {
     UUID id = items.get(idx).id();
     repo.updateSortOrder(tripId, id, idx);
   }
+  tripVersionService.bump(tripId);
 }
 
 
   @Transactional
   public ItineraryItem moveToDate(UUID tripId, UUID itemId, LocalDate toDate) {
     ItineraryItem item = repo.findByIdAndTripId(itemId, tripId)
-        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND));
 
     if (toDate == null) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "toDate is required");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "toDate is required");
     }
 
     // 如果同一天就不用 move
@@ -123,7 +131,9 @@ public class ItineraryService {
     item.setDayDate(toDate);
     item.setSortOrder(next);
 
-    return repo.save(item);
+    ItineraryItem saved = repo.save(item);
+    tripVersionService.bump(tripId);
+    return saved;
   }
 
   @Transactional(readOnly = true)
@@ -137,7 +147,7 @@ public class ItineraryService {
   } else if (from != null) {
     rows = repo.findAllByTripInRange(tripId, from, to);
   } else {
-    throw new ResponseStatusException(
+    throw new ApiException(
         HttpStatus.BAD_REQUEST,
         "from is required when to is provided"
     );
@@ -159,10 +169,10 @@ public class ItineraryService {
   @Transactional
   public List<ItineraryItem> bulkCreate(UUID tripId, LocalDate dayDate, List<ItineraryController.BulkItem> items) {
     if (dayDate == null) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "dayDate is required");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "dayDate is required");
     }
     if (items == null || items.isEmpty()) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "items is empty");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "items is empty");
     }
 
     // 1) base sortOrder = 當天目前筆數（append 到最後）
@@ -174,7 +184,7 @@ public class ItineraryService {
       var it = items.get(i);
 
       if (it.title() == null || it.title().trim().isEmpty()) {
-        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "title is required at index " + i);
+        throw new ApiException(HttpStatus.BAD_REQUEST, "title is required at index " + i);
       }
 
       ItineraryItem e = new ItineraryItem();
@@ -192,7 +202,9 @@ public class ItineraryService {
     }
 
     // 3) 一次存（同一個 transaction）
-    return repo.saveAll(toSave);
+    List<ItineraryItem> saved = repo.saveAll(toSave);
+    tripVersionService.bump(tripId);
+    return saved;
   }
 
   // helpers
@@ -210,7 +222,7 @@ public class ItineraryService {
       if (t.length() == 5) return LocalTime.parse(t + ":00");
       return LocalTime.parse(t);
     } catch (Exception ex) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+      throw new ApiException(HttpStatus.BAD_REQUEST,
               "invalid " + field + " at index " + idx + ": " + s);
     }
   }
@@ -218,14 +230,14 @@ public class ItineraryService {
   @Transactional
   public List<ItineraryItem> pasteToBulk(UUID tripId, LocalDate dayDate, String text) {
     if (dayDate == null) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "dayDate is required");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "dayDate is required");
     }
 
     var preview = previewPaste(text);
 
     if (!preview.errors().isEmpty()) {
       // v0.1：有錯就整包拒絕（避免部分寫入造成使用者困惑）
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "paste parse failed");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "paste parse failed");
     }
 
     var bulkItems = preview.items().stream()
@@ -246,16 +258,16 @@ public class ItineraryService {
   @Transactional
   public ItineraryItem updateItem(UUID tripId, UUID itemId, UpdateCmd cmd) {
     var item = repo.findByIdAndTripId(itemId, tripId)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "itinerary item not found"));
+            .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "itinerary item not found"));
 
     if (cmd.dayDate != null && !cmd.dayDate.equals(item.getDayDate())) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "dayDate cannot be changed here; use move endpoint");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "dayDate cannot be changed here; use move endpoint");
     }
 
     if (cmd.title != null) {
       String t = cmd.title.trim();
       if (t.isEmpty()) {
-        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "title cannot be blank");
+        throw new ApiException(HttpStatus.BAD_REQUEST, "title cannot be blank");
       }
       item.setTitle(t);
     }
@@ -267,7 +279,9 @@ public class ItineraryService {
     if (cmd.mapUrl != null) item.setMapUrl(blankToNull(cmd.mapUrl));
     if (cmd.note != null) item.setNote(blankToNull(cmd.note));
 
-    return repo.save(item);
+    ItineraryItem saved = repo.save(item);
+    tripVersionService.bump(tripId);
+    return saved;
   }
 
   private static class ParsedLine {
@@ -308,7 +322,7 @@ public class ItineraryService {
 
     String title = rest.trim();
     if (title.isEmpty()) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+      throw new ApiException(HttpStatus.BAD_REQUEST,
               "title is empty at line " + (idx + 1));
     }
 
@@ -330,7 +344,7 @@ public class ItineraryService {
   @Transactional(readOnly = true)
   public PastePreviewResult previewPaste(String text) {
     if (text == null || text.trim().isEmpty()) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "text is empty");
+      throw new ApiException(HttpStatus.BAD_REQUEST, "text is empty");
     }
 
     var lines = text.replace("\r\n", "\n").split("\n");
@@ -351,9 +365,9 @@ public class ItineraryService {
                 p.locationName,
                 p.note
         ));
-      } catch (ResponseStatusException ex) {
+      } catch (ApiException ex) {
         // 我們把解析錯誤收集起來，不直接 throw
-        errors.add(new PastePreviewError(lineNo, ex.getReason() == null ? "invalid line" : ex.getReason()));
+        errors.add(new PastePreviewError(lineNo, ex.getMessage() == null ? "invalid line" : ex.getMessage()));
       } catch (Exception ex) {
         errors.add(new PastePreviewError(lineNo, "invalid line"));
       }
@@ -414,7 +428,7 @@ public class ItineraryService {
   public List<ItineraryItem> search(UUID tripId, String q, Integer limit) {
   String keyword = (q == null) ? "" : q.trim();
   if (keyword.isEmpty()) {
-    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q is required");
+    throw new ApiException(HttpStatus.BAD_REQUEST, "q is required");
   }
 
   int lim = (limit == null) ? 50 : Math.min(Math.max(limit, 1), 200);
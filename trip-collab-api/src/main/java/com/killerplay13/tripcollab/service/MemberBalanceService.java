@@ -0,0 +1,129 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.ExpenseEntity;
+import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
+import com.killerplay13.tripcollab.domain.MemberBalanceEntity;
+import com.killerplay13.tripcollab.repo.ExpenseRepository;
+import com.killerplay13.tripcollab.repo.ExpenseSplitRepository;
+import com.killerplay13.tripcollab.repo.MemberBalanceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Maintains member_balances (running paid/owed totals per member) alongside expense writes,
+ * and can verify/rebuild them from the raw expenses and splits.
+ */
+@Service
+@RequiredArgsConstructor
+public class MemberBalanceService {
+
+    private static final String PAYMENT_SOURCE_PERSONAL = "PERSONAL";
+
+    private final MemberBalanceRepository balanceRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseSplitRepository splitRepository;
+    private final TripVersionService tripVersionService;
+
+    /** What one expense contributes to each member's totals. */
+    public static final class Effect {
+        // sorted so concurrent writers touch balance rows in the same order
+        private final Map<UUID, BigDecimal[]> byMember = new TreeMap<>();
+
+        public static Effect of(ExpenseEntity expense, Collection<ExpenseSplitEntity> splits) {
+            var effect = new Effect();
+            if (PAYMENT_SOURCE_PERSONAL.equals(expense.getPaymentSource()) && expense.getPaidByMemberId() != null) {
+                effect.add(expense.getPaidByMemberId(), expense.getAmount(), BigDecimal.ZERO);
+            }
+            for (var s : splits) {
+                effect.add(s.getMemberId(), BigDecimal.ZERO, s.getShareAmount());
+            }
+            return effect;
+        }
+
+        private void add(UUID memberId, BigDecimal paid, BigDecimal owed) {
+            var totals = byMember.computeIfAbsent(memberId, k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            totals[0] = totals[0].add(paid);
+            totals[1] = totals[1].add(owed);
+        }
+    }
+
+    public record MemberDrift(
+            UUID memberId,
+            BigDecimal storedPaid,
+            BigDecimal expectedPaid,
+            BigDecimal storedOwed,
+            BigDecimal expectedOwed
+    ) {}
+
+    public record DriftReport(UUID tripId, int membersChecked, List<MemberDrift> drift, boolean repaired) {}
+
+    /** Applies {@code after - before} to the trip's balance rows; either side may be null. */
+    @Transactional
+    public void apply(UUID tripId, Effect before, Effect after) {
+        var delta = new Effect();
+        if (after != null) {
+            after.byMember.forEach((id, t) -> delta.add(id, t[0], t[1]));
+        }
+        if (before != null) {
+            before.byMember.forEach((id, t) -> delta.add(id, t[0].negate(), t[1].negate()));
+        }
+        delta.byMember.forEach((memberId, t) -> {
+            if (t[0].signum() == 0 && t[1].signum() == 0) return;
+            balanceRepository.applyDelta(tripId, memberId, t[0], t[1]);
+        });
+    }
+
+    /**
+     * Recomputes the totals from expenses/splits and compares them with member_balances.
+     * With {@code repair}, drifted rows are overwritten; the trip's balance rows are locked first
+     * so concurrent expense writes wait instead of interleaving with the rebuild.
+     */
+    @Transactional
+    public DriftReport verify(UUID tripId, boolean repair) {
+        List<MemberBalanceEntity> stored = repair
+                ? balanceRepository.findAllByTripIdForUpdate(tripId)
+                : balanceRepository.findAllByTripId(tripId);
+
+        Map<UUID, BigDecimal[]> expected = new TreeMap<>();
+        for (Object[] row : expenseRepository.sumPaidByMember(tripId)) {
+            if (row[0] == null) continue;
+            expected.computeIfAbsent((UUID) row[0], k -> zeros())[0] = (BigDecimal) row[1];
+        }
+        for (Object[] row : splitRepository.sumOwedByMember(tripId)) {
+            expected.computeIfAbsent((UUID) row[0], k -> zeros())[1] = (BigDecimal) row[1];
+        }
+
+        Map<UUID, BigDecimal[]> actual = new TreeMap<>();
+        for (var b : stored) {
+            actual.put(b.getMemberId(), new BigDecimal[]{b.getPaidTotal(), b.getOwedTotal()});
+        }
+
+        Set<UUID> memberIds = new TreeSet<>(expected.keySet());
+        memberIds.addAll(actual.keySet());
+
+        List<MemberDrift> drift = new ArrayList<>();
+        for (UUID memberId : memberIds) {
+            var exp = expected.getOrDefault(memberId, zeros());
+            var act = actual.getOrDefault(memberId, zeros());
+            if (exp[0].compareTo(act[0]) != 0 || exp[1].compareTo(act[1]) != 0) {
+                drift.add(new MemberDrift(memberId, act[0], exp[0], act[1], exp[1]));
+            }
+        }
+
+        if (repair && !drift.isEmpty()) {
+            for (var d : drift) {
+                balanceRepository.overwrite(tripId, d.memberId(), d.expectedPaid(), d.expectedOwed());
+            }
+            tripVersionService.bump(tripId);
+        }
+        return new DriftReport(tripId, memberIds.size(), drift, repair && !drift.isEmpty());
+    }
+
+    private static BigDecimal[] zeros() {
+        return new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO};
+    }
+}
@@ -0,0 +1,148 @@
+package com.killerplay13.tripcollab.service;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind tracker for trip_members.last_seen_at. Authenticated requests only record a
+ * timestamp in memory (repeated hits from the same member coalesce); a scheduled flush writes
+ * all pending timestamps with one batched UPDATE. Counters are served on GET /api/admin/stats.
+ */
+@Component
+public class MemberPresenceTracker {
+
+  private static final Logger log = LoggerFactory.getLogger(MemberPresenceTracker.class);
+
+  private static final String FLUSH_SQL = """
+      UPDATE trip_members AS m
+      SET last_seen_at = to_timestamp(v.seen_ms / 1000.0)
+      FROM unnest(?::uuid[], ?::bigint[]) AS v(id, seen_ms)
+      WHERE m.id = v.id
+        AND (m.last_seen_at IS NULL OR m.last_seen_at < to_timestamp(v.seen_ms / 1000.0))
+      """;
+
+  public record Stats(
+      int pending,
+      long flushes,
+      long flushedRows,
+      long lastBatchSize,
+      long lastFlushMillis,
+      long dropped,
+      long failedFlushes
+  ) {}
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int maxPending;
+  private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+
+  private final LongAdder flushes = new LongAdder();
+  private final LongAdder flushedRows = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder failedFlushes = new LongAdder();
+  private final AtomicLong lastBatchSize = new AtomicLong();
+  private final AtomicLong lastFlushMillis = new AtomicLong();
+
+  public MemberPresenceTracker(
+      JdbcTemplate jdbcTemplate,
+      @Value("${tripcollab.presence.max-pending:50000}") int maxPending
+  ) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.maxPending = maxPending;
+  }
+
+  public void touch(UUID memberId) {
+    long now = System.currentTimeMillis();
+    if (pending.size() >= maxPending && !pending.containsKey(memberId)) {
+      dropped.increment();
+      return;
+    }
+    pending.merge(memberId, now, Math::max);
+  }
+
+  /** Latest known last-seen time: the pending in-memory value if newer than what the DB row has. */
+  public Instant lastSeen(UUID memberId, Instant stored) {
+    Long ms = pending.get(memberId);
+    if (ms == null) return stored;
+    Instant seen = Instant.ofEpochMilli(ms);
+    return stored == null || seen.isAfter(stored) ? seen : stored;
+  }
+
+  @Scheduled(
+      initialDelayString = "${tripcollab.presence.flush-interval-ms:15000}",
+      fixedDelayString = "${tripcollab.presence.flush-interval-ms:15000}"
+  )
+  public void flush() {
+    if (pending.isEmpty()) return;
+
+    List<UUID> ids = new ArrayList<>(pending.size());
+    List<Long> seen = new ArrayList<>(pending.size());
+    for (Map.Entry<UUID, Long> e : pending.entrySet()) {
+      // remove only the value we read, so a newer touch racing with the flush stays pending
+      if (pending.remove(e.getKey(), e.getValue())) {
+        ids.add(e.getKey());
+        seen.add(e.getValue());
+      }
+    }
+    if (ids.isEmpty()) return;
+
+    long started = System.nanoTime();
+    try {
+      jdbcTemplate.update(con -> {
+        PreparedStatement ps = con.prepareStatement(FLUSH_SQL);
+        Array idArray = con.createArrayOf("uuid", ids.toArray());
+        Array seenArray = con.createArrayOf("bigint", seen.toArray());
+        ps.setArray(1, idArray);
+        ps.setArray(2, seenArray);
+        return ps;
+      });
+      flushes.increment();
+      flushedRows.add(ids.size());
+    } catch (RuntimeException e) {
+      failedFlushes.increment();
+      // put the batch back for the next round; newer touches win
+      for (int i = 0; i < ids.size(); i++) {
+        if (pending.size() < maxPending || pending.containsKey(ids.get(i))) {
+          pending.merge(ids.get(i), seen.get(i), Math::max);
+        } else {
+          dropped.increment();
+        }
+      }
+      log.warn("Presence flush of {} members failed", ids.size(), e);
+    } finally {
+      lastBatchSize.set(ids.size());
+      lastFlushMillis.set((System.nanoTime() - started) / 1_000_000);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    flush();
+  }
+
+  public Stats stats() {
+    return new Stats(
+        pending.size(),
+        flushes.sum(),
+        flushedRows.sum(),
+        lastBatchSize.get(),
+        lastFlushMillis.get(),
+        dropped.sum(),
+        failedFlushes.sum()
+    );
+  }
+}
@@ -0,0 +1,146 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.error.ApiException;
+import com.killerplay13.tripcollab.repo.SyncClientOpJdbcRepository;
+import com.killerplay13.tripcollab.repo.SyncClientOpJdbcRepository.Claim;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Applies a client's queued offline mutations in one transaction. Operations run in order; the
+ * first failure rolls back the whole batch, so a retry replays it from a clean state.
+ *
+ * Client operation ids are persisted (sync_client_ops) with the transaction: an operation whose
+ * id was applied by an earlier request is skipped and reported as replayed, and any operation may
+ * refer to a row created offline by the client id of its create, in this batch or an earlier one.
+ */
+@Service
+public class MutationBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(MutationBatchService.class);
+
+    public static final int MAX_OPERATIONS = 500;
+
+    /** Server ids of rows created through /sync, keyed by the client id of the creating operation. */
+    public static final class IdMap {
+        private final Map<UUID, UUID> serverIds = new HashMap<>();
+
+        /** The server id for a known client id; any other id is returned unchanged. */
+        public UUID resolve(UUID id) {
+            return id == null ? null : serverIds.getOrDefault(id, id);
+        }
+    }
+
+    /** One queued command; returns the id of the row it created (or null) and its response body. */
+    @FunctionalInterface
+    public interface Mutation {
+        Applied apply(IdMap ids);
+    }
+
+    public record Applied(UUID id, Object result) {}
+
+    /** {@code references} are the ids the mutation may resolve, so they can be looked up up front. */
+    public record Operation(UUID clientId, String type, Set<UUID> references, Mutation mutation) {}
+
+    /** {@code replayed}: applied by an earlier request; {@code result} is then null. */
+    public record OperationResult(int index, UUID clientId, String type, UUID id, boolean replayed, Object result) {}
+
+    private final SyncClientOpJdbcRepository clientOpRepository;
+    private final Duration clientOpRetention;
+
+    public MutationBatchService(
+            SyncClientOpJdbcRepository clientOpRepository,
+            @Value("${tripcollab.sync.client-op-retention:30d}") Duration clientOpRetention
+    ) {
+        this.clientOpRepository = clientOpRepository;
+        this.clientOpRetention = clientOpRetention;
+    }
+
+    @Transactional
+    public List<OperationResult> apply(UUID tripId, List<Operation> operations) {
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "at most " + MAX_OPERATIONS + " operations per batch");
+        }
+
+        Map<UUID, Claim> claims = new LinkedHashMap<>();
+        Set<UUID> lookups = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            var op = operations.get(i);
+            if (op.clientId() != null && claims.putIfAbsent(op.clientId(), new Claim(op.clientId(), op.type())) != null) {
+                throw new ApiException(HttpStatus.BAD_REQUEST, "operations[" + i + "] duplicate clientId " + op.clientId());
+            }
+            lookups.addAll(op.references());
+        }
+
+        // claimed ids are new; a retry of a committed batch claims none of its own
+        Set<UUID> claimed = clientOpRepository.claim(tripId, List.copyOf(claims.values()));
+        for (UUID clientId : claims.keySet()) {
+            if (!claimed.contains(clientId)) lookups.add(clientId);
+        }
+        lookups.removeAll(claimed);
+        var recorded = clientOpRepository.find(tripId, lookups);
+
+        var ids = new IdMap();
+        recorded.forEach((clientId, r) -> {
+            if (r.entityId() != null) ids.serverIds.put(clientId, r.entityId());
+        });
+
+        Map<UUID, UUID> created = new HashMap<>();
+        List<OperationResult> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            var op = operations.get(i);
+            if (op.clientId() != null && !claimed.contains(op.clientId())) {
+                var previous = recorded.get(op.clientId());
+                if (previous == null || !previous.opType().equals(op.type())) {
+                    throw new ApiException(HttpStatus.CONFLICT, "operations[" + i + "] clientId " + op.clientId()
+                            + " was already used for " + (previous != null ? previous.opType() : "another operation"));
+                }
+                results.add(new OperationResult(i, op.clientId(), op.type(), previous.entityId(), true, null));
+                continue;
+            }
+
+            Applied applied;
+            try {
+                applied = op.mutation().apply(ids);
+            } catch (ApiException e) {
+                // same status, but tell the client which queued operation was rejected
+                throw new ApiException(e.getStatus(), "operations[" + i + "] " + op.type() + ": " + e.getMessage());
+            }
+            if (op.clientId() != null && applied.id() != null) {
+                ids.serverIds.put(op.clientId(), applied.id());
+                created.put(op.clientId(), applied.id());
+            }
+            results.add(new OperationResult(i, op.clientId(), op.type(), applied.id(), false, applied.result()));
+        }
+        clientOpRepository.setEntityIds(tripId, created);
+        return results;
+    }
+
+    @Scheduled(
+            initialDelayString = "${tripcollab.sync.tombstone-purge-interval-ms:3600000}",
+            fixedDelayString = "${tripcollab.sync.tombstone-purge-interval-ms:3600000}"
+    )
+    @Transactional
+    public void purgeClientOps() {
+        int purged = clientOpRepository.deleteOlderThan(Instant.now().minus(clientOpRetention));
+        if (purged > 0) {
+            log.info("Purged {} sync client operation ids older than {}", purged, clientOpRetention);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.ExpenseEntity;
+import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
+import com.killerplay13.tripcollab.domain.ItineraryItem;
+import com.killerplay13.tripcollab.domain.TripMemberEntity;
+import com.killerplay13.tripcollab.error.ApiException;
+import com.killerplay13.tripcollab.repo.ExpenseRepository;
+import com.killerplay13.tripcollab.repo.ExpenseSplitRepository;
+import com.killerplay13.tripcollab.repo.ItineraryItemRepository;
+import com.killerplay13.tripcollab.repo.SharedWalletRepository;
+import com.killerplay13.tripcollab.repo.SyncTombstoneRepository;
+import com.killerplay13.tripcollab.repo.TripMemberRepository;
+import com.killerplay13.tripcollab.repo.TripRepository;
+import com.killerplay13.tripcollab.repo.WalletTransactionRepository;
+import com.killerplay13.tripcollab.wallet.dto.WalletTransactionResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delta sync: rows of a trip changed after a client watermark, plus tombstones for deleted rows.
+ *
+ * updated_at is stamped by triggers on insert and update with the writing transaction's start
+ * time (the database clock, like the watermark), so a long transaction can commit a
+ * row stamped before a watermark that was already handed out. Each query therefore looks back
+ * {@code overlap} further than the client's watermark; clients apply changes idempotently (by id).
+ */
+@Service
+public class SyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncService.class);
+
+    public record Tombstone(String entityType, String entityId, Instant deletedAt) {}
+
+    /** {@code full} means the lists are complete snapshots and the client should replace its copy. */
+    public record Changes(
+            Instant watermark,
+            boolean full,
+            List<ExpenseEntity> expenses,
+            List<ExpenseSplitEntity> splits,
+            List<ItineraryItem> itineraryItems,
+            List<TripMemberEntity> members,
+            List<WalletTransactionResponse> walletTransactions,
+            List<Tombstone> deleted
+    ) {}
+
+    private final TripRepository tripRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseSplitRepository splitRepository;
+    private final ItineraryItemRepository itineraryItemRepository;
+    private final TripMemberRepository tripMemberRepository;
+    private final SharedWalletRepository sharedWalletRepository;
+    private final WalletTransactionRepository walletTransactionRepository;
+    private final SyncTombstoneRepository tombstoneRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration overlap;
+    private final Duration tombstoneRetention;
+
+    public SyncService(
+            TripRepository tripRepository,
+            ExpenseRepository expenseRepository,
+            ExpenseSplitRepository splitRepository,
+            ItineraryItemRepository itineraryItemRepository,
+            TripMemberRepository tripMemberRepository,
+            SharedWalletRepository sharedWalletRepository,
+            WalletTransactionRepository walletTransactionRepository,
+            SyncTombstoneRepository tombstoneRepository,
+            JdbcTemplate jdbcTemplate,
+            @Value("${tripcollab.sync.overlap:30s}") Duration overlap,
+            @Value("${tripcollab.sync.tombstone-retention:30d}") Duration tombstoneRetention
+    ) {
+        this.tripRepository = tripRepository;
+        this.expenseRepository = expenseRepository;
+        this.splitRepository = splitRepository;
+        this.itineraryItemRepository = itineraryItemRepository;
+        this.tripMemberRepository = tripMemberRepository;
+        this.sharedWalletRepository = sharedWalletRepository;
+        this.walletTransactionRepository = walletTransactionRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.overlap = overlap;
+        this.tombstoneRetention = tombstoneRetention;
+    }
+
+    /**
+     * Changes after {@code since}; a null or too old {@code since} (tombstones already purged)
+     * returns a full snapshot. All reads share one snapshot, so nothing is half-seen.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Changes changesSince(UUID tripId, Instant since) {
+        if (!tripRepository.existsById(tripId)) {
+            throw new ApiException(HttpStatus.NOT_FOUND, "Trip not found");
+        }
+
+        // database clock, same one the updated_at triggers use
+        Instant watermark = jdbcTemplate.queryForObject("select now()", Timestamp.class).toInstant();
+        boolean full = since == null || since.isBefore(watermark.minus(tombstoneRetention));
+        Instant from = full ? Instant.EPOCH : since.minus(overlap);
+
+        List<WalletTransactionResponse> walletTransactions = sharedWalletRepository.findByTripId(tripId)
+                .map(w -> walletTransactionRepository.findByWalletIdAndUpdatedAtAfterOrderByIdAsc(w.getId(), from)
+                        .stream()
+                        .map(WalletQueryService::toResponse)
+                        .toList())
+                .orElse(List.of());
+
+        List<Tombstone> deleted = full ? List.of() : tombstoneRepository.findByTripIdAndDeletedAtAfterOrderByIdAsc(tripId, from)
+                .stream()
+                .map(t -> new Tombstone(t.getEntityType(), t.getEntityId(), t.getDeletedAt()))
+                .toList();
+
+        return new Changes(
+                watermark,
+                full,
+                expenseRepository.findByTripIdAndUpdatedAtAfter(tripId, from),
+                splitRepository.findByTripIdAndUpdatedAtAfter(tripId, from),
+                itineraryItemRepository.findByTripIdAndUpdatedAtAfter(tripId, from),
+                tripMemberRepository.findByTripIdAndUpdatedAtAfter(tripId, from),
+                walletTransactions,
+                deleted
+        );
+    }
+
+    @Scheduled(
+            initialDelayString = "${tripcollab.sync.tombstone-purge-interval-ms:3600000}",
+            fixedDelayString = "${tripcollab.sync.tombstone-purge-interval-ms:3600000}"
+    )
+    @Transactional
+    public void purgeTombstones() {
+        int purged = tombstoneRepository.deleteOlderThan(Instant.now().minus(tombstoneRetention));
+        if (purged > 0) {
+            log.info("Purged {} sync tombstones older than {}", purged, tombstoneRetention);
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.killerplay13.tripcollab.service;
 
 import com.killerplay13.tripcollab.domain.TripMemberEntity;
+import com.killerplay13.tripcollab.error.ApiException;
 import com.killerplay13.tripcollab.repo.TripMemberRepository;
+import com.killerplay13.tripcollab.security.MemberPrincipalCache;
+import com.killerplay13.tripcollab.security.MemberRevocationRegistry;
+import com.killerplay13.tripcollab.security.MemberTokenSigner;
 import com.killerplay13.tripcollab.security.TripTokenUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.security.MessageDigest;
 import java.security.SecureRandom;
@@ -22,6 +27,10 @@ import java.util.UUID;
 public class TripMemberService {
 
     private final TripMemberRepository tripMemberRepository;
+    private final MemberPrincipalCache principalCache;
+    private final MemberTokenSigner tokenSigner;
+    private final MemberRevocationRegistry revocationRegistry;
+    private final TripVersionService tripVersionService;
 
     public List<TripMemberEntity> listActive(UUID tripId) {
         return tripMemberRepository.findByTripIdAndIsActiveTrueOrderByJoinedAtAsc(tripId);
@@ -29,19 +38,19 @@ public class TripMemberService {
 
     public TripMemberEntity get(UUID tripId, UUID memberId) {
         return tripMemberRepository.findByIdAndTripId(memberId, tripId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Member not found"));
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Member not found"));
     }
 
     @Transactional
     public CreatedMember create(UUID tripId, String nickname, String role) {
         var nn = requireNonBlank(nickname, "nickname");
-        if (nn.length() > 50) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "nickname too long");
+        if (nn.length() > 50) throw new ApiException(HttpStatus.BAD_REQUEST, "nickname too long");
 
         var r = normalizeRole(role);
 
         // avoid DB unique constraint error
         if (tripMemberRepository.existsByTripIdAndNickname(tripId, nn)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "nickname already exists in this trip");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "nickname already exists in this trip");
         }
 
         String rawToken = TripTokenUtil.generateToken();
@@ -61,6 +70,14 @@ public class TripMemberService {
                 .build();
 
         entity = tripMemberRepository.save(entity);
+
+        // the id is assigned on save (insert happens at flush), so the signed token can still replace
+        // the random one; its hash is stored too, keeping the DB lookup path valid for it
+        if (tokenSigner.enabled()) {
+            rawToken = tokenSigner.issue(tripId, entity.getId(), r, entity.getTokenEpoch());
+            entity.setMemberTokenHash(TripTokenUtil.sha256Hex(rawToken));
+        }
+        tripVersionService.bump(tripId);
         return new CreatedMember(entity, rawToken);
     }
 
@@ -71,23 +88,69 @@ public class TripMemberService {
         if (nickname != null) {
             var nn = requireNonBlank(nickname, "nickname");
             if (!nn.equals(m.getNickname()) && tripMemberRepository.existsByTripIdAndNickname(tripId, nn)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "nickname already exists in this trip");
+                throw new ApiException(HttpStatus.BAD_REQUEST, "nickname already exists in this trip");
             }
             m.setNickname(nn);
         }
 
-        if (isActive != null) {
+        if (isActive != null && !isActive.equals(m.getIsActive())) {
             m.setIsActive(isActive);
+            invalidatePrincipal(m);
         }
 
-        return tripMemberRepository.save(m);
+        var saved = tripMemberRepository.save(m);
+        tripVersionService.bump(tripId);
+        return saved;
+    }
+
+    /**
+     * Issues the member a new token and revokes every token issued before: token_epoch is bumped,
+     * which signed tokens embed, and the stored hash is replaced, which the DB lookup path matches.
+     */
+    @Transactional
+    public CreatedMember rotateToken(UUID tripId, UUID memberId) {
+        var m = get(tripId, memberId);
+        if (!Boolean.TRUE.equals(m.getIsActive())) {
+            throw new ApiException(HttpStatus.CONFLICT, "Member is not active");
+        }
+
+        int epoch = (m.getTokenEpoch() != null ? m.getTokenEpoch() : 0) + 1;
+        String rawToken = tokenSigner.enabled()
+                ? tokenSigner.issue(tripId, memberId, m.getRole(), epoch)
+                : TripTokenUtil.generateToken();
+        m.setTokenEpoch(epoch);
+        m.setMemberTokenHash(TripTokenUtil.sha256Hex(rawToken));
+        invalidatePrincipal(m);
+
+        return new CreatedMember(tripMemberRepository.save(m), rawToken);
     }
 
     // ---------- helpers ----------
     public record CreatedMember(TripMemberEntity member, String memberToken) {}
 
+    // evict now and again after commit, so a concurrent request can't re-cache the pre-commit row;
+    // the revocation registry only learns the new state once it is committed
+    private void invalidatePrincipal(TripMemberEntity m) {
+        UUID memberId = m.getId();
+        int epoch = m.getTokenEpoch() != null ? m.getTokenEpoch() : 0;
+        boolean active = Boolean.TRUE.equals(m.getIsActive());
+
+        principalCache.invalidateMember(memberId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            revocationRegistry.record(memberId, epoch, active);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                principalCache.invalidateMember(memberId);
+                revocationRegistry.record(memberId, epoch, active);
+            }
+        });
+    }
+
     private static String requireNonBlank(String v, String field) {
-        if (v == null || v.isBlank()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " is required");
+        if (v == null || v.isBlank()) throw new ApiException(HttpStatus.BAD_REQUEST, field + " is required");
         return v.trim();
     }
 
@@ -95,7 +158,7 @@ public class TripMemberService {
         if (role == null || role.isBlank()) return "member";
         var r = role.trim().toLowerCase(Locale.ROOT);
         if (!r.equals("owner") && !r.equals("member")) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "role must be owner or member");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "role must be owner or member");
         }
         return r;
     }
@@ -4,22 +4,31 @@ import com.killerplay13.tripcollab.domain.SharedWalletEntity;
 import com.killerplay13.tripcollab.domain.Trip;
 import com.killerplay13.tripcollab.repo.SharedWalletRepository;
 import com.killerplay13.tripcollab.repo.TripRepository;
+import com.killerplay13.tripcollab.security.InviteTokenGuard;
 import com.killerplay13.tripcollab.security.TripTokenUtil;
 import java.time.LocalDate;
 import java.util.Locale;
 import java.util.UUID;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 public class TripService {
 
   private final TripRepository tripRepository;
   private final SharedWalletRepository sharedWalletRepository;
+  private final InviteTokenGuard inviteTokenGuard;
 
-  public TripService(TripRepository tripRepository, SharedWalletRepository sharedWalletRepository) {
+  public TripService(
+      TripRepository tripRepository,
+      SharedWalletRepository sharedWalletRepository,
+      InviteTokenGuard inviteTokenGuard
+  ) {
     this.tripRepository = tripRepository;
     this.sharedWalletRepository = sharedWalletRepository;
+    this.inviteTokenGuard = inviteTokenGuard;
   }
 
   @Transactional
@@ -47,6 +56,31 @@ public class TripService {
         .orElseThrow(() -> new IllegalArgumentException("Trip not found"));
   }
 
+  /**
+   * Replaces the trip's invite token (the old one stops working) or, with {@code enabled} false,
+   * turns joining off. Returns the new raw token, or null when disabled.
+   */
+  @Transactional
+  public String updateInvite(UUID tripId, boolean enabled) {
+    Trip t = getTrip(tripId);
+    String token = null;
+    if (enabled) {
+      token = TripTokenUtil.generateToken();
+      t.setInviteTokenHash(TripTokenUtil.sha256Hex(token));
+    }
+    t.setInviteEnabled(enabled);
+    tripRepository.save(t);
+
+    // drop the guard's cached hash only once the change is visible to its DB check
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        inviteTokenGuard.invalidate(tripId);
+      }
+    });
+    return token;
+  }
+
   public record CreateTripResult(Trip trip, String token) {}
 
   private void ensureSharedWallet(Trip trip) {
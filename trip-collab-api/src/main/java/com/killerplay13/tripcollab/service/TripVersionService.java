@@ -0,0 +1,67 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.repo.TripVersionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Per-trip change counter. Every write service bumps it inside its own transaction, so a reader
+ * that sees version N also sees every write up to N; read endpoints use it as their ETag. Wallet
+ * deposits and exchanges are the exception: they raise their balance rows' versions instead, and
+ * the wallet reads combine both (WalletQueryService.etag).
+ */
+@Service
+@RequiredArgsConstructor
+public class TripVersionService {
+
+    private final TripVersionRepository tripVersionRepository;
+
+    /**
+     * Marks the trip as changed. The increment itself runs once per trip just before the
+     * transaction commits, so the counter row is locked only for the commit and a batch of
+     * writes in one transaction costs a single statement.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void bump(UUID tripId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            tripVersionRepository.bump(tripId);
+            return;
+        }
+        for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+            if (s instanceof PendingBumps pending) {
+                pending.tripIds.add(tripId);
+                return;
+            }
+        }
+        var pending = new PendingBumps();
+        pending.tripIds.add(tripId);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    public long current(UUID tripId) {
+        return tripVersionRepository.findVersion(tripId).orElse(0L);
+    }
+
+    /** Strong ETag for any read of the trip; the URL already scopes it to one resource. */
+    public String etag(UUID tripId) {
+        return "\"v" + current(tripId) + "\"";
+    }
+
+    private final class PendingBumps implements TransactionSynchronization {
+        // sorted so concurrent transactions lock counter rows in the same order
+        private final Set<UUID> tripIds = new TreeSet<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            tripIds.forEach(tripVersionRepository::bump);
+        }
+    }
+}
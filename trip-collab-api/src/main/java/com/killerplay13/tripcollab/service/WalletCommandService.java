@@ -1,70 +1,72 @@
 package com.killerplay13.tripcollab.service;
 
 import com.killerplay13.tripcollab.domain.WalletTransactionEntity;
+import com.killerplay13.tripcollab.error.ApiException;
 import com.killerplay13.tripcollab.repo.SharedWalletRepository;
-import com.killerplay13.tripcollab.repo.WalletBalanceRepository;
-import com.killerplay13.tripcollab.repo.WalletTransactionRepository;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository.BalanceDelta;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository.LedgerRow;
+import com.killerplay13.tripcollab.wallet.dto.WalletBatchRequest;
+import com.killerplay13.tripcollab.wallet.dto.WalletBatchResponse;
 import com.killerplay13.tripcollab.wallet.dto.WalletDepositRequest;
 import com.killerplay13.tripcollab.wallet.dto.WalletExchangeRequest;
 import com.killerplay13.tripcollab.wallet.dto.WalletExchangeResponse;
 import com.killerplay13.tripcollab.wallet.dto.WalletTransactionResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
+/**
+ * Wallet commands. Each one validates its input, then runs a single statement
+ * ({@link WalletLedgerJdbcRepository}) that updates the balance row and appends the ledger rows.
+ * Commands leave trip_versions alone (the balance row's version counter is the wallet's ETag
+ * source), so concurrent deposits and exchanges only contend on the currencies they touch; a
+ * wallet expense is part of an expense write, which bumps the trip version itself.
+ * With write lanes enabled, deposits and exchanges outside a caller's transaction are handed to
+ * {@link WalletWriteLanes} instead, and the inline paths take the wallet's advisory lock first.
+ */
 @Service
 @RequiredArgsConstructor
 public class WalletCommandService {
 
+    public static final int MAX_BATCH_ITEMS = 200;
+
     private final SharedWalletRepository sharedWalletRepository;
-    private final WalletBalanceRepository walletBalanceRepository;
-    private final WalletTransactionRepository walletTransactionRepository;
+    private final WalletLedgerJdbcRepository walletLedgerRepository;
+    private final WalletWriteLanes walletWriteLanes;
+    private final TransactionTemplate transactionTemplate;
 
-    @Transactional
     public WalletTransactionResponse deposit(UUID tripId, UUID actorMemberId, WalletDepositRequest req) {
-        var wallet = sharedWalletRepository.findByTripId(tripId)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Shared wallet not found for trip " + tripId
-                ));
-
-        BigDecimal originalAmount = requirePositiveAmount(req.originalAmount(), "originalAmount")
-                .setScale(2, RoundingMode.HALF_UP);
-        BigDecimal fxRate = requirePositiveAmount(req.fxRate(), "fxRate");
-        String currency = normalizeCurrency(req.originalCurrency());
-
-        BigDecimal computedBaseAmount = originalAmount.multiply(fxRate);
-
-        var txn = WalletTransactionEntity.builder()
-                .walletId(wallet.getId())
-                .txnType("DEPOSIT")
-                .direction("IN")
-                .originalAmount(originalAmount)
-                .originalCurrency(currency)
-                .fxRate(fxRate)
-                .computedBaseAmount(computedBaseAmount)
-                .memberId(actorMemberId)
-                .fxSource(req.fxSource())
-                .note(req.note())
-                .build();
-
-        txn = walletTransactionRepository.save(txn);
+        LedgerRow row = depositRow(actorMemberId, req);
 
-        walletBalanceRepository.upsertBalance(wallet.getId(), currency, originalAmount);
-
-        wallet.setUpdatedAt(Instant.now());
-        sharedWalletRepository.save(wallet);
+        if (walletWriteLanes.accepts()) {
+            Long walletId = requireWalletId(tripId);
+            var rows = walletWriteLanes.submit(new WalletWriteLanes.Command(walletId, List.of(row.onWallet(walletId))));
+            return toResponse(rows.get(0));
+        }
 
-        return toResponse(txn);
+        return transactionTemplate.execute(tx -> {
+            lockWalletIfLaned(tripId);
+            var rows = walletLedgerRepository.deposit(
+                    tripId, row.currency(), row.amount(), row.fxRate(), row.baseAmount(), actorMemberId, row.fxSource(), row.note());
+            if (rows.isEmpty()) {
+                throw walletNotFound(tripId);
+            }
+            return toResponse(rows.get(0));
+        });
     }
 
     @Transactional
@@ -78,21 +80,8 @@ public class WalletCommandService {
             String fxSource,
             String note
     ) {
-        var wallet = sharedWalletRepository.findByTripId(tripId)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Shared wallet not found for trip " + tripId
-                ));
-
         if (expenseId == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "expenseId is required");
-        }
-
-        if (walletTransactionRepository.existsByExpenseIdAndTxnType(expenseId, "EXPENSE")) {
-            throw new ResponseStatusException(
-                    HttpStatus.CONFLICT,
-                    "Wallet expense transaction already exists"
-            );
+            throw new ApiException(HttpStatus.BAD_REQUEST, "expenseId is required");
         }
 
         String currency = normalizeCurrency(originalCurrency);
@@ -101,55 +90,180 @@ public class WalletCommandService {
         BigDecimal rate = requirePositiveAmount(fxRate, "fxRate");
         BigDecimal computedBase = amount.multiply(rate).setScale(2, RoundingMode.HALF_UP);
 
-        int updated = walletBalanceRepository.debitIfSufficient(wallet.getId(), currency, amount);
-        if (updated == 0) {
-            throw new ResponseStatusException(
+        lockWalletIfLaned(tripId);
+        List<WalletTransactionEntity> rows;
+        try {
+            rows = walletLedgerRepository.recordExpense(
+                    tripId, expenseId, currency, amount, rate, computedBase, memberId, fxSource, note);
+        } catch (DuplicateKeyException e) {
+            // ux_wallet_transactions_expense
+            throw new ApiException(
                     HttpStatus.CONFLICT,
-                    "Insufficient wallet balance in " + currency
+                    "Wallet expense transaction already exists"
             );
         }
-
-        var txn = WalletTransactionEntity.builder()
-                .walletId(wallet.getId())
-                .txnType("EXPENSE")
-                .direction("OUT")
-                .originalAmount(amount)
-                .originalCurrency(currency)
-                .fxRate(rate)
-                .computedBaseAmount(computedBase)
-                .memberId(memberId)
-                .expenseId(expenseId)
-                .fxSource(fxSource)
-                .note(note)
-                .build();
-
-        txn = walletTransactionRepository.save(txn);
-
-        wallet.setUpdatedAt(Instant.now());
-        sharedWalletRepository.save(wallet);
-
-        return toResponse(txn);
+        if (rows.isEmpty()) {
+            throw debitFailed(tripId, currency);
+        }
+        return toResponse(rows.get(0));
     }
 
-    @Transactional
     public WalletExchangeResponse exchange(UUID tripId, UUID actorMemberId, WalletExchangeRequest req) {
-        var wallet = sharedWalletRepository.findByTripId(tripId)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Shared wallet not found for trip " + tripId
+        UUID exchangeGroupId = UUID.randomUUID();
+        List<LedgerRow> legs = exchangeRows(exchangeGroupId, actorMemberId, req);
+        LedgerRow out = legs.get(0);
+        LedgerRow in = legs.get(1);
+
+        List<WalletTransactionEntity> rows;
+        if (walletWriteLanes.accepts()) {
+            Long walletId = requireWalletId(tripId);
+            rows = walletWriteLanes.submit(new WalletWriteLanes.Command(walletId, List.of(
+                    out.onWallet(walletId),
+                    in.onWallet(walletId)
+            )));
+        } else {
+            rows = transactionTemplate.execute(tx -> {
+                lockWalletIfLaned(tripId);
+                var written = walletLedgerRepository.exchange(
+                        tripId, exchangeGroupId,
+                        out.currency(), out.amount(), out.fxRate(), out.baseAmount(),
+                        in.currency(), in.amount(), in.fxRate(), in.baseAmount(),
+                        actorMemberId, req.fxSource(), req.note());
+                if (written.isEmpty()) {
+                    throw debitFailed(tripId, out.currency());
+                }
+                return written;
+            });
+        }
+
+        return new WalletExchangeResponse(
+                exchangeGroupId,
+                rows.get(0).getWalletId(),
+                rows.stream().map(WalletCommandService::toResponse).toList()
+        );
+    }
+
+    /**
+     * Records several deposits and then several exchanges, all or nothing. Every item is validated
+     * before anything is written; the wallet's advisory lock is then taken exclusively and its
+     * balances read once, each exchange is checked against the running balances, all ledger rows
+     * go out in one JDBC batch and each touched currency gets one upsert with its netted delta.
+     */
+    public WalletBatchResponse batch(UUID tripId, UUID actorMemberId, WalletBatchRequest req) {
+        if (req == null) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Request body is required");
+        }
+        List<WalletDepositRequest> deposits = req.deposits() == null ? List.of() : req.deposits();
+        List<WalletExchangeRequest> exchanges = req.exchanges() == null ? List.of() : req.exchanges();
+        if (deposits.isEmpty() && exchanges.isEmpty()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "deposits or exchanges are required");
+        }
+        if (deposits.size() + exchanges.size() > MAX_BATCH_ITEMS) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "at most " + MAX_BATCH_ITEMS + " deposits and exchanges per batch");
+        }
+
+        List<LedgerRow> depositRows = new ArrayList<>(deposits.size());
+        for (int i = 0; i < deposits.size(); i++) {
+            try {
+                depositRows.add(depositRow(actorMemberId, deposits.get(i)));
+            } catch (ApiException e) {
+                throw new ApiException(e.getStatus(), "deposits[" + i + "] " + e.getMessage());
+            }
+        }
+        List<List<LedgerRow>> exchangeLegs = new ArrayList<>(exchanges.size());
+        for (int i = 0; i < exchanges.size(); i++) {
+            try {
+                exchangeLegs.add(exchangeRows(UUID.randomUUID(), actorMemberId, exchanges.get(i)));
+            } catch (ApiException e) {
+                throw new ApiException(e.getStatus(), "exchanges[" + i + "] " + e.getMessage());
+            }
+        }
+
+        return transactionTemplate.execute(tx -> {
+            Long walletId = requireWalletId(tripId);
+            // exclusive: no other command writes while the balances are checked in memory, and no
+            // balance row is locked in an order the single statements could cross
+            walletLedgerRepository.lockWallet(walletId);
+            Map<String, BigDecimal> balances = walletLedgerRepository.findBalances(List.of(walletId))
+                    .computeIfAbsent(walletId, k -> new HashMap<>());
+
+            List<LedgerRow> rows = new ArrayList<>(depositRows.size() + 2 * exchangeLegs.size());
+            Map<String, BalanceDelta> deltas = new TreeMap<>();
+            for (var row : depositRows) {
+                apply(row.onWallet(walletId), balances, deltas, rows);
+            }
+            for (int i = 0; i < exchangeLegs.size(); i++) {
+                var out = exchangeLegs.get(i).get(0);
+                if (balances.getOrDefault(out.currency(), BigDecimal.ZERO).compareTo(out.amount()) < 0) {
+                    throw new ApiException(
+                            HttpStatus.CONFLICT,
+                            "exchanges[" + i + "] Insufficient wallet balance in " + out.currency()
+                    );
+                }
+                for (var leg : exchangeLegs.get(i)) {
+                    apply(leg.onWallet(walletId), balances, deltas, rows);
+                }
+            }
+
+            var inserted = walletLedgerRepository.insertAll(rows);
+            walletLedgerRepository.applyDeltas(List.copyOf(deltas.values()));
+
+            var depositResponses = inserted.subList(0, depositRows.size()).stream()
+                    .map(WalletCommandService::toResponse)
+                    .toList();
+            List<WalletExchangeResponse> exchangeResponses = new ArrayList<>(exchangeLegs.size());
+            for (int i = 0; i < exchangeLegs.size(); i++) {
+                int from = depositRows.size() + 2 * i;
+                exchangeResponses.add(new WalletExchangeResponse(
+                        exchangeLegs.get(i).get(0).exchangeGroupId(),
+                        walletId,
+                        inserted.subList(from, from + 2).stream().map(WalletCommandService::toResponse).toList()
                 ));
+            }
+            return new WalletBatchResponse(walletId, depositResponses, exchangeResponses);
+        });
+    }
+
+    private static void apply(
+            LedgerRow row,
+            Map<String, BigDecimal> balances,
+            Map<String, BalanceDelta> deltas,
+            List<LedgerRow> rows
+    ) {
+        balances.merge(row.currency(), row.signedAmount(), BigDecimal::add);
+        deltas.merge(row.currency(), BalanceDelta.of(row), BalanceDelta::plus);
+        rows.add(row);
+    }
+
+    // validated deposit row; the wallet id is filled in once the wallet is resolved
+    private static LedgerRow depositRow(UUID actorMemberId, WalletDepositRequest req) {
+        if (req == null) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Request body is required");
+        }
+        BigDecimal originalAmount = requirePositiveAmount(req.originalAmount(), "originalAmount")
+                .setScale(2, RoundingMode.HALF_UP);
+        BigDecimal fxRate = requirePositiveAmount(req.fxRate(), "fxRate");
+        String currency = normalizeCurrency(req.originalCurrency());
 
+        BigDecimal computedBaseAmount = originalAmount.multiply(fxRate);
+
+        return new LedgerRow(null, "DEPOSIT", "IN", originalAmount, currency, fxRate, computedBaseAmount,
+                actorMemberId, null, null, req.fxSource(), req.note());
+    }
+
+    // validated OUT and IN legs of an exchange, in that order
+    private static List<LedgerRow> exchangeRows(UUID exchangeGroupId, UUID actorMemberId, WalletExchangeRequest req) {
         if (req == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Request body is required");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Request body is required");
         }
         if (req.from() == null || req.to() == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from and to are required");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "from and to are required");
         }
 
         String fromCurrency = normalizeCurrency(req.from().currency(), "from.currency");
         String toCurrency = normalizeCurrency(req.to().currency(), "to.currency");
         if (fromCurrency.equals(toCurrency)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from.currency and to.currency must be different");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "from.currency and to.currency must be different");
         }
 
         BigDecimal fromAmount = requirePositiveAmount(req.from().amount(), "from.amount")
@@ -162,63 +276,48 @@ public class WalletCommandService {
         BigDecimal outBase = fromAmount.multiply(fromFxRate).setScale(2, RoundingMode.HALF_UP);
         BigDecimal inBase = toAmount.multiply(toFxRate).setScale(2, RoundingMode.HALF_UP);
 
-        int updated = walletBalanceRepository.debitIfSufficient(wallet.getId(), fromCurrency, fromAmount);
-        if (updated == 0) {
-            throw new ResponseStatusException(
-                    HttpStatus.CONFLICT,
-                    "Insufficient wallet balance in " + fromCurrency
-            );
+        return List.of(
+                new LedgerRow(null, "EXCHANGE", "OUT", fromAmount, fromCurrency, fromFxRate, outBase,
+                        actorMemberId, null, exchangeGroupId, req.fxSource(), req.note()),
+                new LedgerRow(null, "EXCHANGE", "IN", toAmount, toCurrency, toFxRate, inBase,
+                        actorMemberId, null, exchangeGroupId, req.fxSource(), req.note())
+        );
+    }
+
+    // lane batches check balances in memory, so inline writers must not slip in between
+    private void lockWalletIfLaned(UUID tripId) {
+        if (walletWriteLanes.enabled()) {
+            walletLedgerRepository.lockTripWallet(tripId);
         }
+    }
 
-        UUID exchangeGroupId = UUID.randomUUID();
+    private Long requireWalletId(UUID tripId) {
+        return walletLedgerRepository.findWalletId(tripId)
+                .orElseThrow(() -> walletNotFound(tripId));
+    }
 
-        var outTxn = WalletTransactionEntity.builder()
-                .walletId(wallet.getId())
-                .txnType("EXCHANGE")
-                .direction("OUT")
-                .originalAmount(fromAmount)
-                .originalCurrency(fromCurrency)
-                .fxRate(fromFxRate)
-                .computedBaseAmount(outBase)
-                .memberId(actorMemberId)
-                .fxSource(req.fxSource())
-                .note(req.note())
-                .exchangeGroupId(exchangeGroupId)
-                .build();
-
-        var inTxn = WalletTransactionEntity.builder()
-                .walletId(wallet.getId())
-                .txnType("EXCHANGE")
-                .direction("IN")
-                .originalAmount(toAmount)
-                .originalCurrency(toCurrency)
-                .fxRate(toFxRate)
-                .computedBaseAmount(inBase)
-                .memberId(actorMemberId)
-                .fxSource(req.fxSource())
-                .note(req.note())
-                .exchangeGroupId(exchangeGroupId)
-                .build();
-
-        outTxn = walletTransactionRepository.save(outTxn);
-        inTxn = walletTransactionRepository.save(inTxn);
-
-        walletBalanceRepository.upsertBalance(wallet.getId(), toCurrency, toAmount);
-
-        wallet.setUpdatedAt(Instant.now());
-        sharedWalletRepository.save(wallet);
+    // a debit statement that wrote nothing: either there is no wallet or the balance is too low
+    private ApiException debitFailed(UUID tripId, String currency) {
+        if (sharedWalletRepository.findByTripId(tripId).isEmpty()) {
+            return walletNotFound(tripId);
+        }
+        return new ApiException(
+                HttpStatus.CONFLICT,
+                "Insufficient wallet balance in " + currency
+        );
+    }
 
-        return new WalletExchangeResponse(
-                exchangeGroupId,
-                wallet.getId(),
-                List.of(toResponse(outTxn), toResponse(inTxn))
+    private static ApiException walletNotFound(UUID tripId) {
+        return new ApiException(
+                HttpStatus.NOT_FOUND,
+                "Shared wallet not found for trip " + tripId
         );
     }
 
     private static BigDecimal requirePositiveAmount(BigDecimal v, String field) {
-        if (v == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " is required");
+        if (v == null) throw new ApiException(HttpStatus.BAD_REQUEST, field + " is required");
         if (v.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " must be > 0");
+            throw new ApiException(HttpStatus.BAD_REQUEST, field + " must be > 0");
         }
         return v;
     }
@@ -229,11 +328,11 @@ public class WalletCommandService {
 
     private static String normalizeCurrency(String ccy, String field) {
         if (ccy == null || ccy.isBlank()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " is required");
+            throw new ApiException(HttpStatus.BAD_REQUEST, field + " is required");
         }
         String v = ccy.trim().toUpperCase(Locale.ROOT);
         if (v.length() != 3) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " must be 3 letters");
+            throw new ApiException(HttpStatus.BAD_REQUEST, field + " must be 3 letters");
         }
         return v;
     }
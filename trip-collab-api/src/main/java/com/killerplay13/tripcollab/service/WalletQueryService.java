@@ -1,21 +1,23 @@
 package com.killerplay13.tripcollab.service;
 
+import com.killerplay13.tripcollab.error.ApiException;
 import com.killerplay13.tripcollab.repo.SharedWalletRepository;
 import com.killerplay13.tripcollab.repo.WalletBalanceRepository;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository;
 import com.killerplay13.tripcollab.repo.WalletTransactionRepository;
 import com.killerplay13.tripcollab.wallet.dto.TotalsInBaseDto;
 import com.killerplay13.tripcollab.wallet.dto.WalletBalanceDto;
 import com.killerplay13.tripcollab.wallet.dto.WalletSummaryResponse;
 import com.killerplay13.tripcollab.wallet.dto.WalletTransactionListResponse;
+import com.killerplay13.tripcollab.wallet.dto.WalletTransactionPageResponse;
 import com.killerplay13.tripcollab.wallet.dto.WalletTransactionResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 
-import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
@@ -27,14 +29,27 @@ public class WalletQueryService {
     private final SharedWalletRepository sharedWalletRepository;
     private final WalletBalanceRepository walletBalanceRepository;
     private final WalletTransactionRepository walletTransactionRepository;
+    private final WalletTotalsService walletTotalsService;
+    private final WalletLedgerJdbcRepository walletLedgerRepository;
+    private final TripVersionService tripVersionService;
     private static final Set<String> ALLOWED_TXN_TYPES = Set.of(
             "DEPOSIT", "EXCHANGE", "EXPENSE", "WITHDRAW", "ADJUSTMENT"
     );
 
+    /**
+     * ETag for the wallet reads: the trip version (expense writes that pay from the wallet bump it)
+     * plus the wallet's balance-row versions, which deposits and exchanges raise instead of
+     * bumping the trip version.
+     */
+    public String etag(UUID tripId) {
+        return "\"v" + tripVersionService.current(tripId)
+                + ".w" + walletBalanceRepository.sumVersionsByTripId(tripId) + "\"";
+    }
+
     @Transactional(readOnly = true)
     public WalletSummaryResponse getSummary(UUID tripId) {
         var wallet = sharedWalletRepository.findByTripId(tripId)
-                .orElseThrow(() -> new ResponseStatusException(
+                .orElseThrow(() -> new ApiException(
                         HttpStatus.NOT_FOUND,
                         "Shared wallet not found for trip " + tripId
                 ));
@@ -43,15 +58,8 @@ public class WalletQueryService {
                 .map(b -> new WalletBalanceDto(b.getCurrency(), b.getBalance()))
                 .toList();
 
-        TotalsInBaseDto totals = walletTransactionRepository.aggregateTotalsInBase(wallet.getId());
-        if (totals == null) {
-            totals = new TotalsInBaseDto(
-                    BigDecimal.ZERO,
-                    BigDecimal.ZERO,
-                    BigDecimal.ZERO,
-                    BigDecimal.ZERO
-            );
-        }
+        // running totals kept by the wallet commands; see WalletTotalsService.verify
+        TotalsInBaseDto totals = walletTotalsService.current(wallet.getId());
 
         return new WalletSummaryResponse(
                 wallet.getId(),
@@ -59,7 +67,56 @@ public class WalletQueryService {
                 wallet.getBaseCurrency(),
                 balances,
                 totals,
-                wallet.getUpdatedAt()
+                // wallet commands no longer touch shared_wallets, so the ledger says when it last changed
+                walletTransactionRepository.findLatestCreatedAt(wallet.getId()).orElse(wallet.getCreatedAt())
+        );
+    }
+
+    /** Keyset page of the ledger, newest first; no count query and no offset. */
+    @Transactional(readOnly = true)
+    public WalletTransactionPageResponse pageTransactions(
+            UUID tripId,
+            String currency,
+            String txnType,
+            UUID exchangeGroupId,
+            UUID memberId,
+            Instant from,
+            Instant to,
+            String cursor,
+            int limit
+    ) {
+        var wallet = sharedWalletRepository.findByTripId(tripId)
+                .orElseThrow(() -> new ApiException(
+                        HttpStatus.NOT_FOUND,
+                        "Shared wallet not found for trip " + tripId
+                ));
+
+        var filter = new WalletLedgerJdbcRepository.TransactionFilter(
+                normalizeCurrencyOrNull(currency),
+                normalizeTxnTypeOrNull(txnType),
+                exchangeGroupId,
+                memberId,
+                from,
+                to
+        );
+        int size = Math.min(Math.max(limit, 1), 200);
+        var after = WalletTransactionCursor.decode(cursor);
+
+        // one extra row tells whether another page exists
+        var rows = walletLedgerRepository.findPage(
+                wallet.getId(),
+                filter,
+                after == null ? null : after.createdAt(),
+                after == null ? null : after.id(),
+                size + 1
+        );
+        if (rows.size() <= size) {
+            return new WalletTransactionPageResponse(rows.stream().map(WalletQueryService::toResponse).toList(), null);
+        }
+        var items = rows.subList(0, size);
+        return new WalletTransactionPageResponse(
+                items.stream().map(WalletQueryService::toResponse).toList(),
+                WalletTransactionCursor.of(items.get(size - 1)).encode()
         );
     }
 
@@ -73,7 +130,7 @@ public class WalletQueryService {
             int size
     ) {
         var wallet = sharedWalletRepository.findByTripId(tripId)
-                .orElseThrow(() -> new ResponseStatusException(
+                .orElseThrow(() -> new ApiException(
                         HttpStatus.NOT_FOUND,
                         "Shared wallet not found for trip " + tripId
                 ));
@@ -108,13 +165,13 @@ public class WalletQueryService {
     @Transactional(readOnly = true)
     public WalletTransactionResponse getTransaction(UUID tripId, Long transactionId) {
         var wallet = sharedWalletRepository.findByTripId(tripId)
-                .orElseThrow(() -> new ResponseStatusException(
+                .orElseThrow(() -> new ApiException(
                         HttpStatus.NOT_FOUND,
                         "Shared wallet not found for trip " + tripId
                 ));
 
         var txn = walletTransactionRepository.findByIdAndWalletId(transactionId, wallet.getId())
-                .orElseThrow(() -> new ResponseStatusException(
+                .orElseThrow(() -> new ApiException(
                         HttpStatus.NOT_FOUND,
                         "Transaction not found"
                 ));
@@ -125,11 +182,11 @@ public class WalletQueryService {
     private static String normalizeCurrencyOrNull(String currency) {
         if (currency == null) return null;
         if (currency.isBlank()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "currency is required");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "currency is required");
         }
         String v = currency.trim().toUpperCase(Locale.ROOT);
         if (v.length() != 3) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "currency must be 3 letters");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "currency must be 3 letters");
         }
         return v;
     }
@@ -137,16 +194,16 @@ public class WalletQueryService {
     private static String normalizeTxnTypeOrNull(String txnType) {
         if (txnType == null) return null;
         if (txnType.isBlank()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "txnType is required");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "txnType is required");
         }
         String v = txnType.trim().toUpperCase(Locale.ROOT);
         if (!ALLOWED_TXN_TYPES.contains(v)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "txnType is invalid");
+            throw new ApiException(HttpStatus.BAD_REQUEST, "txnType is invalid");
         }
         return v;
     }
 
-    private static WalletTransactionResponse toResponse(com.killerplay13.tripcollab.domain.WalletTransactionEntity txn) {
+    static WalletTransactionResponse toResponse(com.killerplay13.tripcollab.domain.WalletTransactionEntity txn) {
         return new WalletTransactionResponse(
                 txn.getId(),
                 txn.getWalletId(),
@@ -0,0 +1,425 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository.BalanceDelta;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository.LedgerRow;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks every wallet's balance rows against its ledger. Wallets are taken in id-ordered chunks and
+ * handed to a small worker pool; each chunk streams its ledger rows through a JDBC cursor and reads
+ * its balance rows in one REPEATABLE READ snapshot, so a command committing meanwhile cannot show
+ * up as drift. Repairs take the wallet's advisory lock exclusively (every wallet writer holds it,
+ * shared or exclusive, while it writes), then re-check the wallet and overwrite the drifted rows.
+ * A rows-per-second budget keeps a run from crowding out live traffic.
+ */
+@Service
+public class WalletReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletReconciliationService.class);
+
+    private static final int MAX_REPORTED_DRIFT = 100;
+
+    private static final String NEXT_CHUNK_SQL = "SELECT id FROM shared_wallets WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String LEDGER_SQL = """
+        SELECT wallet_id, txn_type, direction, original_amount, original_currency, computed_base_amount
+        FROM wallet_transactions
+        WHERE wallet_id BETWEEN ? AND ?
+        """;
+
+    private static final String BALANCES_SQL = """
+        SELECT wallet_id, currency, balance,
+               deposits_in_base, withdrawals_out_base, spent_out_base, adjustments_net_base
+        FROM wallet_balances
+        WHERE wallet_id BETWEEN ? AND ?
+        """;
+
+    private static final String OVERWRITE_SQL = """
+        INSERT INTO wallet_balances (
+          wallet_id, currency, balance,
+          deposits_in_base, withdrawals_out_base, spent_out_base, adjustments_net_base,
+          created_at, updated_at
+        )
+        VALUES (?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
+        ON CONFLICT (wallet_id, currency)
+        DO UPDATE SET
+          balance = EXCLUDED.balance,
+          deposits_in_base = EXCLUDED.deposits_in_base,
+          withdrawals_out_base = EXCLUDED.withdrawals_out_base,
+          spent_out_base = EXCLUDED.spent_out_base,
+          adjustments_net_base = EXCLUDED.adjustments_net_base,
+          version = wallet_balances.version + 1,
+          updated_at = NOW()
+        """;
+
+    /** A balance row's values, as stored or as recomputed from the ledger. */
+    public record Sums(
+            BigDecimal balance,
+            BigDecimal depositsIn,
+            BigDecimal withdrawalsOut,
+            BigDecimal spentOut,
+            BigDecimal adjustmentsNet
+    ) {
+        static final Sums ZERO = new Sums(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+
+        Sums plus(BalanceDelta d) {
+            return new Sums(
+                    balance.add(d.balance()),
+                    depositsIn.add(d.depositsIn()),
+                    withdrawalsOut.add(d.withdrawalsOut()),
+                    spentOut.add(d.spentOut()),
+                    adjustmentsNet.add(d.adjustmentsNet())
+            );
+        }
+
+        boolean sameAs(Sums o) {
+            return balance.compareTo(o.balance) == 0
+                    && depositsIn.compareTo(o.depositsIn) == 0
+                    && withdrawalsOut.compareTo(o.withdrawalsOut) == 0
+                    && spentOut.compareTo(o.spentOut) == 0
+                    && adjustmentsNet.compareTo(o.adjustmentsNet) == 0;
+        }
+    }
+
+    public record Drift(Long walletId, String currency, Sums stored, Sums expected) {}
+
+    /** Progress of the current run, or the outcome of the last one. {@code drift} holds the first 100 findings. */
+    public record Progress(
+            boolean running,
+            boolean repair,
+            Instant startedAt,
+            Instant finishedAt,
+            long walletsTotal,
+            long walletsChecked,
+            long chunksDone,
+            long failedChunks,
+            long ledgerRows,
+            long driftedWallets,
+            long repairedWallets,
+            long elapsedMillis,
+            long ledgerRowsPerSecond,
+            long walletsPerSecond,
+            List<Drift> drift
+    ) {}
+
+    private record Snapshot(Map<Long, Map<String, Sums>> expected, Map<Long, Map<String, Sums>> stored) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final WalletLedgerJdbcRepository ledgerRepository;
+    private final boolean scheduleEnabled;
+    private final boolean scheduledRepair;
+    private final int parallelism;
+    private final int chunkSize;
+    private final long maxRowsPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private volatile boolean repair;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile long walletsTotal;
+    private final LongAdder walletsChecked = new LongAdder();
+    private final LongAdder chunksDone = new LongAdder();
+    private final LongAdder failedChunks = new LongAdder();
+    private final LongAdder ledgerRows = new LongAdder();
+    private final LongAdder driftedWallets = new LongAdder();
+    private final LongAdder repairedWallets = new LongAdder();
+    private final ConcurrentLinkedQueue<Drift> reported = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger reportedCount = new AtomicInteger();
+
+    public WalletReconciliationService(
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            WalletLedgerJdbcRepository ledgerRepository,
+            @Value("${tripcollab.wallet.reconcile.enabled:false}") boolean scheduleEnabled,
+            @Value("${tripcollab.wallet.reconcile.repair:false}") boolean scheduledRepair,
+            @Value("${tripcollab.wallet.reconcile.parallelism:2}") int parallelism,
+            @Value("${tripcollab.wallet.reconcile.chunk-size:200}") int chunkSize,
+            @Value("${tripcollab.wallet.reconcile.fetch-size:1000}") int fetchSize,
+            @Value("${tripcollab.wallet.reconcile.max-rows-per-second:50000}") long maxRowsPerSecond
+    ) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        // PostgreSQL only honours the fetch size inside a transaction; one snapshot per chunk
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.readTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerRepository = ledgerRepository;
+        this.scheduleEnabled = scheduleEnabled;
+        this.scheduledRepair = scheduledRepair;
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxRowsPerSecond = Math.max(0, maxRowsPerSecond);
+    }
+
+    /** Starts a run in the background; false when one is already running. */
+    public boolean start(boolean repair) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread runner = new Thread(() -> runGuarded(repair), "wallet-reconcile");
+        runner.setDaemon(true);
+        runner.start();
+        return true;
+    }
+
+    @Scheduled(
+            initialDelayString = "${tripcollab.wallet.reconcile.interval-ms:86400000}",
+            fixedDelayString = "${tripcollab.wallet.reconcile.interval-ms:86400000}"
+    )
+    public void scheduledRun() {
+        // on its own thread, like an admin run: the scheduler threads are shared with other jobs
+        if (scheduleEnabled) {
+            start(scheduledRepair);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        cancelled = true;
+    }
+
+    public Progress progress() {
+        boolean isRunning = running.get();
+        long elapsedNanos = startedAt == null ? 0 : (isRunning ? System.nanoTime() : finishedNanos) - startedNanos;
+        long elapsedMillis = Math.max(0, elapsedNanos / 1_000_000);
+        long rows = ledgerRows.sum();
+        long wallets = walletsChecked.sum();
+        return new Progress(
+                isRunning,
+                repair,
+                startedAt,
+                finishedAt,
+                walletsTotal,
+                wallets,
+                chunksDone.sum(),
+                failedChunks.sum(),
+                rows,
+                driftedWallets.sum(),
+                repairedWallets.sum(),
+                elapsedMillis,
+                elapsedMillis == 0 ? 0 : rows * 1000 / elapsedMillis,
+                elapsedMillis == 0 ? 0 : wallets * 1000 / elapsedMillis,
+                List.copyOf(reported)
+        );
+    }
+
+    private void runGuarded(boolean repair) {
+        try {
+            run(repair);
+        } catch (RuntimeException e) {
+            log.error("Wallet reconciliation failed", e);
+        } finally {
+            finishedNanos = System.nanoTime();
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    private void run(boolean repair) {
+        reset(repair);
+        Long total = jdbcTemplate.queryForObject("SELECT count(*) FROM shared_wallets", Long.class);
+        walletsTotal = total == null ? 0 : total;
+        log.info("Wallet reconciliation started: {} wallets, repair={}", walletsTotal, repair);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "wallet-reconcile-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // at most one queued chunk per worker, so the id scan stays just ahead of the workers
+        Semaphore slots = new Semaphore(2 * parallelism);
+        try {
+            long after = 0;
+            while (!cancelled) {
+                List<Long> ids = jdbcTemplate.queryForList(NEXT_CHUNK_SQL, Long.class, after, chunkSize);
+                if (ids.isEmpty()) break;
+                after = ids.get(ids.size() - 1);
+
+                throttle();
+                slots.acquire();
+                long first = ids.get(0);
+                long last = after;
+                int count = ids.size();
+                workers.execute(() -> {
+                    try {
+                        reconcileChunk(first, last, count, repair);
+                    } catch (RuntimeException e) {
+                        failedChunks.increment();
+                        log.warn("Wallet reconciliation of wallets {}..{} failed", first, last, e);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            slots.acquire(2 * parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+        log.info("Wallet reconciliation finished: {} wallets, {} ledger rows, {} drifted, {} repaired, {} failed chunks",
+                walletsChecked.sum(), ledgerRows.sum(), driftedWallets.sum(), repairedWallets.sum(), failedChunks.sum());
+    }
+
+    private void reset(boolean repair) {
+        cancelled = false;
+        this.repair = repair;
+        startedNanos = System.nanoTime();
+        startedAt = Instant.now();
+        finishedAt = null;
+        walletsTotal = 0;
+        walletsChecked.reset();
+        chunksDone.reset();
+        failedChunks.reset();
+        ledgerRows.reset();
+        driftedWallets.reset();
+        repairedWallets.reset();
+        reported.clear();
+        reportedCount.set(0);
+    }
+
+    // holds the id scan back until the rows read so far fit the per-second budget
+    private void throttle() throws InterruptedException {
+        if (maxRowsPerSecond == 0) return;
+        long dueMillis = ledgerRows.sum() * 1000 / maxRowsPerSecond;
+        long elapsedMillis = (System.nanoTime() - startedNanos) / 1_000_000;
+        if (dueMillis > elapsedMillis) {
+            Thread.sleep(dueMillis - elapsedMillis);
+        }
+    }
+
+    private void reconcileChunk(long firstId, long lastId, int wallets, boolean repair) {
+        Snapshot snapshot = readTemplate.execute(tx -> read(firstId, lastId));
+
+        Set<Long> walletIds = new TreeSet<>(snapshot.expected().keySet());
+        walletIds.addAll(snapshot.stored().keySet());
+        for (Long walletId : walletIds) {
+            var drift = compare(walletId, snapshot.stored().get(walletId), snapshot.expected().get(walletId));
+            if (drift.isEmpty()) continue;
+
+            driftedWallets.increment();
+            drift.forEach(this::report);
+            if (repair && repairWallet(walletId)) {
+                repairedWallets.increment();
+            }
+        }
+        walletsChecked.add(wallets);
+        chunksDone.increment();
+    }
+
+    private Snapshot read(long firstId, long lastId) {
+        // balances first: a command committing in between then shows up in the ledger as well
+        Map<Long, Map<String, Sums>> stored = new HashMap<>();
+        jdbcTemplate.query(BALANCES_SQL, (RowCallbackHandler) rs ->
+                stored.computeIfAbsent(rs.getLong("wallet_id"), k -> new HashMap<>())
+                        .put(rs.getString("currency"), new Sums(
+                                rs.getBigDecimal("balance"),
+                                rs.getBigDecimal("deposits_in_base"),
+                                rs.getBigDecimal("withdrawals_out_base"),
+                                rs.getBigDecimal("spent_out_base"),
+                                rs.getBigDecimal("adjustments_net_base")
+                        )), firstId, lastId);
+
+        Map<Long, Map<String, Sums>> expected = new HashMap<>();
+        jdbcTemplate.query(LEDGER_SQL, (RowCallbackHandler) rs -> {
+            var row = new LedgerRow(
+                    rs.getLong("wallet_id"),
+                    rs.getString("txn_type"),
+                    rs.getString("direction"),
+                    rs.getBigDecimal("original_amount"),
+                    rs.getString("original_currency"),
+                    null,
+                    rs.getBigDecimal("computed_base_amount"),
+                    null, null, null, null, null
+            );
+            var delta = BalanceDelta.of(row);
+            expected.computeIfAbsent(row.walletId(), k -> new HashMap<>())
+                    .compute(row.currency(), (k, sums) -> (sums == null ? Sums.ZERO : sums).plus(delta));
+            ledgerRows.increment();
+        }, firstId, lastId);
+
+        return new Snapshot(expected, stored);
+    }
+
+    private static List<Drift> compare(Long walletId, Map<String, Sums> stored, Map<String, Sums> expected) {
+        Map<String, Sums> s = stored == null ? Map.of() : stored;
+        Map<String, Sums> e = expected == null ? Map.of() : expected;
+        Set<String> currencies = new HashSet<>(s.keySet());
+        currencies.addAll(e.keySet());
+
+        List<Drift> drift = new ArrayList<>();
+        for (String currency : new TreeSet<>(currencies)) {
+            var have = s.getOrDefault(currency, Sums.ZERO);
+            var want = e.getOrDefault(currency, Sums.ZERO);
+            if (!have.sameAs(want)) {
+                drift.add(new Drift(walletId, currency, have, want));
+            }
+        }
+        return drift;
+    }
+
+    /**
+     * Re-reads the wallet under its exclusive advisory lock, so no command is in flight or can
+     * start, and overwrites whatever still drifts. Returns whether anything was written.
+     */
+    private boolean repairWallet(Long walletId) {
+        Boolean repaired = writeTemplate.execute(tx -> {
+            ledgerRepository.lockWallet(walletId);
+
+            Snapshot snapshot = read(walletId, walletId);
+            var drift = compare(walletId, snapshot.stored().get(walletId), snapshot.expected().get(walletId));
+            for (var d : drift) {
+                var want = d.expected();
+                jdbcTemplate.update(OVERWRITE_SQL, walletId, d.currency(), want.balance(),
+                        want.depositsIn(), want.withdrawalsOut(), want.spentOut(), want.adjustmentsNet());
+            }
+            if (!drift.isEmpty()) {
+                log.warn("Repaired wallet {} currencies {}", walletId, drift.stream().map(Drift::currency).toList());
+            }
+            return !drift.isEmpty();
+        });
+        return Boolean.TRUE.equals(repaired);
+    }
+
+    private void report(Drift drift) {
+        if (reportedCount.incrementAndGet() <= MAX_REPORTED_DRIFT) {
+            reported.add(drift);
+        }
+    }
+}
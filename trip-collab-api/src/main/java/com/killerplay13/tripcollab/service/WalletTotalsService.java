@@ -0,0 +1,108 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.WalletBalanceEntity;
+import com.killerplay13.tripcollab.error.ApiException;
+import com.killerplay13.tripcollab.repo.SharedWalletRepository;
+import com.killerplay13.tripcollab.repo.WalletBalanceRepository;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository;
+import com.killerplay13.tripcollab.repo.WalletTransactionRepository;
+import com.killerplay13.tripcollab.wallet.dto.TotalsInBaseDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Reads and verifies the wallet's running base-currency totals. The wallet command statements
+ * keep them per currency on wallet_balances; the summary adds up those rows.
+ */
+@Service
+@RequiredArgsConstructor
+public class WalletTotalsService {
+
+    private static final TotalsInBaseDto ZERO = new TotalsInBaseDto(
+            BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+
+    private final WalletBalanceRepository walletBalanceRepository;
+    private final WalletTransactionRepository walletTransactionRepository;
+    private final SharedWalletRepository sharedWalletRepository;
+    private final WalletLedgerJdbcRepository walletLedgerRepository;
+
+    public record CurrencyDrift(String currency, TotalsInBaseDto stored, TotalsInBaseDto expected) {}
+
+    public record TotalsReport(Long walletId, int currenciesChecked, List<CurrencyDrift> drift, boolean repaired) {}
+
+    @Transactional(readOnly = true)
+    public TotalsInBaseDto current(Long walletId) {
+        TotalsInBaseDto totals = walletBalanceRepository.sumTotalsInBase(walletId);
+        return totals != null ? totals : ZERO;
+    }
+
+    /**
+     * Recomputes the totals of every currency from the ledger and compares them with
+     * wallet_balances. With {@code repair}, the wallet's advisory lock is taken exclusively first
+     * so no wallet command is in flight or can start, then drifted currencies are overwritten.
+     */
+    @Transactional
+    public TotalsReport verify(UUID tripId, boolean repair) {
+        var wallet = sharedWalletRepository.findByTripId(tripId)
+                .orElseThrow(() -> new ApiException(
+                        HttpStatus.NOT_FOUND,
+                        "Shared wallet not found for trip " + tripId
+                ));
+
+        if (repair) {
+            walletLedgerRepository.lockWallet(wallet.getId());
+        }
+        // balances before the ledger, as in WalletReconciliationService
+        List<WalletBalanceEntity> rows = walletBalanceRepository.findAllByWalletIdOrderByCurrencyAsc(wallet.getId());
+
+        Map<String, TotalsInBaseDto> stored = new TreeMap<>();
+        for (var b : rows) {
+            stored.put(b.getCurrency(), new TotalsInBaseDto(
+                    b.getDepositsInBase(), b.getWithdrawalsOutBase(), b.getSpentOutBase(), b.getAdjustmentsNetBase()));
+        }
+        Map<String, TotalsInBaseDto> expected = new TreeMap<>();
+        for (Object[] row : walletTransactionRepository.aggregateTotalsInBaseByCurrency(wallet.getId())) {
+            expected.put((String) row[0], new TotalsInBaseDto(
+                    (BigDecimal) row[1], (BigDecimal) row[2], (BigDecimal) row[3], (BigDecimal) row[4]));
+        }
+
+        Set<String> currencies = new TreeSet<>(stored.keySet());
+        currencies.addAll(expected.keySet());
+
+        List<CurrencyDrift> drift = new ArrayList<>();
+        for (String currency : currencies) {
+            var s = stored.getOrDefault(currency, ZERO);
+            var e = expected.getOrDefault(currency, ZERO);
+            if (!sameTotals(s, e)) {
+                drift.add(new CurrencyDrift(currency, s, e));
+            }
+        }
+
+        if (repair && !drift.isEmpty()) {
+            for (var d : drift) {
+                var e = d.expected();
+                walletBalanceRepository.overwriteTotals(
+                        wallet.getId(), d.currency(), e.depositsIn(), e.withdrawalsOut(), e.spentOut(), e.adjustmentsNet());
+            }
+        }
+        return new TotalsReport(wallet.getId(), currencies.size(), drift, repair && !drift.isEmpty());
+    }
+
+    private static boolean sameTotals(TotalsInBaseDto a, TotalsInBaseDto b) {
+        return a.depositsIn().compareTo(b.depositsIn()) == 0
+                && a.withdrawalsOut().compareTo(b.withdrawalsOut()) == 0
+                && a.spentOut().compareTo(b.spentOut()) == 0
+                && a.adjustmentsNet().compareTo(b.adjustmentsNet()) == 0;
+    }
+}
@@ -0,0 +1,35 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.WalletTransactionEntity;
+import com.killerplay13.tripcollab.error.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/** Opaque keyset position in (created_at DESC, id DESC) order. */
+record WalletTransactionCursor(Instant createdAt, Long id) {
+
+    static WalletTransactionCursor of(WalletTransactionEntity t) {
+        return new WalletTransactionCursor(t.getCreatedAt(), t.getId());
+    }
+
+    String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns null for a missing cursor (first page). */
+    static WalletTransactionCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 2) throw new IllegalArgumentException(raw);
+            return new WalletTransactionCursor(Instant.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
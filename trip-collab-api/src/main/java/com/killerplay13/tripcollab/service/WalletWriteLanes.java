@@ -0,0 +1,287 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.WalletTransactionEntity;
+import com.killerplay13.tripcollab.error.ApiException;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository.BalanceDelta;
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository.LedgerRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional single-writer lanes for wallet commands ({@code tripcollab.wallet.lanes.enabled}).
+ * Commands are striped by wallet id onto one thread per lane, which drains whatever has queued up
+ * and commits it as one transaction: an advisory lock per wallet in id order, a balance check per
+ * command in arrival order, one batched ledger insert and one upsert per touched balance row with
+ * the deltas netted. While lanes are enabled every other wallet writer takes the same advisory
+ * lock first, so writers on any node are serialized per wallet instead of meeting on row locks.
+ */
+@Component
+public class WalletWriteLanes {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletWriteLanes.class);
+
+    private record BalanceKey(Long walletId, String currency) {}
+
+    private static final Comparator<BalanceKey> KEY_ORDER =
+            Comparator.comparing(BalanceKey::walletId).thenComparing(BalanceKey::currency);
+
+    /** One wallet command: the ledger rows it appends, all on {@code walletId}. */
+    public record Command(Long walletId, List<LedgerRow> rows) {}
+
+    private record Pending(Command command, CompletableFuture<List<WalletTransactionEntity>> result) {}
+
+    public record Stats(
+            boolean enabled,
+            int queued,
+            long batches,
+            long commands,
+            long lastBatchSize,
+            long lastCommitMillis,
+            long rejected,
+            long fallbacks
+    ) {}
+
+    private final WalletLedgerJdbcRepository ledgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int stripes;
+    private final int maxBatch;
+    private final int queueCapacity;
+    private final Duration waitTimeout;
+
+    private final List<BlockingQueue<Pending>> lanes = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong lastCommitMillis = new AtomicLong();
+
+    public WalletWriteLanes(
+            WalletLedgerJdbcRepository ledgerRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${tripcollab.wallet.lanes.enabled:false}") boolean enabled,
+            @Value("${tripcollab.wallet.lanes.stripes:4}") int stripes,
+            @Value("${tripcollab.wallet.lanes.max-batch:64}") int maxBatch,
+            @Value("${tripcollab.wallet.lanes.queue-capacity:1000}") int queueCapacity,
+            @Value("${tripcollab.wallet.lanes.wait-timeout:10s}") Duration waitTimeout
+    ) {
+        this.ledgerRepository = ledgerRepository;
+        // lane transactions are always fresh; callers never hand one in
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.stripes = Math.max(1, stripes);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.waitTimeout = waitTimeout;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        running = true;
+        for (int i = 0; i < stripes; i++) {
+            BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(queueCapacity);
+            Thread worker = new Thread(() -> drain(queue), "wallet-lane-" + i);
+            worker.setDaemon(true);
+            lanes.add(queue);
+            workers.add(worker);
+            worker.start();
+        }
+        log.info("Wallet write lanes enabled: {} lanes, batches of up to {}", stripes, maxBatch);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        for (var queue : lanes) {
+            List<Pending> left = new ArrayList<>();
+            queue.drainTo(left);
+            left.forEach(p -> p.result().completeExceptionally(
+                    new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Server is shutting down, retry later")));
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether a command should go through a lane: lanes are on and the caller has no transaction
+     * of its own (a batch like POST /sync or an Idempotency-Key write must commit with it).
+     */
+    public boolean accepts() {
+        return enabled && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /** Queues the command on its wallet's lane and waits for the batch it lands in to commit. */
+    public List<WalletTransactionEntity> submit(Command command) {
+        var pending = new Pending(command, new CompletableFuture<>());
+        var lane = lanes.get(Math.floorMod(Long.hashCode(command.walletId()), lanes.size()));
+        if (!lane.offer(pending)) {
+            rejected.increment();
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Wallet write queue is full, retry later");
+        }
+        try {
+            return pending.result().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // it stays queued and may still commit; only an Idempotency-Key makes a retry safe
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Timed out waiting for the wallet write, it may still be applied");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for the wallet write");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Wallet write failed", e.getCause());
+        }
+    }
+
+    public Stats stats() {
+        int queued = lanes.stream().mapToInt(BlockingQueue::size).sum();
+        return new Stats(
+                enabled,
+                queued,
+                batches.sum(),
+                commands.sum(),
+                lastBatchSize.get(),
+                lastCommitMillis.get(),
+                rejected.sum(),
+                fallbacks.sum()
+        );
+    }
+
+    private void drain(BlockingQueue<Pending> queue) {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        long started = System.nanoTime();
+        List<Object> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(tx -> apply(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+            // one bad command must not fail its neighbours: retry each in its own transaction
+            fallbacks.increment();
+            log.warn("Wallet lane batch of {} commands failed, retrying them one by one", batch.size(), e);
+            for (var p : batch) {
+                commit(List.of(p));
+            }
+            return;
+        }
+        batches.increment();
+        commands.add(batch.size());
+        lastBatchSize.set(batch.size());
+        lastCommitMillis.set((System.nanoTime() - started) / 1_000_000);
+
+        // complete only after the commit, so no caller sees a write that could still roll back
+        for (int i = 0; i < batch.size(); i++) {
+            var result = batch.get(i).result();
+            if (outcomes.get(i) instanceof ApiException rejectedCommand) {
+                result.completeExceptionally(rejectedCommand);
+            } else {
+                @SuppressWarnings("unchecked")
+                var rows = (List<WalletTransactionEntity>) outcomes.get(i);
+                result.complete(rows);
+            }
+        }
+    }
+
+    /** Returns, per command, its inserted rows or the ApiException that rejected it. */
+    private List<Object> apply(List<Pending> batch) {
+        List<Long> walletIds = batch.stream().map(p -> p.command().walletId()).distinct().sorted().toList();
+        walletIds.forEach(ledgerRepository::lockWallet);
+        Map<Long, Map<String, BigDecimal>> balances = ledgerRepository.findBalances(walletIds);
+
+        List<LedgerRow> rows = new ArrayList<>();
+        List<Integer> rowCounts = new ArrayList<>(batch.size());
+        Map<BalanceKey, BalanceDelta> deltas = new TreeMap<>(KEY_ORDER);
+        List<Object> outcomes = new ArrayList<>(batch.size());
+
+        for (var p : batch) {
+            var command = p.command();
+            var wallet = balances.computeIfAbsent(command.walletId(), k -> new HashMap<>());
+            String shortCurrency = insufficientCurrency(command, wallet);
+            if (shortCurrency != null) {
+                outcomes.add(new ApiException(HttpStatus.CONFLICT, "Insufficient wallet balance in " + shortCurrency));
+                rowCounts.add(0);
+                continue;
+            }
+            for (var row : command.rows()) {
+                wallet.merge(row.currency(), row.signedAmount(), BigDecimal::add);
+                deltas.merge(new BalanceKey(row.walletId(), row.currency()), BalanceDelta.of(row), BalanceDelta::plus);
+                rows.add(row);
+            }
+            rowCounts.add(command.rows().size());
+            outcomes.add(null);
+        }
+
+        List<WalletTransactionEntity> inserted = ledgerRepository.insertAll(rows);
+        ledgerRepository.applyDeltas(List.copyOf(deltas.values()));
+
+        int offset = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            int count = rowCounts.get(i);
+            if (outcomes.get(i) == null) {
+                outcomes.set(i, inserted.subList(offset, offset + count));
+            }
+            offset += count;
+        }
+        return outcomes;
+    }
+
+    // the first debited currency the wallet cannot cover at this point of the batch, or null
+    private static String insufficientCurrency(Command command, Map<String, BigDecimal> wallet) {
+        for (var row : command.rows()) {
+            if ("OUT".equals(row.direction())
+                    && wallet.getOrDefault(row.currency(), BigDecimal.ZERO).compareTo(row.amount()) < 0) {
+                return row.currency();
+            }
+        }
+        return null;
+    }
+}
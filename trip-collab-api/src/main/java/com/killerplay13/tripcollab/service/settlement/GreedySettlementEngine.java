@@ -0,0 +1,50 @@
+package com.killerplay13.tripcollab.service.settlement;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pairs debtors and creditors in index order, at most n - 1 transfers.
+ * Callers pass members sorted by id, which keeps the result deterministic.
+ */
+@Component
+public class GreedySettlementEngine implements SettlementEngine {
+
+    @Override
+    public Mode mode() {
+        return Mode.GREEDY;
+    }
+
+    @Override
+    public List<Transfer> settle(long[] nets) {
+        int n = nets.length;
+        int[] debtors = new int[n];
+        int[] creditors = new int[n];
+        long[] remaining = new long[n];
+        int dCount = 0, cCount = 0;
+        for (int k = 0; k < n; k++) {
+            if (nets[k] < 0) debtors[dCount++] = k;
+            else if (nets[k] > 0) creditors[cCount++] = k;
+            remaining[k] = Math.abs(nets[k]);
+        }
+        return pair(debtors, dCount, creditors, cCount, remaining, new ArrayList<>());
+    }
+
+    /** Two-pointer pass over the given debtors/creditors, consuming {@code remaining}. */
+    static List<Transfer> pair(int[] debtors, int dCount, int[] creditors, int cCount, long[] remaining, List<Transfer> out) {
+        int i = 0, j = 0;
+        while (i < dCount && j < cCount) {
+            int d = debtors[i];
+            int c = creditors[j];
+            long pay = Math.min(remaining[d], remaining[c]);
+            if (pay > 0) out.add(new Transfer(d, c, pay));
+            remaining[d] -= pay;
+            remaining[c] -= pay;
+            if (remaining[d] == 0) i++;
+            if (remaining[c] == 0) j++;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,164 @@
+package com.killerplay13.tripcollab.service.settlement;
+
+import com.killerplay13.tripcollab.support.BoundedTtlCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Minimises the number of transfers. A group of k members whose nets sum to zero can always be
+ * settled with k - 1 transfers, so the minimum is (members - max number of disjoint zero-sum groups).
+ * The partition is found with a DP over member subsets (O(2^n * n)); above {@code maxExactMembers}
+ * it falls back to pairing exact amounts first and greedy largest-first for the rest.
+ * Results are memoised by the nets vector, so repeated reads of an unchanged trip skip the search.
+ */
+@Component
+public class OptimalSettlementEngine implements SettlementEngine {
+
+    // 2^16 subsets is ~600 KB of tables and ~1M steps per search; past that a GET gets expensive
+    private static final int HARD_LIMIT = 16;
+
+    private static final Duration CACHE_TTL = Duration.ofMinutes(10);
+
+    private record NetsKey(long[] nets) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NetsKey other && Arrays.equals(nets, other.nets);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nets);
+        }
+    }
+
+    private final int maxExactMembers;
+    private final BoundedTtlCache<NetsKey, List<Transfer>> cache;
+
+    public OptimalSettlementEngine(
+            @Value("${tripcollab.settlement.optimal-max-members:16}") int maxExactMembers,
+            @Value("${tripcollab.settlement.optimal-cache-entries:256}") int cacheEntries
+    ) {
+        this.maxExactMembers = Math.min(maxExactMembers, HARD_LIMIT);
+        this.cache = cacheEntries > 0 ? new BoundedTtlCache<>(cacheEntries, CACHE_TTL) : null;
+    }
+
+    @Override
+    public Mode mode() {
+        return Mode.OPTIMAL;
+    }
+
+    @Override
+    public List<Transfer> settle(long[] nets) {
+        if (cache == null) return search(nets);
+        var key = new NetsKey(nets.clone());
+        List<Transfer> cached = cache.get(key);
+        if (cached == null) {
+            cached = List.copyOf(search(nets));
+            cache.put(key, cached);
+        }
+        return cached;
+    }
+
+    private List<Transfer> search(long[] nets) {
+        int count = 0;
+        int[] nonZero = new int[nets.length];
+        for (int k = 0; k < nets.length; k++) {
+            if (nets[k] != 0) nonZero[count++] = k;
+        }
+        int[] members = Arrays.copyOf(nonZero, count);
+
+        List<int[]> groups = members.length <= maxExactMembers
+                ? zeroSumGroups(nets, members)
+                : heuristicGroups(nets, members);
+
+        long[] remaining = new long[nets.length];
+        for (int k = 0; k < nets.length; k++) remaining[k] = Math.abs(nets[k]);
+
+        List<Transfer> out = new ArrayList<>();
+        int[] debtors = new int[members.length];
+        int[] creditors = new int[members.length];
+        for (int[] group : groups) {
+            int dCount = 0, cCount = 0;
+            for (int k : group) {
+                if (nets[k] < 0) debtors[dCount++] = k;
+                else creditors[cCount++] = k;
+            }
+            GreedySettlementEngine.pair(debtors, dCount, creditors, cCount, remaining, out);
+        }
+        return out;
+    }
+
+    private static List<int[]> zeroSumGroups(long[] nets, int[] members) {
+        int m = members.length;
+        if (m == 0) return List.of();
+
+        int full = (1 << m) - 1;
+        long[] sum = new long[full + 1];
+        byte[] groups = new byte[full + 1];
+        for (int mask = 1; mask <= full; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            sum[mask] = sum[mask & (mask - 1)] + nets[members[low]];
+            int best = 0;
+            for (int bits = mask; bits != 0; bits &= bits - 1) {
+                best = Math.max(best, groups[mask ^ (bits & -bits)]);
+            }
+            groups[mask] = (byte) (best + (sum[mask] == 0 ? 1 : 0));
+        }
+
+        // walk back from the full set; every time the remaining set sums to zero,
+        // the members removed since the previous such point form one zero-sum group
+        List<int[]> result = new ArrayList<>();
+        int[] current = new int[m];
+        int size = 0;
+        int mask = full;
+        while (mask != 0) {
+            int pick = Integer.lowestOneBit(mask);
+            for (int bits = mask; bits != 0; bits &= bits - 1) {
+                int b = bits & -bits;
+                if (groups[mask ^ b] > groups[mask ^ pick]) pick = b;
+            }
+            current[size++] = members[Integer.numberOfTrailingZeros(pick)];
+            mask ^= pick;
+            if (sum[mask] == 0) {
+                int[] group = Arrays.copyOf(current, size);
+                Arrays.sort(group);
+                result.add(group);
+                size = 0;
+            }
+        }
+        return result;
+    }
+
+    private static List<int[]> heuristicGroups(long[] nets, int[] members) {
+        List<int[]> result = new ArrayList<>();
+
+        Map<Long, Deque<Integer>> creditorsByAmount = new HashMap<>();
+        for (int k : members) {
+            if (nets[k] > 0) creditorsByAmount.computeIfAbsent(nets[k], x -> new ArrayDeque<>()).add(k);
+        }
+        boolean[] matched = new boolean[nets.length];
+        for (int k : members) {
+            if (nets[k] >= 0) continue;
+            Deque<Integer> same = creditorsByAmount.get(-nets[k]);
+            if (same != null && !same.isEmpty()) {
+                int c = same.poll();
+                matched[k] = true;
+                matched[c] = true;
+                result.add(new int[]{k, c});
+            }
+        }
+
+        List<Integer> rest = new ArrayList<>();
+        for (int k : members) {
+            if (!matched[k]) rest.add(k);
+        }
+        rest.sort(Comparator.<Integer>comparingLong(k -> -Math.abs(nets[k])).thenComparingInt(k -> k));
+        if (!rest.isEmpty()) {
+            result.add(rest.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+package com.killerplay13.tripcollab.service.settlement;
+
+import java.util.List;
+
+/**
+ * Turns per-member net balances (in cents) into a list of transfers.
+ * {@code nets[i] > 0} means member i should receive money, {@code < 0} means it should pay.
+ */
+public interface SettlementEngine {
+
+    enum Mode { GREEDY, OPTIMAL }
+
+    /** {@code from}/{@code to} are indexes into the nets array. */
+    record Transfer(int from, int to, long cents) {}
+
+    Mode mode();
+
+    List<Transfer> settle(long[] nets);
+}
@@ -0,0 +1,120 @@
+package com.killerplay13.tripcollab.support;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Small in-process cache with a hard size bound and a fixed time-to-live per entry.
+ * Expired entries are dropped lazily on read and in bulk when the bound is reached.
+ */
+public final class BoundedTtlCache<K, V> {
+
+  public record Stats(long hits, long misses, long evictions, int size) {}
+
+  private record Entry<V>(V value, long expiresAtNanos) {}
+
+  private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+  private final int maxSize;
+  private final long ttlNanos;
+  private final AtomicBoolean sweeping = new AtomicBoolean(false);
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public BoundedTtlCache(int maxSize, Duration ttl) {
+    if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+    if (ttl == null || ttl.isNegative() || ttl.isZero()) throw new IllegalArgumentException("ttl must be > 0");
+    this.maxSize = maxSize;
+    this.ttlNanos = ttl.toNanos();
+  }
+
+  public V get(K key) {
+    Entry<V> e = map.get(key);
+    if (e == null) {
+      misses.increment();
+      return null;
+    }
+    if (System.nanoTime() - e.expiresAtNanos() >= 0) {
+      if (map.remove(key, e)) evictions.increment();
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return e.value();
+  }
+
+  public void put(K key, V value) {
+    if (map.size() >= maxSize && !map.containsKey(key)) {
+      sweep();
+    }
+    map.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+  }
+
+  /**
+   * Returns the live value for the key, atomically creating it when absent or expired. Either way
+   * the entry's TTL restarts, so a value in steady use never expires.
+   */
+  public V getOrCreate(K key, Function<? super K, ? extends V> factory) {
+    if (map.size() >= maxSize && !map.containsKey(key)) {
+      sweep();
+    }
+    return map.compute(key, (k, e) -> {
+      long now = System.nanoTime();
+      if (e != null && now - e.expiresAtNanos() < 0) {
+        hits.increment();
+        return new Entry<>(e.value(), now + ttlNanos);
+      }
+      if (e != null) evictions.increment();
+      misses.increment();
+      return new Entry<>(factory.apply(k), now + ttlNanos);
+    }).value();
+  }
+
+  public void invalidate(K key) {
+    map.remove(key);
+  }
+
+  public void invalidateIf(Predicate<V> predicate) {
+    map.values().removeIf(e -> predicate.test(e.value()));
+  }
+
+  public void clear() {
+    map.clear();
+  }
+
+  public Stats stats() {
+    return new Stats(hits.sum(), misses.sum(), evictions.sum(), map.size());
+  }
+
+  // drop expired entries first; if still full, drop arbitrary entries down to ~90% of the bound
+  private void sweep() {
+    if (!sweeping.compareAndSet(false, true)) return;
+    try {
+      long now = System.nanoTime();
+      Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+      while (it.hasNext()) {
+        if (now - it.next().getValue().expiresAtNanos() >= 0) {
+          it.remove();
+          evictions.increment();
+        }
+      }
+
+      int target = Math.max(maxSize - Math.max(maxSize / 10, 1), 0);
+      it = map.entrySet().iterator();
+      while (map.size() > target && it.hasNext()) {
+        it.next();
+        it.remove();
+        evictions.increment();
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+}
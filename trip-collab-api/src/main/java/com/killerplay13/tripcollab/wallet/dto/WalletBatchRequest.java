@@ -0,0 +1,9 @@
+package com.killerplay13.tripcollab.wallet.dto;
+
+import java.util.List;
+
+/** Deposits are applied first, then exchanges in order, so an exchange may spend a deposit from the same batch. */
+public record WalletBatchRequest(
+        List<WalletDepositRequest> deposits,
+        List<WalletExchangeRequest> exchanges
+) {}
@@ -0,0 +1,9 @@
+package com.killerplay13.tripcollab.wallet.dto;
+
+import java.util.List;
+
+public record WalletBatchResponse(
+        Long walletId,
+        List<WalletTransactionResponse> deposits,
+        List<WalletExchangeResponse> exchanges
+) {}
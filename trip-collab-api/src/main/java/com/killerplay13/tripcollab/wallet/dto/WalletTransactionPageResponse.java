@@ -0,0 +1,9 @@
+package com.killerplay13.tripcollab.wallet.dto;
+
+import java.util.List;
+
+/** A keyset page of the ledger, newest first; nextCursor is null on the last page. */
+public record WalletTransactionPageResponse(
+        List<WalletTransactionResponse> items,
+        String nextCursor
+) {}
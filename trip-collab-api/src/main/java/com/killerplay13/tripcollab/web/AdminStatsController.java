@@ -0,0 +1,44 @@
+package com.killerplay13.tripcollab.web;
+
+import com.killerplay13.tripcollab.security.AdminTokenGuard;
+import com.killerplay13.tripcollab.security.InviteTokenGuard;
+import com.killerplay13.tripcollab.security.MemberPrincipalCache;
+import com.killerplay13.tripcollab.service.MemberPresenceTracker;
+import com.killerplay13.tripcollab.service.WalletWriteLanes;
+import com.killerplay13.tripcollab.support.BoundedTtlCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Counters of the in-process caches and buffers, for operators; see {@link AdminTokenGuard}. */
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminStatsController {
+
+    private final AdminTokenGuard adminTokenGuard;
+    private final MemberPrincipalCache memberPrincipalCache;
+    private final InviteTokenGuard inviteTokenGuard;
+    private final MemberPresenceTracker memberPresenceTracker;
+    private final WalletWriteLanes walletWriteLanes;
+
+    public record StatsResponse(
+            BoundedTtlCache.Stats principalCache,
+            InviteTokenGuard.Stats inviteGuard,
+            MemberPresenceTracker.Stats presence,
+            WalletWriteLanes.Stats walletLanes
+    ) {}
+
+    @GetMapping("/stats")
+    public StatsResponse stats(@RequestHeader(value = AdminTokenGuard.HEADER, required = false) String token) {
+        adminTokenGuard.require(token);
+        return new StatsResponse(
+                memberPrincipalCache.stats(),
+                inviteTokenGuard.stats(),
+                memberPresenceTracker.stats(),
+                walletWriteLanes.stats()
+        );
+    }
+}
@@ -0,0 +1,46 @@
+package com.killerplay13.tripcollab.web;
+
+import com.killerplay13.tripcollab.error.ApiException;
+import com.killerplay13.tripcollab.security.AdminTokenGuard;
+import com.killerplay13.tripcollab.service.WalletReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Operator endpoints for wallets across all trips; see {@link AdminTokenGuard}. */
+@RestController
+@RequestMapping("/api/admin/wallets")
+@RequiredArgsConstructor
+public class AdminWalletController {
+
+    private final WalletReconciliationService reconciliationService;
+    private final AdminTokenGuard adminTokenGuard;
+
+    /** Progress of the running reconciliation, or the result of the last one. */
+    @GetMapping("/reconcile")
+    public WalletReconciliationService.Progress reconcileStatus(
+            @RequestHeader(value = AdminTokenGuard.HEADER, required = false) String token
+    ) {
+        adminTokenGuard.require(token);
+        return reconciliationService.progress();
+    }
+
+    /** Starts a reconciliation of every wallet in the background; poll GET for progress. */
+    @PostMapping("/reconcile")
+    public ResponseEntity<WalletReconciliationService.Progress> reconcile(
+            @RequestParam(defaultValue = "false") boolean repair,
+            @RequestHeader(value = AdminTokenGuard.HEADER, required = false) String token
+    ) {
+        adminTokenGuard.require(token);
+        if (!reconciliationService.start(repair)) {
+            throw new ApiException(HttpStatus.CONFLICT, "Wallet reconciliation is already running");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconciliationService.progress());
+    }
+}
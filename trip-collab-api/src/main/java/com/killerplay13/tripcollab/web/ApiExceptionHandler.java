@@ -0,0 +1,23 @@
+package com.killerplay13.tripcollab.web;
+
+import com.killerplay13.tripcollab.error.ApiErrorWriter;
+import com.killerplay13.tripcollab.error.ApiException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+  private static final MediaType JSON_UTF8 = MediaType.valueOf(ApiErrorWriter.CONTENT_TYPE);
+
+  @ExceptionHandler(ApiException.class)
+  public ResponseEntity<byte[]> handleApiException(ApiException ex, HttpServletRequest request) {
+    int status = ex.getStatus().value();
+    return ResponseEntity.status(status)
+        .contentType(JSON_UTF8)
+        .body(ApiErrorWriter.toBytes(status, ex.getMessage(), request.getRequestURI()));
+  }
+}
@@ -1,13 +1,25 @@
 package com.killerplay13.tripcollab.web;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.killerplay13.tripcollab.domain.ExpenseEntity;
 import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
+import com.killerplay13.tripcollab.error.ApiException;
 import com.killerplay13.tripcollab.security.AuthGuard;
 import com.killerplay13.tripcollab.service.ExpenseService;
+import com.killerplay13.tripcollab.service.ExpenseStreamReader;
+import com.killerplay13.tripcollab.service.IdempotencyService;
+import com.killerplay13.tripcollab.service.TripVersionService;
+import com.killerplay13.tripcollab.service.settlement.SettlementEngine;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -19,6 +31,10 @@ import java.util.*;
 public class ExpenseController {
 
     private final ExpenseService expenseService;
+    private final ExpenseStreamReader expenseStreamReader;
+    private final ObjectMapper objectMapper;
+    private final TripVersionService tripVersionService;
+    private final IdempotencyService idempotencyService;
 
     // ---------- DTOs ----------
     public record MemberAmount(UUID memberId, BigDecimal amount) {}
@@ -67,9 +83,15 @@ public class ExpenseController {
             BigDecimal fxRate,
             String fxSource,
             BigDecimal computedAmount,
-            Boolean amountOverridden
+            Boolean amountOverridden,
+            // only present when the caller asked for includeSplits
+            @JsonInclude(JsonInclude.Include.NON_NULL) List<SplitResponse> splits
     ) {
         static ExpenseResponse from(ExpenseEntity e) {
+            return from(e, null);
+        }
+
+        static ExpenseResponse from(ExpenseEntity e, List<ExpenseSplitEntity> splits) {
             BigDecimal computed = null;
             if (e.getOriginalAmount() != null && e.getFxRate() != null) {
                 computed = e.getOriginalAmount()
@@ -86,7 +108,8 @@ public class ExpenseController {
                     e.getFxRate(),
                     e.getFxSource(),
                     computed,
-                    e.getAmountOverridden()
+                    e.getAmountOverridden(),
+                    splits == null ? null : splits.stream().map(SplitResponse::from).toList()
             );
         }
     }
@@ -103,46 +126,147 @@ public class ExpenseController {
         }
     }
 
-    public record ExpenseDetailResponse(ExpenseResponse expense, List<SplitResponse> splits) {}
+    public record ExpenseDetailResponse(ExpenseResponse expense, List<SplitResponse> splits) {
+        static ExpenseDetailResponse from(ExpenseService.ExpenseWithSplits result) {
+            var splits = result.splits().stream().map(SplitResponse::from).toList();
+            return new ExpenseDetailResponse(ExpenseResponse.from(result.expense()), splits);
+        }
+    }
+
+    /** Fields left out (null) are not changed; splitMethod is required when the amount changes. */
+    public record PatchExpenseRequest(
+            String title,
+            BigDecimal amount,
+            String currency,
+            UUID paidByMemberId,
+            LocalDate expenseDate,
+            String note,
+
+            ExpenseService.SplitMethod splitMethod,
+            List<UUID> participantMemberIds,
+            List<MemberAmount> customSplits,
+            OriginalMoney original
+    ) {}
 
     public record MoveExpenseRequest(LocalDate newDate) {}
 
+    public record ExpensePageResponse(List<ExpenseResponse> items, String nextCursor) {}
+
     // ---------- Endpoints ----------
     @GetMapping
-    public List<ExpenseResponse> listDay(@PathVariable UUID tripId, @RequestParam LocalDate day) {
-        return expenseService.listDay(tripId, day).stream().map(ExpenseResponse::from).toList();
+    public List<ExpenseResponse> listDay(
+            @PathVariable UUID tripId,
+            @RequestParam LocalDate day,
+            @RequestParam(defaultValue = "false") boolean includeSplits,
+            WebRequest webRequest
+    ) {
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        return toResponses(expenseService.listDay(tripId, day), includeSplits);
     }
 
     @GetMapping("/all")
-    public Map<LocalDate, List<ExpenseResponse>> listAllGrouped(@PathVariable UUID tripId) {
-        var all = expenseService.listAll(tripId);
+    public Map<LocalDate, List<ExpenseResponse>> listAllGrouped(
+            @PathVariable UUID tripId,
+            @RequestParam(defaultValue = "false") boolean includeSplits,
+            WebRequest webRequest
+    ) {
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        var all = toResponses(expenseService.listAll(tripId), includeSplits);
         var map = new LinkedHashMap<LocalDate, List<ExpenseResponse>>();
         for (var e : all) {
-            map.computeIfAbsent(e.getExpenseDate(), k -> new ArrayList<>()).add(ExpenseResponse.from(e));
+            map.computeIfAbsent(e.expenseDate(), k -> new ArrayList<>()).add(e);
         }
         return map;
     }
 
+    /** Multi-get: GET /expenses/batch?ids=a,b,c returns the expenses (with splits) in request order. */
+    @GetMapping("/batch")
+    public List<ExpenseResponse> getMany(
+            @PathVariable UUID tripId,
+            @RequestParam List<UUID> ids,
+            @RequestParam(defaultValue = "true") boolean includeSplits,
+            WebRequest webRequest
+    ) {
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        return toResponses(expenseService.getMany(tripId, ids), includeSplits);
+    }
+
+    /** Same grouped-by-day shape as /all, written row by row from a JDBC cursor. */
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllGrouped(@PathVariable UUID tripId, WebRequest webRequest) {
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                gen.writeStartObject();
+                var day = new LocalDate[1];
+                expenseStreamReader.forEach(tripId, e -> {
+                    if (!e.getExpenseDate().equals(day[0])) {
+                        if (day[0] != null) gen.writeEndArray();
+                        day[0] = e.getExpenseDate();
+                        gen.writeArrayFieldStart(day[0].toString());
+                    }
+                    gen.writeObject(ExpenseResponse.from(e));
+                });
+                if (day[0] != null) gen.writeEndArray();
+                gen.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /** Keyset pagination over all or matching expenses; pass nextCursor back as cursor. */
+    @GetMapping("/page")
+    public ExpensePageResponse page(
+            @PathVariable UUID tripId,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) LocalDate from,
+            @RequestParam(required = false) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "false") boolean includeSplits,
+            WebRequest webRequest
+    ) {
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        var page = expenseService.page(tripId, q, from, to, cursor, limit);
+        return new ExpensePageResponse(toResponses(page.items(), includeSplits), page.nextCursor());
+    }
+
     @GetMapping("/search")
     public List<ExpenseResponse> search(
             @PathVariable UUID tripId,
             @RequestParam(required = false) String q,
             @RequestParam(required = false) LocalDate from,
-            @RequestParam(required = false) LocalDate to
+            @RequestParam(required = false) LocalDate to,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeSplits,
+            WebRequest webRequest
     ) {
-        return expenseService.search(tripId, q, from, to).stream().map(ExpenseResponse::from).toList();
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        return toResponses(expenseService.search(tripId, q, from, to, limit), includeSplits);
     }
 
     @GetMapping("/{expenseId}")
-    public ExpenseDetailResponse get(@PathVariable UUID tripId, @PathVariable UUID expenseId) {
+    public ExpenseDetailResponse get(
+            @PathVariable UUID tripId,
+            @PathVariable UUID expenseId,
+            WebRequest webRequest
+    ) {
+        // look the row up first: an unknown id must be a 404, never a 304 on the trip version
         var e = expenseService.get(tripId, expenseId);
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
         var splits = expenseService.getSplits(expenseId).stream().map(SplitResponse::from).toList();
         return new ExpenseDetailResponse(ExpenseResponse.from(e), splits);
     }
 
     @GetMapping("/{expenseId}/splits")
-    public List<ExpenseSplitResponse> listSplits(@PathVariable UUID tripId, @PathVariable UUID expenseId) {
-        return expenseService.getSplitsByExpense(tripId, expenseId).stream()
+    public List<ExpenseSplitResponse> listSplits(
+            @PathVariable UUID tripId,
+            @PathVariable UUID expenseId,
+            WebRequest webRequest
+    ) {
+        var splits = expenseService.getSplitsByExpense(tripId, expenseId);
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        return splits.stream()
                 .map(ExpenseSplitResponse::from)
                 .toList();
     }
@@ -152,36 +276,14 @@ public class ExpenseController {
      * amount/currency must be in trip base currency.
      * For foreign expenses, provide original fields with fxRate.
      */
-    public ExpenseDetailResponse create(@PathVariable UUID tripId, @RequestBody CreateOrUpdateExpenseRequest req) {
-        var custom = req.customSplits() == null ? null :
-                req.customSplits().stream().map(x -> new ExpenseService.MemberAmount(x.memberId(), x.amount())).toList();
-        var original = req.original();
-        BigDecimal originalAmount = original != null ? original.amount() : null;
-        String originalCurrency = original != null ? original.currency() : null;
-        BigDecimal fxRate = original != null ? original.fxRate() : null;
-        String fxSource = original != null ? original.fxSource() : null;
-
-        var e = expenseService.create(
-                tripId,
-                req.title(),
-                req.amount(),
-                req.currency(),
-                req.paymentSource(),
-                req.paidByMemberId(),
-                req.expenseDate(),
-                req.note(),
-                req.createdByMemberId(),
-                req.splitMethod(),
-                req.participantMemberIds(),
-                custom,
-                originalAmount,
-                originalCurrency,
-                fxRate,
-                fxSource
-        );
-
-        var splits = expenseService.getSplits(e.getId()).stream().map(SplitResponse::from).toList();
-        return new ExpenseDetailResponse(ExpenseResponse.from(e), splits);
+    public ResponseEntity<?> create(
+            @PathVariable UUID tripId,
+            @RequestBody CreateOrUpdateExpenseRequest req,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
+        return idempotencyService.execute(tripId, idempotencyKey, request.getRequestURI(), req, HttpStatus.OK,
+                () -> ExpenseDetailResponse.from(applyCreate(expenseService, tripId, req)));
     }
 
     @PutMapping("/{expenseId}")
@@ -194,34 +296,21 @@ public class ExpenseController {
         ResponseEntity<String> guard = AuthGuard.requireOwner(request);
         if (guard != null) return guard;
 
-        var custom = req.customSplits() == null ? null :
-                req.customSplits().stream().map(x -> new ExpenseService.MemberAmount(x.memberId(), x.amount())).toList();
-        var original = req.original();
-        BigDecimal originalAmount = original != null ? original.amount() : null;
-        String originalCurrency = original != null ? original.currency() : null;
-        BigDecimal fxRate = original != null ? original.fxRate() : null;
-        String fxSource = original != null ? original.fxSource() : null;
+        return ResponseEntity.ok(ExpenseDetailResponse.from(applyUpdate(expenseService, tripId, expenseId, req)));
+    }
 
-        var e = expenseService.update(
-                tripId,
-                expenseId,
-                req.title(),
-                req.amount(),
-                req.currency(),
-                req.paidByMemberId(),
-                req.expenseDate(),
-                req.note(),
-                req.splitMethod(),
-                req.participantMemberIds(),
-                custom,
-                originalAmount,
-                originalCurrency,
-                fxRate,
-                fxSource
-        );
+    @PatchMapping("/{expenseId}")
+    public ResponseEntity<?> patch(
+            @PathVariable UUID tripId,
+            @PathVariable UUID expenseId,
+            @RequestBody PatchExpenseRequest req,
+            HttpServletRequest request
+    ) {
+        ResponseEntity<String> guard = AuthGuard.requireOwner(request);
+        if (guard != null) return guard;
 
-        var splits = expenseService.getSplits(e.getId()).stream().map(SplitResponse::from).toList();
-        return ResponseEntity.ok(new ExpenseDetailResponse(ExpenseResponse.from(e), splits));
+        var result = expenseService.patch(tripId, expenseId, toPatch(req));
+        return ResponseEntity.ok(ExpenseDetailResponse.from(result));
     }
 
     @DeleteMapping("/{expenseId}")
@@ -251,13 +340,127 @@ public class ExpenseController {
     }
 
     @GetMapping("/summary")
-    public List<ExpenseService.MemberSummary> summary(@PathVariable UUID tripId) {
+    public List<ExpenseService.MemberSummary> summary(@PathVariable UUID tripId, WebRequest webRequest) {
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
         return expenseService.summary(tripId);
     }
 
+    /** mode: GREEDY (default, fast) or OPTIMAL (fewest transfers). */
     @GetMapping("/settlements")
-    public List<ExpenseService.SettlementTransfer> settlements(@PathVariable UUID tripId) {
-        return expenseService.settlements(tripId);
+    public List<ExpenseService.SettlementTransfer> settlements(
+            @PathVariable UUID tripId,
+            @RequestParam(required = false) String mode,
+            WebRequest webRequest
+    ) {
+        if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
+        return expenseService.settlements(tripId, parseSettlementMode(mode));
+    }
+
+    /** Recomputes member balances from raw expenses and reports (optionally repairs) drift. */
+    @PostMapping("/balances/verify")
+    public ResponseEntity<?> verifyBalances(
+            @PathVariable UUID tripId,
+            @RequestParam(defaultValue = "false") boolean repair,
+            HttpServletRequest request
+    ) {
+        ResponseEntity<String> guard = AuthGuard.requireOwner(request);
+        if (guard != null) return guard;
+        return ResponseEntity.ok(expenseService.verifyBalances(tripId, repair));
+    }
+
+    /** With includeSplits, all splits of the list are loaded with one extra query. */
+    private List<ExpenseResponse> toResponses(List<ExpenseEntity> expenses, boolean includeSplits) {
+        if (!includeSplits) {
+            return expenses.stream().map(ExpenseResponse::from).toList();
+        }
+        var splits = expenseService.getSplitsByExpenseIds(expenses);
+        return expenses.stream()
+                .map(e -> ExpenseResponse.from(e, splits.getOrDefault(e.getId(), List.of())))
+                .toList();
+    }
+
+    private static SettlementEngine.Mode parseSettlementMode(String mode) {
+        if (mode == null || mode.isBlank()) return SettlementEngine.Mode.GREEDY;
+        try {
+            return SettlementEngine.Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "mode must be GREEDY or OPTIMAL");
+        }
+    }
+
+    // ---------- request mapping (shared with the offline sync batch) ----------
+
+    static ExpenseService.ExpenseWithSplits applyCreate(ExpenseService expenseService, UUID tripId, CreateOrUpdateExpenseRequest req) {
+        var original = req.original();
+        return expenseService.create(
+                tripId,
+                req.title(),
+                req.amount(),
+                req.currency(),
+                req.paymentSource(),
+                req.paidByMemberId(),
+                req.expenseDate(),
+                req.note(),
+                req.createdByMemberId(),
+                req.splitMethod(),
+                req.participantMemberIds(),
+                toServiceSplits(req.customSplits()),
+                original != null ? original.amount() : null,
+                original != null ? original.currency() : null,
+                original != null ? original.fxRate() : null,
+                original != null ? original.fxSource() : null
+        );
     }
 
+    static ExpenseService.ExpenseWithSplits applyUpdate(
+            ExpenseService expenseService,
+            UUID tripId,
+            UUID expenseId,
+            CreateOrUpdateExpenseRequest req
+    ) {
+        var original = req.original();
+        return expenseService.update(
+                tripId,
+                expenseId,
+                req.title(),
+                req.amount(),
+                req.currency(),
+                req.paidByMemberId(),
+                req.expenseDate(),
+                req.note(),
+                req.splitMethod(),
+                req.participantMemberIds(),
+                toServiceSplits(req.customSplits()),
+                original != null ? original.amount() : null,
+                original != null ? original.currency() : null,
+                original != null ? original.fxRate() : null,
+                original != null ? original.fxSource() : null
+        );
+    }
+
+    static ExpenseService.ExpensePatch toPatch(PatchExpenseRequest req) {
+        var original = req.original() == null ? null : new ExpenseService.OriginalPatch(
+                req.original().amount(),
+                req.original().currency(),
+                req.original().fxRate(),
+                req.original().fxSource()
+        );
+        return new ExpenseService.ExpensePatch(
+                req.title(),
+                req.amount(),
+                req.currency(),
+                req.paidByMemberId(),
+                req.expenseDate(),
+                req.note(),
+                req.splitMethod(),
+                req.participantMemberIds(),
+                toServiceSplits(req.customSplits()),
+                original
+        );
+    }
+
+    private static List<ExpenseService.MemberAmount> toServiceSplits(List<MemberAmount> customSplits) {
+        return customSplits == null ? null :
+                customSplits.stream().map(x -> new ExpenseService.MemberAmount(x.memberId(), x.amount())).toList();
+    }
 }
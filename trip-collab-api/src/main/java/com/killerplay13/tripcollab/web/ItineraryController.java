@@ -3,6 +3,7 @@ package com.killerplay13.tripcollab.web;
 import com.killerplay13.tripcollab.domain.ItineraryItem;
 import com.killerplay13.tripcollab.security.AuthGuard;
 import com.killerplay13.tripcollab.service.ItineraryService;
+import com.killerplay13.tripcollab.service.TripVersionService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -13,22 +14,27 @@ import java.util.UUID;
 import org.springframework.http.ResponseEntity;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/trips/{tripId}/itinerary")
 public class ItineraryController {
 
   private final ItineraryService service;
+  private final TripVersionService tripVersionService;
 
-  public ItineraryController(ItineraryService service) {
+  public ItineraryController(ItineraryService service, TripVersionService tripVersionService) {
     this.service = service;
+    this.tripVersionService = tripVersionService;
   }
 
   @GetMapping
   public List<ItineraryItemResponse> list(
       @PathVariable UUID tripId,
-      @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+      @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+      WebRequest webRequest
   ) {
+    if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
     return service.list(tripId, date).stream().map(ItineraryController::toResponse).toList();
   }
 
@@ -37,26 +43,7 @@ public class ItineraryController {
       @PathVariable UUID tripId,
       @RequestBody CreateItineraryItemRequest req
   ) {
-    LocalDate dayDate = req.dayDate();
-    String title = req.title();
-    LocalTime startTime = req.startTime();
-    LocalTime endTime = req.endTime();
-    String locationName = req.locationName();
-    String mapUrl = req.mapUrl();
-    String note = req.note();
-    Integer sortOrder = req.sortOrder();
-
-    ItineraryItem item = service.create(tripId, new ItineraryService.CreateItineraryItemCommand(
-        dayDate,
-        title,
-        startTime,
-        endTime,
-        locationName,
-        mapUrl,
-        note,
-        sortOrder
-    ));
-    return toResponse(item);
+    return toResponse(service.create(tripId, toCommand(req)));
   }
 
   @PatchMapping("/{itemId}")
@@ -65,11 +52,7 @@ public class ItineraryController {
       @PathVariable UUID itemId,
       @RequestBody PatchItineraryItemRequest req
   ) {
-    ItineraryItem item = service.patch(tripId, itemId, new ItineraryService.PatchItineraryItemCommand(
-        req.dayDate(), req.title(), req.startTime(), req.endTime(),
-        req.locationName(), req.mapUrl(), req.note(), req.sortOrder()
-    ));
-    return toResponse(item);
+    return toResponse(service.patch(tripId, itemId, toCommand(req)));
   }
 
   @DeleteMapping("/{itemId}")
@@ -109,8 +92,10 @@ public List<ItineraryDayGroupResponse> listAll(
     LocalDate from,
     @RequestParam(value = "to", required = false)
     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
-    LocalDate to
+    LocalDate to,
+    WebRequest webRequest
 ) {
+  if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
   return service.listAllGrouped(tripId, from, to).stream()
       .map(g -> new ItineraryDayGroupResponse(
           g.dayDate(),
@@ -145,8 +130,10 @@ public record ReorderIdOnly(@NotNull UUID id) {}
     public List<ItineraryItemResponse> search(
         @PathVariable UUID tripId,
         @RequestParam("q") String q,
-        @RequestParam(value = "limit", required = false) Integer limit
+        @RequestParam(value = "limit", required = false) Integer limit,
+        WebRequest webRequest
     ) {
+      if (webRequest.checkNotModified(tripVersionService.etag(tripId))) return null;
       return service.search(tripId, q, limit).stream()
           .map(ItineraryController::toResponse)
           .toList();
@@ -234,7 +221,21 @@ public record ReorderIdOnly(@NotNull UUID id) {}
   public record MoveRequest(@NotNull LocalDate toDate) {}
 
 
-  private static ItineraryItemResponse toResponse(ItineraryItem i) {
+  static ItineraryService.CreateItineraryItemCommand toCommand(CreateItineraryItemRequest req) {
+    return new ItineraryService.CreateItineraryItemCommand(
+        req.dayDate(), req.title(), req.startTime(), req.endTime(),
+        req.locationName(), req.mapUrl(), req.note(), req.sortOrder()
+    );
+  }
+
+  static ItineraryService.PatchItineraryItemCommand toCommand(PatchItineraryItemRequest req) {
+    return new ItineraryService.PatchItineraryItemCommand(
+        req.dayDate(), req.title(), req.startTime(), req.endTime(),
+        req.locationName(), req.mapUrl(), req.note(), req.sortOrder()
+    );
+  }
+
+  static ItineraryItemResponse toResponse(ItineraryItem i) {
     return new ItineraryItemResponse(
         i.getId(),
         i.getTripId(),
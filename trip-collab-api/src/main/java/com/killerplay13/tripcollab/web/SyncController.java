@@ -0,0 +1,256 @@
+package com.killerplay13.tripcollab.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
+import com.killerplay13.tripcollab.error.ApiException;
+import com.killerplay13.tripcollab.security.AuthGuard;
+import com.killerplay13.tripcollab.security.TripAuthFilter;
+import com.killerplay13.tripcollab.service.ExpenseService;
+import com.killerplay13.tripcollab.service.IdempotencyService;
+import com.killerplay13.tripcollab.service.ItineraryService;
+import com.killerplay13.tripcollab.service.MutationBatchService;
+import com.killerplay13.tripcollab.service.MutationBatchService.Applied;
+import com.killerplay13.tripcollab.service.SyncService;
+import com.killerplay13.tripcollab.service.WalletCommandService;
+import com.killerplay13.tripcollab.wallet.dto.WalletDepositRequest;
+import com.killerplay13.tripcollab.wallet.dto.WalletExchangeRequest;
+import com.killerplay13.tripcollab.wallet.dto.WalletTransactionResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/trips/{tripId}")
+@RequiredArgsConstructor
+public class SyncController {
+
+    /** Operation types that need the owner role, same as their single-request endpoints. */
+    private static final Set<String> OWNER_ONLY = Set.of(
+            "expense.update", "expense.patch", "expense.delete", "expense.move",
+            "itinerary.delete", "itinerary.move", "itinerary.reorder",
+            "wallet.deposit", "wallet.exchange"
+    );
+
+    private final SyncService syncService;
+    private final MutationBatchService mutationBatchService;
+    private final ExpenseService expenseService;
+    private final ItineraryService itineraryService;
+    private final WalletCommandService walletCommandService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+
+    public record SplitChange(UUID id, UUID expenseId, UUID memberId, BigDecimal shareAmount, Instant updatedAt) {
+        static SplitChange from(ExpenseSplitEntity s) {
+            return new SplitChange(s.getId(), s.getExpenseId(), s.getMemberId(), s.getShareAmount(), s.getUpdatedAt());
+        }
+    }
+
+    /** Pass {@code watermark} back as {@code since} on the next call. */
+    public record ChangesResponse(
+            Instant watermark,
+            boolean full,
+            List<ExpenseController.ExpenseResponse> expenses,
+            List<SplitChange> splits,
+            List<ItineraryController.ItineraryItemResponse> itineraryItems,
+            List<TripMemberController.MemberResponse> members,
+            List<WalletTransactionResponse> walletTransactions,
+            List<SyncService.Tombstone> deleted
+    ) {}
+
+    /**
+     * One queued client command. {@code type} is e.g. {@code expense.create} or {@code itinerary.move};
+     * {@code id} is the target row and may be the {@code clientId} of a create in this or an earlier
+     * batch; {@code body} is what the single-request endpoint takes. An operation whose
+     * {@code clientId} was already applied is skipped, so a retried batch applies nothing twice.
+     */
+    public record SyncOperation(UUID clientId, String type, UUID id, JsonNode body) {}
+
+    public record SyncRequest(List<SyncOperation> operations) {}
+
+    public record SyncResponse(List<MutationBatchService.OperationResult> results) {}
+
+    /** Body of {@code itinerary.reorder}: the day and its items in their new order. */
+    public record ReorderOperation(LocalDate date, List<ItineraryController.ReorderIdOnly> items) {}
+
+    @GetMapping("/changes")
+    public ChangesResponse changes(
+            @PathVariable UUID tripId,
+            @RequestParam(required = false) Instant since
+    ) {
+        var c = syncService.changesSince(tripId, since);
+        return new ChangesResponse(
+                c.watermark(),
+                c.full(),
+                c.expenses().stream().map(ExpenseController.ExpenseResponse::from).toList(),
+                c.splits().stream().map(SplitChange::from).toList(),
+                c.itineraryItems().stream().map(ItineraryController::toResponse).toList(),
+                c.members().stream().map(TripMemberController.MemberResponse::from).toList(),
+                c.walletTransactions(),
+                c.deleted()
+        );
+    }
+
+    /**
+     * Replays an offline queue in one request and one transaction. Bodies are parsed and roles
+     * checked before anything is written; the first failing operation rolls back the batch and
+     * the error message names its index.
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<?> sync(
+            @PathVariable UUID tripId,
+            @RequestBody SyncRequest req,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
+        ResponseEntity<String> guard = AuthGuard.requireMember(request);
+        if (guard != null) return guard;
+
+        List<SyncOperation> ops = req.operations() == null ? List.of() : req.operations();
+        if (ops.stream().anyMatch(op -> op != null && OWNER_ONLY.contains(op.type()))) {
+            guard = AuthGuard.requireOwner(request);
+            if (guard != null) return guard;
+        }
+        UUID actorMemberId = (UUID) request.getAttribute(TripAuthFilter.ATTR_MEMBER_ID);
+
+        List<MutationBatchService.Operation> operations = new ArrayList<>(ops.size());
+        for (int i = 0; i < ops.size(); i++) {
+            var op = ops.get(i);
+            if (op == null || op.type() == null) {
+                throw new ApiException(HttpStatus.BAD_REQUEST, "operations[" + i + "] type is required");
+            }
+            operations.add(new MutationBatchService.Operation(
+                    op.clientId(), op.type(), references(op), toMutation(tripId, actorMemberId, i, op)));
+        }
+        return idempotencyService.execute(tripId, idempotencyKey, request.getRequestURI(), req, HttpStatus.OK,
+                () -> new SyncResponse(mutationBatchService.apply(tripId, operations)));
+    }
+
+    // ids the operation resolves through the batch's IdMap; malformed ones fail later, in body()
+    private static Set<UUID> references(SyncOperation op) {
+        Set<UUID> refs = new HashSet<>();
+        if (op.id() != null) refs.add(op.id());
+        if ("itinerary.reorder".equals(op.type()) && op.body() != null) {
+            for (JsonNode item : op.body().path("items")) {
+                try {
+                    refs.add(UUID.fromString(item.path("id").asText()));
+                } catch (IllegalArgumentException ignored) {
+                    // reported by the body parser
+                }
+            }
+        }
+        return refs;
+    }
+
+    private MutationBatchService.Mutation toMutation(UUID tripId, UUID actorMemberId, int index, SyncOperation op) {
+        return switch (op.type()) {
+            case "expense.create" -> {
+                var body = body(index, op, ExpenseController.CreateOrUpdateExpenseRequest.class);
+                yield ids -> {
+                    var r = ExpenseController.applyCreate(expenseService, tripId, body);
+                    return new Applied(r.expense().getId(), ExpenseController.ExpenseDetailResponse.from(r));
+                };
+            }
+            case "expense.update" -> {
+                var body = body(index, op, ExpenseController.CreateOrUpdateExpenseRequest.class);
+                yield ids -> {
+                    var r = ExpenseController.applyUpdate(expenseService, tripId, target(index, op, ids), body);
+                    return new Applied(null, ExpenseController.ExpenseDetailResponse.from(r));
+                };
+            }
+            case "expense.patch" -> {
+                var body = body(index, op, ExpenseController.PatchExpenseRequest.class);
+                yield ids -> {
+                    var r = expenseService.patch(tripId, target(index, op, ids), ExpenseController.toPatch(body));
+                    return new Applied(null, ExpenseController.ExpenseDetailResponse.from(r));
+                };
+            }
+            case "expense.delete" -> ids -> {
+                expenseService.delete(tripId, target(index, op, ids));
+                return new Applied(null, null);
+            };
+            case "expense.move" -> {
+                var body = body(index, op, ExpenseController.MoveExpenseRequest.class);
+                yield ids -> new Applied(null, ExpenseController.ExpenseResponse.from(
+                        expenseService.move(tripId, target(index, op, ids), body.newDate())));
+            }
+            case "itinerary.create" -> {
+                var body = body(index, op, ItineraryController.CreateItineraryItemRequest.class);
+                yield ids -> {
+                    var item = itineraryService.create(tripId, ItineraryController.toCommand(body));
+                    return new Applied(item.getId(), ItineraryController.toResponse(item));
+                };
+            }
+            case "itinerary.patch" -> {
+                var body = body(index, op, ItineraryController.PatchItineraryItemRequest.class);
+                yield ids -> new Applied(null, ItineraryController.toResponse(
+                        itineraryService.patch(tripId, target(index, op, ids), ItineraryController.toCommand(body))));
+            }
+            case "itinerary.delete" -> ids -> {
+                itineraryService.delete(tripId, target(index, op, ids));
+                return new Applied(null, null);
+            };
+            case "itinerary.move" -> {
+                var body = body(index, op, ItineraryController.MoveRequest.class);
+                yield ids -> new Applied(null, ItineraryController.toResponse(
+                        itineraryService.moveToDate(tripId, target(index, op, ids), body.toDate())));
+            }
+            case "itinerary.reorder" -> {
+                var body = body(index, op, ReorderOperation.class);
+                yield ids -> {
+                    List<ItineraryService.ReorderItem> items = body.items() == null ? null : body.items().stream()
+                            .map(i -> new ItineraryService.ReorderItem(ids.resolve(i.id()), 0))
+                            .toList();
+                    itineraryService.reorder(tripId, body.date(), items);
+                    return new Applied(null, null);
+                };
+            }
+            case "wallet.deposit" -> {
+                var body = body(index, op, WalletDepositRequest.class);
+                yield ids -> new Applied(null, walletCommandService.deposit(tripId, actorMemberId, body));
+            }
+            case "wallet.exchange" -> {
+                var body = body(index, op, WalletExchangeRequest.class);
+                yield ids -> new Applied(null, walletCommandService.exchange(tripId, actorMemberId, body));
+            }
+            default -> throw new ApiException(HttpStatus.BAD_REQUEST, "operations[" + index + "] unknown type " + op.type());
+        };
+    }
+
+    private <T> T body(int index, SyncOperation op, Class<T> type) {
+        if (op.body() == null || op.body().isNull()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "operations[" + index + "] body is required");
+        }
+        try {
+            return objectMapper.treeToValue(op.body(), type);
+        } catch (JsonProcessingException e) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "operations[" + index + "] invalid body: " + e.getOriginalMessage());
+        }
+    }
+
+    private static UUID target(int index, SyncOperation op, MutationBatchService.IdMap ids) {
+        if (op.id() == null) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "operations[" + index + "] id is required");
+        }
+        return ids.resolve(op.id());
+    }
+}
@@ -1,10 +1,13 @@
 package com.killerplay13.tripcollab.web;
 
 import com.killerplay13.tripcollab.domain.Trip;
+import com.killerplay13.tripcollab.security.AuthGuard;
 import com.killerplay13.tripcollab.service.TripService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import java.time.LocalDate;
 import java.util.UUID;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -52,6 +55,19 @@ public TripResponse get(@PathVariable UUID tripId) {
   );
 }
 
+  /** Owner only: rotates the invite token, or disables joining with {"enabled": false}. */
+  @PostMapping("/{tripId}/invite")
+  public ResponseEntity<?> updateInvite(
+      @PathVariable UUID tripId,
+      @RequestBody(required = false) UpdateInviteRequest req,
+      HttpServletRequest request
+  ) {
+    ResponseEntity<String> guard = AuthGuard.requireOwner(request);
+    if (guard != null) return guard;
+    boolean enabled = req == null || req.enabled() == null || req.enabled();
+    String token = tripService.updateInvite(tripId, enabled);
+    return ResponseEntity.ok(new InviteResponse(enabled, token));
+  }
 
   // ===== DTOs =====
   public record CreateTripRequest(
@@ -72,6 +88,10 @@ public TripResponse get(@PathVariable UUID tripId) {
       String inviteToken
   ) {}
 
+  public record UpdateInviteRequest(Boolean enabled) {}
+
+  public record InviteResponse(boolean inviteEnabled, String inviteToken) {}
+
   public record TripResponse(
       UUID id,
       String title,
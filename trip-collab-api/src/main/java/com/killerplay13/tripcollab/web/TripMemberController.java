@@ -3,6 +3,8 @@ package com.killerplay13.tripcollab.web;
 import com.killerplay13.tripcollab.domain.TripMemberEntity;
 import com.killerplay13.tripcollab.repo.TripMemberRepository;
 import com.killerplay13.tripcollab.security.AuthGuard;
+import com.killerplay13.tripcollab.security.TripAuthFilter;
+import com.killerplay13.tripcollab.service.MemberPresenceTracker;
 import com.killerplay13.tripcollab.service.TripMemberService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +22,7 @@ public class TripMemberController {
 
     private final TripMemberService tripMemberService;
     private final TripMemberRepository tripMemberRepository;
+    private final MemberPresenceTracker presenceTracker;
 
     // ---------- DTOs ----------
     public record MemberResponse(
@@ -27,10 +30,18 @@ public class TripMemberController {
             String nickname,
             String role,
             Boolean isActive,
-            Instant joinedAt
+            Instant joinedAt,
+            Instant lastSeenAt
     ) {
         static MemberResponse from(TripMemberEntity m) {
-            return new MemberResponse(m.getId(), m.getNickname(), m.getRole(), m.getIsActive(), m.getJoinedAt());
+            return new MemberResponse(m.getId(), m.getNickname(), m.getRole(), m.getIsActive(), m.getJoinedAt(), m.getLastSeenAt());
+        }
+
+        static MemberResponse from(TripMemberEntity m, MemberPresenceTracker presence) {
+            return new MemberResponse(
+                    m.getId(), m.getNickname(), m.getRole(), m.getIsActive(), m.getJoinedAt(),
+                    presence.lastSeen(m.getId(), m.getLastSeenAt())
+            );
         }
     }
 
@@ -45,7 +56,7 @@ public class TripMemberController {
     public List<MemberResponse> list(@PathVariable UUID tripId) {
         return tripMemberRepository.findByTripIdAndIsActiveTrueOrderByJoinedAtAsc(tripId)
                 .stream()
-                .map(MemberResponse::from)
+                .map(m -> MemberResponse.from(m, presenceTracker))
                 .toList();
     }
 
@@ -57,7 +68,7 @@ public class TripMemberController {
 
     @GetMapping("/{memberId}")
     public MemberResponse get(@PathVariable UUID tripId, @PathVariable UUID memberId) {
-        return MemberResponse.from(tripMemberService.get(tripId, memberId));
+        return MemberResponse.from(tripMemberService.get(tripId, memberId), presenceTracker);
     }
 
     @PatchMapping("/{memberId}")
@@ -72,4 +83,19 @@ public class TripMemberController {
         var updated = tripMemberService.update(tripId, memberId, req.nickname(), req.isActive());
         return ResponseEntity.ok(MemberResponse.from(updated));
     }
+
+    /** Owner, or the member itself, replaces a leaked token; every earlier token stops working. */
+    @PostMapping("/{memberId}/token")
+    public ResponseEntity<?> rotateToken(
+            @PathVariable UUID tripId,
+            @PathVariable UUID memberId,
+            HttpServletRequest request
+    ) {
+        ResponseEntity<String> guard = memberId.equals(request.getAttribute(TripAuthFilter.ATTR_MEMBER_ID))
+                ? AuthGuard.requireMember(request)
+                : AuthGuard.requireOwner(request);
+        if (guard != null) return guard;
+        var rotated = tripMemberService.rotateToken(tripId, memberId);
+        return ResponseEntity.ok(new CreateMemberResponse(MemberResponse.from(rotated.member()), rotated.memberToken()));
+    }
 }
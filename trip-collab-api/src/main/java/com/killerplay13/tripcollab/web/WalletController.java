@@ -1,27 +1,35 @@
 package com.killerplay13.tripcollab.web;
 
+import com.killerplay13.tripcollab.service.IdempotencyService;
 import com.killerplay13.tripcollab.service.WalletCommandService;
 import com.killerplay13.tripcollab.service.WalletQueryService;
+import com.killerplay13.tripcollab.service.WalletTotalsService;
 import com.killerplay13.tripcollab.security.AuthGuard;
-import com.killerplay13.tripcollab.security.MemberTokenFilter;
+import com.killerplay13.tripcollab.security.TripAuthFilter;
+import com.killerplay13.tripcollab.wallet.dto.WalletBatchRequest;
 import com.killerplay13.tripcollab.wallet.dto.WalletDepositRequest;
 import com.killerplay13.tripcollab.wallet.dto.WalletExchangeRequest;
 import com.killerplay13.tripcollab.wallet.dto.WalletExchangeResponse;
 import com.killerplay13.tripcollab.wallet.dto.WalletSummaryResponse;
 import com.killerplay13.tripcollab.wallet.dto.WalletTransactionListResponse;
+import com.killerplay13.tripcollab.wallet.dto.WalletTransactionPageResponse;
 import com.killerplay13.tripcollab.wallet.dto.WalletTransactionResponse;
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @RestController
@@ -31,6 +39,8 @@ public class WalletController {
 
     private final WalletQueryService walletQueryService;
     private final WalletCommandService walletCommandService;
+    private final IdempotencyService idempotencyService;
+    private final WalletTotalsService walletTotalsService;
 
     @PostConstruct
     void init() {
@@ -39,7 +49,8 @@ public class WalletController {
 
 
     @GetMapping
-    public WalletSummaryResponse getSummary(@PathVariable UUID tripId) {
+    public WalletSummaryResponse getSummary(@PathVariable UUID tripId, WebRequest webRequest) {
+        if (webRequest.checkNotModified(walletQueryService.etag(tripId))) return null;
         return walletQueryService.getSummary(tripId);
     }
 
@@ -50,17 +61,44 @@ public class WalletController {
             @RequestParam(required = false) String txnType,
             @RequestParam(required = false) UUID exchangeGroupId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "50") int size
+            @RequestParam(defaultValue = "50") int size,
+            WebRequest webRequest
     ) {
+        if (webRequest.checkNotModified(walletQueryService.etag(tripId))) return null;
         return walletQueryService.listTransactions(tripId, currency, txnType, exchangeGroupId, page, size);
     }
 
+    /**
+     * Keyset pagination over the ledger, newest first; pass nextCursor back as cursor. Unlike
+     * /transactions it runs no count query, and deep pages cost the same as the first.
+     */
+    @GetMapping("/transactions/page")
+    public WalletTransactionPageResponse pageTransactions(
+            @PathVariable UUID tripId,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) String txnType,
+            @RequestParam(required = false) UUID exchangeGroupId,
+            @RequestParam(required = false) UUID memberId,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest webRequest
+    ) {
+        if (webRequest.checkNotModified(walletQueryService.etag(tripId))) return null;
+        return walletQueryService.pageTransactions(
+                tripId, currency, txnType, exchangeGroupId, memberId, from, to, cursor, limit);
+    }
+
     @GetMapping("/transactions/{transactionId}")
     public ResponseEntity<WalletTransactionResponse> getTransaction(
             @PathVariable UUID tripId,
-            @PathVariable Long transactionId
+            @PathVariable Long transactionId,
+            WebRequest webRequest
     ) {
+        // look the row up first: an unknown id must be a 404, never a 304 on the wallet version
         var result = walletQueryService.getTransaction(tripId, transactionId);
+        if (webRequest.checkNotModified(walletQueryService.etag(tripId))) return null;
         return ResponseEntity.ok(result);
     }
 
@@ -68,25 +106,54 @@ public class WalletController {
     public ResponseEntity<?> deposit(
             @PathVariable UUID tripId,
             @RequestBody WalletDepositRequest req,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             HttpServletRequest request
     ) {
         ResponseEntity<String> guard = AuthGuard.requireOwner(request);
         if (guard != null) return guard;
-        UUID actorMemberId = (UUID) request.getAttribute(MemberTokenFilter.ATTR_MEMBER_ID);
-        var result = walletCommandService.deposit(tripId, actorMemberId, req);
-        return ResponseEntity.status(201).body(result);
+        UUID actorMemberId = (UUID) request.getAttribute(TripAuthFilter.ATTR_MEMBER_ID);
+        return idempotencyService.execute(tripId, idempotencyKey, request.getRequestURI(), req, HttpStatus.CREATED,
+                () -> walletCommandService.deposit(tripId, actorMemberId, req));
     }
 
     @PostMapping("/exchanges")
     public ResponseEntity<?> exchange(
             @PathVariable UUID tripId,
             @RequestBody WalletExchangeRequest req,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
+        ResponseEntity<String> guard = AuthGuard.requireOwner(request);
+        if (guard != null) return guard;
+        UUID actorMemberId = (UUID) request.getAttribute(TripAuthFilter.ATTR_MEMBER_ID);
+        return idempotencyService.execute(tripId, idempotencyKey, request.getRequestURI(), req, HttpStatus.CREATED,
+                () -> walletCommandService.exchange(tripId, actorMemberId, req));
+    }
+
+    /** Several deposits and exchanges in one transaction and one response; owner only. */
+    @PostMapping("/batch")
+    public ResponseEntity<?> batch(
+            @PathVariable UUID tripId,
+            @RequestBody WalletBatchRequest req,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
+        ResponseEntity<String> guard = AuthGuard.requireOwner(request);
+        if (guard != null) return guard;
+        UUID actorMemberId = (UUID) request.getAttribute(TripAuthFilter.ATTR_MEMBER_ID);
+        return idempotencyService.execute(tripId, idempotencyKey, request.getRequestURI(), req, HttpStatus.CREATED,
+                () -> walletCommandService.batch(tripId, actorMemberId, req));
+    }
+
+    /** Recomputes the summary totals from the ledger; {@code repair} overwrites them if they drifted. */
+    @PostMapping("/totals/verify")
+    public ResponseEntity<?> verifyTotals(
+            @PathVariable UUID tripId,
+            @RequestParam(defaultValue = "false") boolean repair,
             HttpServletRequest request
     ) {
         ResponseEntity<String> guard = AuthGuard.requireOwner(request);
         if (guard != null) return guard;
-        UUID actorMemberId = (UUID) request.getAttribute(MemberTokenFilter.ATTR_MEMBER_ID);
-        var result = walletCommandService.exchange(tripId, actorMemberId, req);
-        return ResponseEntity.status(201).body(result);
+        return ResponseEntity.ok(walletTotalsService.verify(tripId, repair));
     }
 }
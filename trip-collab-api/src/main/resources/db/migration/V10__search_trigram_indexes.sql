@@ -0,0 +1,18 @@
+-- V10__search_trigram_indexes.sql
+-- Trigram GIN indexes so the substring searches ('%q%' with ILIKE) can use an index instead of
+-- scanning every row of the trip. Queries must compare the bare columns (no lower()/coalesce())
+-- for the planner to match these indexes.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_expenses_title_trgm
+  ON expenses USING gin (title gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_itinerary_items_title_trgm
+  ON itinerary_items USING gin (title gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_itinerary_items_location_name_trgm
+  ON itinerary_items USING gin (location_name gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_itinerary_items_note_trgm
+  ON itinerary_items USING gin (note gin_trgm_ops);
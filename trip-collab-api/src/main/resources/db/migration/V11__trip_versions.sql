@@ -0,0 +1,16 @@
+-- V11__trip_versions.sql
+-- One monotonically increasing counter per trip, bumped in the same transaction as every write
+-- to the trip's expenses, itinerary, wallet or members. Read endpoints derive their ETag from it.
+
+CREATE TABLE IF NOT EXISTS trip_versions (
+  trip_id     UUID PRIMARY KEY,
+  version     BIGINT NOT NULL DEFAULT 0,
+  updated_at  TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+  CONSTRAINT fk_trip_versions_trip
+    FOREIGN KEY (trip_id) REFERENCES trips(id) ON DELETE CASCADE
+);
+
+INSERT INTO trip_versions (trip_id, version)
+SELECT id, 1 FROM trips
+ON CONFLICT (trip_id) DO NOTHING;
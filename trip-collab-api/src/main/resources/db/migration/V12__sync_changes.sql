@@ -0,0 +1,104 @@
+-- V12__sync_changes.sql
+-- Delta sync (GET /api/trips/{tripId}/changes?since=): every synced table needs an indexed
+-- updated_at per trip, and deletions are recorded in sync_tombstones by AFTER DELETE triggers.
+
+-- ---------- expense_splits.updated_at ----------
+ALTER TABLE expense_splits
+  ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+UPDATE expense_splits SET updated_at = created_at WHERE updated_at <> created_at;
+
+DROP TRIGGER IF EXISTS trg_expense_splits_set_updated_at ON expense_splits;
+CREATE TRIGGER trg_expense_splits_set_updated_at
+BEFORE UPDATE ON expense_splits
+FOR EACH ROW
+EXECUTE FUNCTION set_updated_at();
+
+-- ---------- change indexes ----------
+CREATE INDEX IF NOT EXISTS idx_expenses_trip_updated_at ON expenses(trip_id, updated_at);
+CREATE INDEX IF NOT EXISTS idx_expense_splits_updated_at ON expense_splits(updated_at);
+CREATE INDEX IF NOT EXISTS idx_itinerary_items_trip_updated_at ON itinerary_items(trip_id, updated_at);
+CREATE INDEX IF NOT EXISTS idx_trip_members_trip_updated_at ON trip_members(trip_id, updated_at);
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_wallet_id_updated_at ON wallet_transactions(wallet_id, updated_at);
+
+-- ---------- deletion log ----------
+-- no FK to trips: rows must survive (and be purged later) even while the trip itself is deleted
+CREATE TABLE IF NOT EXISTS sync_tombstones (
+  id           BIGSERIAL PRIMARY KEY,
+  trip_id      UUID NOT NULL,
+  entity_type  VARCHAR(30) NOT NULL,
+  entity_id    VARCHAR(64) NOT NULL,
+  deleted_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_sync_tombstones_trip_deleted_at ON sync_tombstones(trip_id, deleted_at);
+CREATE INDEX IF NOT EXISTS idx_sync_tombstones_deleted_at ON sync_tombstones(deleted_at);
+
+-- tables with their own trip_id column; TG_ARGV[0] is the entity type reported to clients
+CREATE OR REPLACE FUNCTION log_trip_row_deletion()
+RETURNS TRIGGER AS $$
+BEGIN
+  INSERT INTO sync_tombstones (trip_id, entity_type, entity_id)
+  VALUES (OLD.trip_id, TG_ARGV[0], OLD.id::text);
+  RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION log_expense_split_deletion()
+RETURNS TRIGGER AS $$
+DECLARE
+  v_trip_id UUID;
+BEGIN
+  SELECT trip_id INTO v_trip_id FROM expenses WHERE id = OLD.expense_id;
+  -- when the parent expense is deleted in the same statement (FK cascade), its own tombstone covers the splits
+  IF v_trip_id IS NOT NULL THEN
+    INSERT INTO sync_tombstones (trip_id, entity_type, entity_id)
+    VALUES (v_trip_id, 'expense_split', OLD.id::text);
+  END IF;
+  RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION log_wallet_transaction_deletion()
+RETURNS TRIGGER AS $$
+DECLARE
+  v_trip_id UUID;
+BEGIN
+  SELECT trip_id INTO v_trip_id FROM shared_wallets WHERE id = OLD.wallet_id;
+  IF v_trip_id IS NOT NULL THEN
+    INSERT INTO sync_tombstones (trip_id, entity_type, entity_id)
+    VALUES (v_trip_id, 'wallet_transaction', OLD.id::text);
+  END IF;
+  RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_expenses_log_deletion ON expenses;
+CREATE TRIGGER trg_expenses_log_deletion
+AFTER DELETE ON expenses
+FOR EACH ROW
+EXECUTE FUNCTION log_trip_row_deletion('expense');
+
+DROP TRIGGER IF EXISTS trg_expense_splits_log_deletion ON expense_splits;
+CREATE TRIGGER trg_expense_splits_log_deletion
+AFTER DELETE ON expense_splits
+FOR EACH ROW
+EXECUTE FUNCTION log_expense_split_deletion();
+
+DROP TRIGGER IF EXISTS trg_itinerary_items_log_deletion ON itinerary_items;
+CREATE TRIGGER trg_itinerary_items_log_deletion
+AFTER DELETE ON itinerary_items
+FOR EACH ROW
+EXECUTE FUNCTION log_trip_row_deletion('itinerary_item');
+
+DROP TRIGGER IF EXISTS trg_trip_members_log_deletion ON trip_members;
+CREATE TRIGGER trg_trip_members_log_deletion
+AFTER DELETE ON trip_members
+FOR EACH ROW
+EXECUTE FUNCTION log_trip_row_deletion('member');
+
+DROP TRIGGER IF EXISTS trg_wallet_transactions_log_deletion ON wallet_transactions;
+CREATE TRIGGER trg_wallet_transactions_log_deletion
+AFTER DELETE ON wallet_transactions
+FOR EACH ROW
+EXECUTE FUNCTION log_wallet_transaction_deletion();
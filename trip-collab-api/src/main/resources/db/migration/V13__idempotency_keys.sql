@@ -0,0 +1,21 @@
+-- V13__idempotency_keys.sql
+-- Responses of writes sent with an Idempotency-Key header. The row is inserted in the same
+-- transaction as the write, so a key is stored exactly when its command committed; a retry with
+-- the same key gets the stored bytes back instead of running the command again.
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  id             BIGSERIAL PRIMARY KEY,
+  trip_id        UUID NOT NULL,
+  idem_key       VARCHAR(128) NOT NULL,
+  request_hash   VARCHAR(64) NOT NULL,
+  status_code    INTEGER NOT NULL,
+  response_body  BYTEA NOT NULL,
+  created_at     TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+  CONSTRAINT fk_idempotency_keys_trip
+    FOREIGN KEY (trip_id) REFERENCES trips(id) ON DELETE CASCADE,
+  CONSTRAINT ux_idempotency_keys_trip_key UNIQUE (trip_id, idem_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created_at
+  ON idempotency_keys (created_at);
@@ -0,0 +1,35 @@
+-- V14__wallet_totals.sql
+-- Running base-currency totals per wallet currency, kept on the wallet_balances row and maintained
+-- by every wallet command in the same statement as its balance change, so the wallet summary no
+-- longer aggregates wallet_transactions and no write has to lock a per-wallet row for them.
+-- Same buckets as the old aggregate: DEPOSIT/IN, WITHDRAW/OUT, EXPENSE/OUT, ADJUSTMENT IN minus OUT.
+
+ALTER TABLE wallet_balances
+  ADD COLUMN IF NOT EXISTS deposits_in_base     NUMERIC(20,6) NOT NULL DEFAULT 0,
+  ADD COLUMN IF NOT EXISTS withdrawals_out_base NUMERIC(20,6) NOT NULL DEFAULT 0,
+  ADD COLUMN IF NOT EXISTS spent_out_base       NUMERIC(20,6) NOT NULL DEFAULT 0,
+  ADD COLUMN IF NOT EXISTS adjustments_net_base NUMERIC(20,6) NOT NULL DEFAULT 0;
+
+INSERT INTO wallet_balances (
+  wallet_id, currency, balance,
+  deposits_in_base, withdrawals_out_base, spent_out_base, adjustments_net_base
+)
+SELECT
+  t.wallet_id,
+  t.original_currency,
+  0,
+  COALESCE(SUM(CASE WHEN t.txn_type = 'DEPOSIT' AND t.direction = 'IN' THEN t.computed_base_amount ELSE 0 END), 0),
+  COALESCE(SUM(CASE WHEN t.txn_type = 'WITHDRAW' AND t.direction = 'OUT' THEN t.computed_base_amount ELSE 0 END), 0),
+  COALESCE(SUM(CASE WHEN t.txn_type = 'EXPENSE' AND t.direction = 'OUT' THEN t.computed_base_amount ELSE 0 END), 0),
+  COALESCE(SUM(CASE
+    WHEN t.txn_type = 'ADJUSTMENT' AND t.direction = 'IN' THEN t.computed_base_amount
+    WHEN t.txn_type = 'ADJUSTMENT' AND t.direction = 'OUT' THEN -t.computed_base_amount
+    ELSE 0 END), 0)
+FROM wallet_transactions t
+GROUP BY t.wallet_id, t.original_currency
+ON CONFLICT (wallet_id, currency)
+DO UPDATE SET
+  deposits_in_base = EXCLUDED.deposits_in_base,
+  withdrawals_out_base = EXCLUDED.withdrawals_out_base,
+  spent_out_base = EXCLUDED.spent_out_base,
+  adjustments_net_base = EXCLUDED.adjustments_net_base;
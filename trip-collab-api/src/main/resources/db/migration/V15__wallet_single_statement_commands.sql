@@ -0,0 +1,43 @@
+-- V15__wallet_single_statement_commands.sql
+-- Wallet commands now run as one statement each and no longer touch shared_wallets.updated_at or
+-- trip_versions, either of which serialized every write to a trip's wallet.
+-- 1) Each balance row carries a change counter; wallet reads use the wallet's sum of them (with the
+--    trip version) as their ETag, so a command only writes the balance row of its own currency.
+-- 2) At most one EXPENSE ledger row per expense is enforced by the database instead of a
+--    SELECT before every insert.
+
+ALTER TABLE wallet_balances
+  ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+
+-- The old exists-then-insert check could race and record an expense twice. Keep the first row of
+-- each expense and hand the later ones back to their balance row, so the index below can be built.
+WITH dropped AS (
+  DELETE FROM wallet_transactions t
+  USING (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY expense_id ORDER BY id) AS rn
+    FROM wallet_transactions
+    WHERE txn_type = 'EXPENSE' AND expense_id IS NOT NULL
+  ) d
+  WHERE t.id = d.id AND d.rn > 1
+  RETURNING t.wallet_id, t.original_currency, t.direction, t.original_amount, t.computed_base_amount
+), refund AS (
+  SELECT
+    wallet_id,
+    original_currency AS currency,
+    SUM(CASE WHEN direction = 'OUT' THEN original_amount ELSE -original_amount END) AS amount,
+    SUM(CASE WHEN direction = 'OUT' THEN COALESCE(computed_base_amount, 0) ELSE 0 END) AS base_amount
+  FROM dropped
+  GROUP BY wallet_id, original_currency
+)
+UPDATE wallet_balances b
+SET balance = b.balance + r.amount,
+    spent_out_base = b.spent_out_base - r.base_amount,
+    version = b.version + 1,
+    updated_at = NOW()
+FROM refund r
+WHERE b.wallet_id = r.wallet_id
+  AND b.currency = r.currency;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_wallet_transactions_expense
+  ON wallet_transactions (expense_id)
+  WHERE txn_type = 'EXPENSE';
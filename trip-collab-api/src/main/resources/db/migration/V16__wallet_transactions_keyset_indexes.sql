@@ -0,0 +1,25 @@
+-- V16__wallet_transactions_keyset_indexes.sql
+-- Wallet history pages by keyset in (created_at DESC, id DESC) order per wallet, with optional
+-- filters. Each filter gets an index that starts at wallet_id and then yields rows already in
+-- page order, so a page reads exactly limit + 1 index entries.
+-- The wallet-wide index replaces idx_wallet_transactions_wallet_id_created_at (it adds the id
+-- tiebreak); the global txn_type index is superseded by the per-wallet one. The global member_id
+-- and exchange_group_id indexes stay for lookups that do not know the wallet.
+
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_wallet_created_id
+  ON wallet_transactions (wallet_id, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_wallet_currency_created_id
+  ON wallet_transactions (wallet_id, original_currency, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_wallet_type_created_id
+  ON wallet_transactions (wallet_id, txn_type, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_wallet_member_created_id
+  ON wallet_transactions (wallet_id, member_id, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_wallet_group_created_id
+  ON wallet_transactions (wallet_id, exchange_group_id, created_at DESC, id DESC);
+
+DROP INDEX IF EXISTS idx_wallet_transactions_wallet_id_created_at;
+DROP INDEX IF EXISTS idx_wallet_transactions_type;
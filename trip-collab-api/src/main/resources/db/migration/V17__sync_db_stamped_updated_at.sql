@@ -0,0 +1,41 @@
+-- V17__sync_db_stamped_updated_at.sql
+-- Delta sync compares updated_at with a watermark read from the database clock. Updates were
+-- already stamped by triggers, but inserts kept the value the application sent (its own clock),
+-- so a skewed app server could write rows that sort before a watermark already handed out.
+-- Stamp inserts in the database too; whatever the application sends is overwritten.
+
+DROP TRIGGER IF EXISTS trg_expenses_stamp_insert ON expenses;
+CREATE TRIGGER trg_expenses_stamp_insert
+BEFORE INSERT ON expenses
+FOR EACH ROW
+EXECUTE FUNCTION set_updated_at();
+
+DROP TRIGGER IF EXISTS trg_expense_splits_stamp_insert ON expense_splits;
+CREATE TRIGGER trg_expense_splits_stamp_insert
+BEFORE INSERT ON expense_splits
+FOR EACH ROW
+EXECUTE FUNCTION set_updated_at();
+
+DROP TRIGGER IF EXISTS trg_itinerary_items_stamp_insert ON itinerary_items;
+CREATE TRIGGER trg_itinerary_items_stamp_insert
+BEFORE INSERT ON itinerary_items
+FOR EACH ROW
+EXECUTE FUNCTION set_updated_at();
+
+DROP TRIGGER IF EXISTS trg_trip_members_stamp_insert ON trip_members;
+CREATE TRIGGER trg_trip_members_stamp_insert
+BEFORE INSERT ON trip_members
+FOR EACH ROW
+EXECUTE FUNCTION set_updated_at();
+
+-- wallet_transactions had no trigger at all; the JDBC ledger writes NOW() but JPA writes don't
+DROP TRIGGER IF EXISTS trg_wallet_transactions_set_updated_at ON wallet_transactions;
+CREATE TRIGGER trg_wallet_transactions_set_updated_at
+BEFORE INSERT OR UPDATE ON wallet_transactions
+FOR EACH ROW
+EXECUTE FUNCTION set_updated_at();
+
+-- splits are read per trip by joining from expenses(trip_id); a global updated_at index made the
+-- planner walk every trip's recent splits. Key the lookup by expense instead.
+CREATE INDEX IF NOT EXISTS idx_expense_splits_expense_updated_at ON expense_splits(expense_id, updated_at);
+DROP INDEX IF EXISTS idx_expense_splits_updated_at;
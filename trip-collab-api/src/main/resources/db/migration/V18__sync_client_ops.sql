@@ -0,0 +1,20 @@
+-- V18__sync_client_ops.sql
+-- Client-generated ids of operations applied through POST /sync. A retried batch skips the
+-- operations whose client id is already here, and a later batch can refer to a row created
+-- offline by the client id of its create; entity_id is the server id that create assigned.
+-- Rows are claimed in the applying transaction, so they exist exactly when the operation committed.
+
+CREATE TABLE IF NOT EXISTS sync_client_ops (
+  trip_id     UUID NOT NULL,
+  client_id   UUID NOT NULL,
+  op_type     VARCHAR(40) NOT NULL,
+  entity_id   UUID,
+  created_at  TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+  CONSTRAINT pk_sync_client_ops PRIMARY KEY (trip_id, client_id),
+  CONSTRAINT fk_sync_client_ops_trip
+    FOREIGN KEY (trip_id) REFERENCES trips(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_sync_client_ops_created_at
+  ON sync_client_ops (created_at);
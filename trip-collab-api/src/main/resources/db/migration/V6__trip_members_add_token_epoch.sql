@@ -0,0 +1,7 @@
+-- V6__trip_members_add_token_epoch.sql
+-- token_epoch is embedded in signed member tokens; bumping it revokes every token issued before.
+
+ALTER TABLE trip_members ADD COLUMN IF NOT EXISTS token_epoch INT NOT NULL DEFAULT 0;
+
+-- revocation registry refreshes incrementally by updated_at
+CREATE INDEX IF NOT EXISTS idx_trip_members_updated_at ON trip_members(updated_at);
@@ -0,0 +1,22 @@
+-- V7__trip_members_presence_keeps_updated_at.sql
+-- last_seen_at is written in batches by the presence tracker; those writes must not bump
+-- updated_at, which is used to detect auth-relevant / syncable member changes.
+
+CREATE OR REPLACE FUNCTION trip_members_set_updated_at()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF (to_jsonb(NEW) - 'last_seen_at' - 'updated_at') IS DISTINCT FROM (to_jsonb(OLD) - 'last_seen_at' - 'updated_at') THEN
+    NEW.updated_at = now();
+  ELSE
+    NEW.updated_at = OLD.updated_at;
+  END IF;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_trip_members_set_updated_at ON trip_members;
+
+CREATE TRIGGER trg_trip_members_set_updated_at
+BEFORE UPDATE ON trip_members
+FOR EACH ROW
+EXECUTE FUNCTION trip_members_set_updated_at();
@@ -0,0 +1,41 @@
+-- V8__member_balances.sql
+-- Running paid/owed totals per member, maintained by ExpenseService in the same transaction
+-- as the expense write, so summary/settlements read O(members) rows instead of scanning
+-- all expenses and splits of the trip.
+
+CREATE TABLE IF NOT EXISTS member_balances (
+  id          BIGSERIAL PRIMARY KEY,
+  trip_id     UUID NOT NULL,
+  member_id   UUID NOT NULL,
+  paid_total  NUMERIC(14,2) NOT NULL DEFAULT 0,
+  owed_total  NUMERIC(14,2) NOT NULL DEFAULT 0,
+  created_at  TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  updated_at  TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+  CONSTRAINT fk_member_balances_trip
+    FOREIGN KEY (trip_id) REFERENCES trips(id) ON DELETE CASCADE,
+
+  CONSTRAINT fk_member_balances_member
+    FOREIGN KEY (member_id) REFERENCES trip_members(id) ON DELETE CASCADE,
+
+  CONSTRAINT uq_member_balances_trip_member
+    UNIQUE (trip_id, member_id)
+);
+
+-- backfill from existing expenses (same rules as ExpenseRepository.sumPaidByMember / ExpenseSplitRepository.sumOwedByMember)
+INSERT INTO member_balances (trip_id, member_id, paid_total, owed_total)
+SELECT x.trip_id, x.member_id, SUM(x.paid), SUM(x.owed)
+FROM (
+  SELECT e.trip_id, e.paid_by_member_id AS member_id, e.amount AS paid, 0 AS owed
+  FROM expenses e
+  WHERE e.payment_source = 'PERSONAL'
+    AND e.paid_by_member_id IS NOT NULL
+
+  UNION ALL
+
+  SELECT e.trip_id, s.member_id, 0 AS paid, s.share_amount AS owed
+  FROM expense_splits s
+  JOIN expenses e ON e.id = s.expense_id
+) x
+GROUP BY x.trip_id, x.member_id
+ON CONFLICT (trip_id, member_id) DO NOTHING;
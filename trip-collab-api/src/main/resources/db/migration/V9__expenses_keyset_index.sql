@@ -0,0 +1,8 @@
+-- V9__expenses_keyset_index.sql
+-- Keyset pagination and streaming read expenses in (expense_date, created_at, id) order per trip.
+-- The new index covers every query idx_expenses_trip_date served, so that one is dropped.
+
+CREATE INDEX IF NOT EXISTS idx_expenses_trip_date_created_id
+  ON expenses(trip_id, expense_date, created_at, id);
+
+DROP INDEX IF EXISTS idx_expenses_trip_date;
@@ -0,0 +1,96 @@
+package com.killerplay13.tripcollab.error;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A 400 response end to end: throw, catch and encode the body. ApiException with ApiErrorWriter
+ * against the ResponseStatusException and string-concatenated body they replaced. Benchmarks are
+ * not run by the test phase; run them with
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main ApiErrorBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiErrorBenchmark {
+
+	private static final String MESSAGE = "customSplits.amount must be >= 0";
+	private static final String PATH = "/api/trips/6f1c2a4e-8d3b-4c55-9a0e-2b7f1d9e3c41/expenses";
+
+	@Benchmark
+	public byte[] apiException() {
+		try {
+			throwApiException();
+			return null;
+		} catch (ApiException ex) {
+			return ApiErrorWriter.toBytes(ex.getStatus().value(), ex.getMessage(), PATH);
+		}
+	}
+
+	@Benchmark
+	public byte[] responseStatusException() {
+		try {
+			throwResponseStatusException();
+			return null;
+		} catch (ResponseStatusException ex) {
+			int status = ex.getStatusCode().value();
+			return legacyBody(status, HttpStatus.valueOf(status).getReasonPhrase(), ex.getReason(), PATH)
+					.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	// kept out of line so the JIT can't drop the throw and catch
+	@CompilerControl(CompilerControl.Mode.DONT_INLINE)
+	private static void throwApiException() {
+		throw new ApiException(HttpStatus.BAD_REQUEST, MESSAGE);
+	}
+
+	@CompilerControl(CompilerControl.Mode.DONT_INLINE)
+	private static void throwResponseStatusException() {
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, MESSAGE);
+	}
+
+	private static String legacyBody(int status, String error, String message, String path) {
+		return "{"
+				+ "\"status\":" + status + ","
+				+ "\"error\":\"" + escapeJson(error) + "\","
+				+ "\"message\":\"" + escapeJson(message) + "\","
+				+ "\"path\":\"" + escapeJson(path) + "\","
+				+ "\"timestamp\":\"" + escapeJson(Instant.now().toString()) + "\""
+				+ "}";
+	}
+
+	private static String escapeJson(String value) {
+		if (value == null) return "";
+		StringBuilder sb = new StringBuilder(value.length() + 16);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '\\' -> sb.append("\\\\");
+				case '"' -> sb.append("\\\"");
+				case '\n' -> sb.append("\\n");
+				case '\r' -> sb.append("\\r");
+				case '\t' -> sb.append("\\t");
+				default -> sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,126 @@
+package com.killerplay13.tripcollab.repo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.killerplay13.tripcollab.service.TripMemberService;
+import com.killerplay13.tripcollab.service.TripService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The substring searches must be planned as bitmap scans over the V10 trigram indexes once a trip
+ * is large, not as a scan of every row of the trip. Plans the repositories' own SQL, read from
+ * their {@code @Query} annotations, against a trip seeded with a few thousand rows.
+ */
+@SpringBootTest
+class SearchTrigramPlanTest {
+
+	private static final int ROWS = 4000;
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private TripMemberService tripMemberService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private UUID tripId;
+
+	@BeforeEach
+	void setUp() {
+		tripId = tripService.createTrip("trigram plan", null, null, null, null).trip().getId();
+		var payer = tripMemberService.create(tripId, "payer", null).member().getId();
+		jdbcTemplate.update("""
+				INSERT INTO expenses (trip_id, title, amount, paid_by_member_id)
+				SELECT ?, (ARRAY['Lunch', 'Taxi', 'Metro card', 'Coffee', 'Groceries'])[g % 5 + 1] || ' ' || g, 100, ?
+				FROM generate_series(1, ?) g
+				""", tripId, payer, ROWS);
+		jdbcTemplate.update("""
+				INSERT INTO itinerary_items (trip_id, day_date, title, location_name, note, sort_order)
+				SELECT ?, DATE '2026-05-01' + g % 10, 'Stop ' || g, 'Station ' || g, 'Bring ticket ' || g, g
+				FROM generate_series(1, ?) g
+				""", tripId, ROWS);
+		// fresh rows sit in the GIN pending list, which the planner costs as a full scan until a
+		// (auto)vacuum merges it into the index
+		jdbcTemplate.execute("VACUUM ANALYZE expenses");
+		jdbcTemplate.execute("VACUUM ANALYZE itinerary_items");
+	}
+
+	@Test
+	void expenseTitleSearchUsesTrigramIndex() throws Exception {
+		var params = new MapSqlParameterSource()
+				.addValue("tripId", tripId)
+				.addValue("q", "ramen")
+				.addValue("from", null, Types.DATE)
+				.addValue("to", null, Types.DATE)
+				.addValue("limit", 50);
+
+		var indexes = bitmapIndexes(explain(ExpenseRepository.class, "searchByTitle", params));
+
+		assertThat(indexes).contains("idx_expenses_title_trgm");
+	}
+
+	@Test
+	void itinerarySearchUsesTrigramIndexes() throws Exception {
+		var params = new MapSqlParameterSource()
+				.addValue("tripId", tripId)
+				.addValue("q", "ramen")
+				.addValue("limit", 50);
+
+		var indexes = bitmapIndexes(explain(ItineraryItemRepository.class, "searchInTrip", params));
+
+		assertThat(indexes).contains(
+				"idx_itinerary_items_title_trgm",
+				"idx_itinerary_items_location_name_trgm",
+				"idx_itinerary_items_note_trgm");
+	}
+
+	private JsonNode explain(Class<?> repository, String method, MapSqlParameterSource params) throws Exception {
+		String sql = findQuery(repository, method);
+		String json = namedJdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, params, String.class);
+		return objectMapper.readTree(json).get(0).get("Plan");
+	}
+
+	private static String findQuery(Class<?> repository, String method) {
+		for (var m : repository.getMethods()) {
+			if (m.getName().equals(method)) return m.getAnnotation(Query.class).value();
+		}
+		throw new IllegalArgumentException(repository.getSimpleName() + "." + method);
+	}
+
+	private static Set<String> bitmapIndexes(JsonNode plan) {
+		var indexes = new HashSet<String>();
+		collectBitmapIndexes(plan, indexes);
+		return indexes;
+	}
+
+	private static void collectBitmapIndexes(JsonNode node, Set<String> indexes) {
+		if ("Bitmap Index Scan".equals(node.path("Node Type").asText())) {
+			indexes.add(node.path("Index Name").asText());
+		}
+		for (var child : node.path("Plans")) {
+			collectBitmapIndexes(child, indexes);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.killerplay13.tripcollab.security;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-request route classification against the regex matching it replaced. Benchmarks are not
+ * run by the test phase; run them with
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main TripRouteTableBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripRouteTableBenchmark {
+
+	private static final Pattern INVITE = Pattern.compile("^/api/trips/([^/]+)/members$");
+	private static final Pattern MEMBER = Pattern.compile("^/api/trips/([^/]+)(/.*)?$");
+
+	@Param({"join", "expenses", "public"})
+	public String path;
+
+	private final TripRouteTable table = TripRouteTable.defaults();
+	private String method;
+	private String uri;
+
+	@Setup
+	public void setUp() {
+		String trip = UUID.randomUUID().toString();
+		switch (path) {
+			case "join" -> {
+				method = "POST";
+				uri = "/api/trips/" + trip + "/members";
+			}
+			case "expenses" -> {
+				method = "GET";
+				uri = "/api/trips/" + trip + "/expenses/" + UUID.randomUUID();
+			}
+			default -> {
+				method = "GET";
+				uri = "/actuator/health";
+			}
+		}
+	}
+
+	@Benchmark
+	public TripRouteTable.Match routeTable() {
+		return table.classify(method, uri);
+	}
+
+	@Benchmark
+	public Object regex() {
+		var invite = INVITE.matcher(uri);
+		if ("POST".equals(method) && invite.matches()) return parse(invite.group(1));
+		var member = MEMBER.matcher(uri);
+		if (member.matches()) return parse(member.group(1));
+		return null;
+	}
+
+	private static UUID parse(String s) {
+		try {
+			return UUID.fromString(s);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
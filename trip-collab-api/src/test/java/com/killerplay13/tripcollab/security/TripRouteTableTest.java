@@ -0,0 +1,79 @@
+package com.killerplay13.tripcollab.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.killerplay13.tripcollab.security.TripRouteTable.Access;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class TripRouteTableTest {
+
+	private static final UUID TRIP = UUID.fromString("3f1c2a9e-6b0d-4c8e-9a51-2d7f0e4b6c13");
+
+	private final TripRouteTable table = TripRouteTable.defaults();
+
+	@Test
+	void joiningATripNeedsTheInviteToken() {
+		var m = table.classify("POST", "/api/trips/" + TRIP + "/members");
+
+		assertThat(m.access()).isEqualTo(Access.INVITE);
+		assertThat(m.tripId()).isEqualTo(TRIP);
+	}
+
+	@Test
+	void otherMemberRoutesNeedTheMemberToken() {
+		assertThat(table.classify("GET", "/api/trips/" + TRIP + "/members").access()).isEqualTo(Access.MEMBER);
+		assertThat(table.classify("PATCH", "/api/trips/" + TRIP + "/members/" + UUID.randomUUID()).access())
+				.isEqualTo(Access.MEMBER);
+		assertThat(table.classify("POST", "/api/trips/" + TRIP + "/members/" + UUID.randomUUID() + "/token").access())
+				.isEqualTo(Access.MEMBER);
+	}
+
+	@Test
+	void methodMatchIsCaseInsensitive() {
+		assertThat(table.classify("post", "/api/trips/" + TRIP + "/members").access()).isEqualTo(Access.INVITE);
+	}
+
+	@Test
+	void trailingSlashIsNotTheInviteRoute() {
+		var m = table.classify("POST", "/api/trips/" + TRIP + "/members/");
+
+		assertThat(m.access()).isEqualTo(Access.MEMBER);
+		assertThat(m.tripId()).isEqualTo(TRIP);
+	}
+
+	@Test
+	void malformedTripIdStillNeedsAToken() {
+		var m = table.classify("GET", "/api/trips/not-a-uuid/expenses");
+
+		assertThat(m.access()).isEqualTo(Access.MEMBER);
+		assertThat(m.tripId()).isNull();
+	}
+
+	@Test
+	void tripRootItselfIsAMemberRoute() {
+		var m = table.classify("GET", "/api/trips/" + TRIP);
+
+		assertThat(m.access()).isEqualTo(Access.MEMBER);
+		assertThat(m.tripId()).isEqualTo(TRIP);
+	}
+
+	@Test
+	void preflightIsPublic() {
+		assertThat(table.classify("OPTIONS", "/api/trips/" + TRIP + "/expenses")).isEqualTo(TripRouteTable.Match.PUBLIC);
+		assertThat(table.classify("OPTIONS", "/")).isEqualTo(TripRouteTable.Match.PUBLIC);
+	}
+
+	@Test
+	void creatingATripIsPublic() {
+		assertThat(table.classify("POST", "/api/trips").access()).isEqualTo(Access.PUBLIC);
+		assertThat(table.classify("GET", "/api/trips").access()).isEqualTo(Access.PUBLIC);
+	}
+
+	@Test
+	void unrelatedPathsArePublic() {
+		assertThat(table.classify("GET", "/actuator/health")).isEqualTo(TripRouteTable.Match.PUBLIC);
+		assertThat(table.classify("GET", "/api/admin/stats")).isEqualTo(TripRouteTable.Match.PUBLIC);
+		assertThat(table.classify("GET", "/api/tripsx/" + TRIP)).isEqualTo(TripRouteTable.Match.PUBLIC);
+	}
+}
@@ -0,0 +1,86 @@
+package com.killerplay13.tripcollab.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Token hashing and generation against the getInstance / String.format / single SecureRandom
+ * code they replaced, at 1 to 64 threads. Benchmarks are not run by the test phase; run the
+ * thread sweep with
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * -Dexec.args="-cp %classpath com.killerplay13.tripcollab.security.TripTokenUtilBenchmark"}
+ * (JMH options such as {@code -wi 1 -i 2} may follow the class name).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripTokenUtilBenchmark {
+
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+	private static final String TOKEN = TripTokenUtil.generateToken();
+
+	// shared by every benchmark thread, like the old static field
+	private final SecureRandom legacyRandom = new SecureRandom();
+
+	@Benchmark
+	public String sha256Hex() {
+		return TripTokenUtil.sha256Hex(TOKEN);
+	}
+
+	@Benchmark
+	public String legacySha256Hex() throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		return legacyHex(md.digest(TOKEN.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Benchmark
+	public String generateToken() {
+		return TripTokenUtil.generateToken();
+	}
+
+	@Benchmark
+	public String legacyGenerateToken() {
+		byte[] bytes = new byte[32];
+		legacyRandom.nextBytes(bytes);
+		return legacyHex(bytes);
+	}
+
+	private static String legacyHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		var cli = new CommandLineOptions(args);
+		for (int threads : THREADS) {
+			new Runner(new OptionsBuilder()
+					.parent(cli)
+					.include(TripTokenUtilBenchmark.class.getName())
+					.threads(threads)
+					.build()).run();
+		}
+	}
+}
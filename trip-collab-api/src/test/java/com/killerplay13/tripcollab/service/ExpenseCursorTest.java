@@ -0,0 +1,55 @@
+package com.killerplay13.tripcollab.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.killerplay13.tripcollab.error.ApiException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpStatus;
+
+class ExpenseCursorTest {
+
+	@Test
+	void roundTrips() {
+		var cursor = new ExpenseCursor(
+				LocalDate.of(2026, 3, 14), Instant.parse("2026-03-14T09:26:53.589793Z"), UUID.randomUUID());
+
+		String encoded = cursor.encode();
+
+		assertThat(encoded).doesNotContain("=", "+", "/");
+		assertThat(ExpenseCursor.decode(encoded)).isEqualTo(cursor);
+		assertThat(ExpenseCursor.decode("  " + encoded + " ")).isEqualTo(cursor);
+	}
+
+	@Test
+	void missingCursorMeansFirstPage() {
+		assertThat(ExpenseCursor.decode(null)).isNull();
+		assertThat(ExpenseCursor.decode("")).isNull();
+		assertThat(ExpenseCursor.decode("   ")).isNull();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"not base64!",
+			"2026-03-14|2026-03-14T09:26:53Z",
+			"2026-03-14|2026-03-14T09:26:53Z|" + "00000000-0000-0000-0000-000000000001|extra",
+			"2026-13-01|2026-03-14T09:26:53Z|00000000-0000-0000-0000-000000000001",
+			"2026-03-14|yesterday|00000000-0000-0000-0000-000000000001",
+			"2026-03-14|2026-03-14T09:26:53Z|not-a-uuid"
+	})
+	void rejectsMalformedCursors(String raw) {
+		String cursor = raw.equals("not base64!")
+				? raw
+				: Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> ExpenseCursor.decode(cursor))
+				.isInstanceOfSatisfying(ApiException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+	}
+}
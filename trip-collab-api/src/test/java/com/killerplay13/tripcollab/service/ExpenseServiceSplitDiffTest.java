@@ -0,0 +1,127 @@
+package com.killerplay13.tripcollab.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.killerplay13.tripcollab.domain.ExpenseEntity;
+import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
+import com.killerplay13.tripcollab.repo.ExpenseRepository;
+import com.killerplay13.tripcollab.repo.ExpenseSplitRepository;
+import com.killerplay13.tripcollab.repo.MemberBalanceRepository;
+import com.killerplay13.tripcollab.repo.TripMemberRepository;
+import com.killerplay13.tripcollab.repo.TripRepository;
+import com.killerplay13.tripcollab.service.ExpenseService.ExpensePatch;
+import com.killerplay13.tripcollab.service.ExpenseService.MemberAmount;
+import com.killerplay13.tripcollab.service.ExpenseService.SplitMethod;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ExpenseServiceSplitDiffTest {
+
+	private static final UUID TRIP = UUID.fromString("00000000-0000-0000-0000-0000000000aa");
+	private static final UUID EXPENSE = UUID.fromString("00000000-0000-0000-0000-0000000000bb");
+	private static final UUID A = UUID.fromString("00000000-0000-0000-0000-000000000001");
+	private static final UUID B = UUID.fromString("00000000-0000-0000-0000-000000000002");
+	private static final UUID C = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+	@Mock ExpenseRepository expenseRepository;
+	@Mock ExpenseSplitRepository splitRepository;
+	@Mock TripMemberRepository tripMemberRepository;
+	@Mock TripRepository tripRepository;
+	@Mock WalletCommandService walletCommandService;
+	@Mock MemberBalanceRepository memberBalanceRepository;
+	@Mock MemberBalanceService memberBalanceService;
+	@Mock TripVersionService tripVersionService;
+
+	@Captor ArgumentCaptor<Collection<UUID>> deletedIds;
+	@Captor ArgumentCaptor<List<ExpenseSplitEntity>> inserted;
+
+	private ExpenseService service;
+	private ExpenseSplitEntity splitA;
+	private ExpenseSplitEntity splitB;
+
+	@BeforeEach
+	void setUp() {
+		service = new ExpenseService(
+				expenseRepository, splitRepository, tripMemberRepository, tripRepository, walletCommandService,
+				memberBalanceRepository, memberBalanceService, List.of(), tripVersionService);
+
+		var expense = ExpenseEntity.builder()
+				.id(EXPENSE).tripId(TRIP).title("Dinner").amount(new BigDecimal("100.00"))
+				.paidByMemberId(A).paymentSource("PERSONAL").build();
+		splitA = split(A, "50.00");
+		splitB = split(B, "50.00");
+		when(expenseRepository.findByIdAndTripId(EXPENSE, TRIP)).thenReturn(Optional.of(expense));
+		when(splitRepository.findByExpenseId(EXPENSE)).thenReturn(List.of(splitA, splitB));
+		when(tripMemberRepository.findActiveIdsByTripIdAndIdIn(eq(TRIP), anyCollection())).thenReturn(Set.of(A, B, C));
+	}
+
+	@Test
+	void unchangedSharesAreNotWritten() {
+		var result = service.patch(TRIP, EXPENSE, splits(SplitMethod.EQUAL, List.of(B, A), null));
+
+		assertThat(result.splits()).containsExactlyInAnyOrder(splitA, splitB);
+		assertThat(splitA.getShareAmount()).isEqualByComparingTo("50.00");
+		verify(splitRepository, never()).deleteAllByIdIn(anyCollection());
+		verify(splitRepository, never()).saveAll(anyList());
+	}
+
+	@Test
+	void changedSharesAreUpdatedInPlace() {
+		var custom = List.of(new MemberAmount(A, new BigDecimal("70.00")), new MemberAmount(B, new BigDecimal("30.00")));
+
+		var result = service.patch(TRIP, EXPENSE, splits(SplitMethod.CUSTOM_AMOUNT, null, custom));
+
+		assertThat(result.splits()).containsExactlyInAnyOrder(splitA, splitB);
+		assertThat(splitA.getShareAmount()).isEqualByComparingTo("70.00");
+		assertThat(splitB.getShareAmount()).isEqualByComparingTo("30.00");
+		verify(splitRepository, never()).deleteAllByIdIn(anyCollection());
+		verify(splitRepository, never()).saveAll(anyList());
+	}
+
+	@Test
+	void newMembersAreInsertedAndDroppedMembersDeleted() {
+		var result = service.patch(TRIP, EXPENSE, splits(SplitMethod.EQUAL, List.of(A, C), null));
+
+		verify(splitRepository).deleteAllByIdIn(deletedIds.capture());
+		assertThat(deletedIds.getValue()).containsExactly(splitB.getId());
+
+		verify(splitRepository).saveAll(inserted.capture());
+		assertThat(inserted.getValue()).singleElement().satisfies(s -> {
+			assertThat(s.getMemberId()).isEqualTo(C);
+			assertThat(s.getExpenseId()).isEqualTo(EXPENSE);
+			assertThat(s.getShareAmount()).isEqualByComparingTo("50.00");
+		});
+
+		assertThat(result.splits()).hasSize(2).contains(splitA);
+		assertThat(splitA.getShareAmount()).isEqualByComparingTo("50.00");
+		verify(memberBalanceService).apply(eq(TRIP), any(), any());
+	}
+
+	private static ExpensePatch splits(SplitMethod method, List<UUID> participants, List<MemberAmount> custom) {
+		return new ExpensePatch(null, null, null, null, null, null, method, participants, custom, null);
+	}
+
+	private static ExpenseSplitEntity split(UUID member, String share) {
+		return ExpenseSplitEntity.builder()
+				.id(UUID.randomUUID()).expenseId(EXPENSE).memberId(member).shareAmount(new BigDecimal(share)).build();
+	}
+}
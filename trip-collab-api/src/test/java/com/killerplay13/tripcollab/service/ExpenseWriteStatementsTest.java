@@ -0,0 +1,152 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.domain.ExpenseSplitEntity;
+import com.killerplay13.tripcollab.service.ExpenseService.SplitMethod;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statements an expense write sends, as seen by Hibernate: Hibernate prepares a statement once per
+ * JDBC batch, so each prepared statement below is one round trip. The service result is what the
+ * controller renders, so no split may be read back after it is written.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ExpenseWriteStatementsTest {
+
+	private static final int MEMBERS = 12;
+
+	@TestConfiguration
+	static class Config {
+		@Bean
+		RecordingInspector recordingInspector() {
+			return new RecordingInspector();
+		}
+
+		@Bean
+		HibernatePropertiesCustomizer statementInspector(RecordingInspector inspector) {
+			return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+		}
+	}
+
+	static class RecordingInspector implements StatementInspector {
+		final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public String inspect(String sql) {
+			statements.add(sql);
+			return sql;
+		}
+	}
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private TripMemberService tripMemberService;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private RecordingInspector inspector;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+	private UUID tripId;
+	private List<UUID> members;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		tripId = tripService.createTrip("statement count", null, null, null, null).trip().getId();
+		members = new ArrayList<>();
+		for (int i = 0; i < MEMBERS; i++) {
+			members.add(tripMemberService.create(tripId, "member " + i, null).member().getId());
+		}
+	}
+
+	@Test
+	void createInsertsExpenseOnceAndSplitsInOneBatch() {
+		reset();
+
+		var result = create(new BigDecimal("120.00"));
+
+		assertThat(result.splits()).hasSize(MEMBERS);
+		assertThat(count("insert into expenses ")).isEqualTo(1);
+		assertThat(count("insert into expense_splits ")).isEqualTo(1);
+		assertThat(statistics.getEntityStatistics(ExpenseSplitEntity.class.getName()).getInsertCount())
+				.isEqualTo(MEMBERS);
+		assertThat(selectsOnSplits()).isZero();
+	}
+
+	@Test
+	void updateWritesExpenseOnceAndSplitsInOneBatch() {
+		var created = create(new BigDecimal("120.00"));
+		reset();
+
+		var result = expenseService.update(tripId, created.expense().getId(), "Dinner", new BigDecimal("240.00"), "TWD",
+				members.get(0), null, null, SplitMethod.EQUAL, members, null, null, null, null, null);
+
+		assertThat(result.splits()).hasSize(MEMBERS)
+				.allSatisfy(s -> assertThat(s.getShareAmount()).isEqualByComparingTo("20.00"));
+		assertThat(count("update expenses ")).isEqualTo(1);
+		assertThat(count("update expense_splits ")).isEqualTo(1);
+		assertThat(statistics.getEntityStatistics(ExpenseSplitEntity.class.getName()).getUpdateCount())
+				.isEqualTo(MEMBERS);
+		// the current splits are read once, to diff against; nothing is re-read after the write
+		assertThat(selectsOnSplits()).isEqualTo(1);
+		assertThat(indexOf("select", "expense_splits")).isLessThan(indexOf("update expense_splits ", ""));
+	}
+
+	private ExpenseService.ExpenseWithSplits create(BigDecimal amount) {
+		return expenseService.create(tripId, "Dinner", amount, "TWD", null, members.get(0), null, null,
+				members.get(0), SplitMethod.EQUAL, members, null, null, null, null, null);
+	}
+
+	private void reset() {
+		inspector.statements.clear();
+		statistics.clear();
+	}
+
+	private long count(String prefix) {
+		return snapshot().stream().filter(sql -> sql.startsWith(prefix)).count();
+	}
+
+	private long selectsOnSplits() {
+		return snapshot().stream().filter(sql -> sql.startsWith("select") && sql.contains("expense_splits")).count();
+	}
+
+	private int indexOf(String prefix, String table) {
+		var statements = snapshot();
+		for (int i = 0; i < statements.size(); i++) {
+			if (statements.get(i).startsWith(prefix) && statements.get(i).contains(table)) return i;
+		}
+		return -1;
+	}
+
+	private List<String> snapshot() {
+		synchronized (inspector.statements) {
+			return new ArrayList<>(inspector.statements);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.wallet.dto.WalletBatchRequest;
+import com.killerplay13.tripcollab.wallet.dto.WalletDepositRequest;
+import com.killerplay13.tripcollab.wallet.dto.WalletExchangeLeg;
+import com.killerplay13.tripcollab.wallet.dto.WalletExchangeRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A batch nets its deposits into one balance upsert per currency; the stored base totals must
+ * still equal the sum of the rounded ledger rows, which is what the reconciliation recomputes.
+ */
+@SpringBootTest
+class WalletBatchReconciliationTest {
+
+	// 10.01 * 0.2133333337 has 12 decimals; each ledger row keeps 6
+	private static final BigDecimal RATE = new BigDecimal("0.2133333337");
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private WalletCommandService walletCommandService;
+
+	@Autowired
+	private WalletReconciliationService reconciliationService;
+
+	@Test
+	void multiDepositBatchLeavesNoDrift() throws InterruptedException {
+		var trip = tripService.createTrip("batch reconcile", null, null, null, null).trip();
+		var deposit = new WalletDepositRequest(null, new BigDecimal("10.01"), "JPY", RATE, "test", null);
+		var exchange = new WalletExchangeRequest(null,
+				new WalletExchangeLeg("JPY", new BigDecimal("7.77"), RATE),
+				new WalletExchangeLeg("USD", new BigDecimal("0.05"), new BigDecimal("32.1234567")),
+				"test", null);
+
+		var response = walletCommandService.batch(trip.getId(), null,
+				new WalletBatchRequest(Collections.nCopies(7, deposit), List.of(exchange)));
+
+		assertThat(reconciliationService.start(false)).isTrue();
+		long deadline = System.currentTimeMillis() + 30_000;
+		while (reconciliationService.progress().running() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+
+		var progress = reconciliationService.progress();
+		assertThat(progress.running()).isFalse();
+		assertThat(progress.failedChunks()).isZero();
+		assertThat(progress.drift()).noneMatch(d -> d.walletId().equals(response.walletId()));
+	}
+}
@@ -0,0 +1,253 @@
+package com.killerplay13.tripcollab.service;
+
+import com.killerplay13.tripcollab.repo.WalletLedgerJdbcRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent deposits and wallet expenses on one wallet, through the single-statement commands and
+ * through the find / insert / upsert / save sequence they replaced, which ended every command with
+ * an UPDATE of the trip's shared_wallets row. Each thread spreads its writes over four currencies,
+ * so the old path queues on the wallet row while the new one only meets on a balance row.
+ * Throughput and the backends sampled waiting on a lock are logged per path; both paths must leave
+ * the balances every command accounted for.
+ */
+@SpringBootTest
+class WalletWriteContentionTest {
+
+	private static final Logger log = LoggerFactory.getLogger(WalletWriteContentionTest.class);
+
+	private static final int THREADS = 8;
+	private static final int OPS_PER_THREAD = 50;
+	private static final List<String> CURRENCIES = List.of("JPY", "USD", "EUR", "KRW");
+	private static final BigDecimal SEED = new BigDecimal("1000000.00");
+	private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+	private static final String LOCK_WAITS_SQL = """
+			SELECT COALESCE(wait_event, '?') FROM pg_stat_activity
+			WHERE datname = current_database() AND wait_event_type = 'Lock' AND pid <> pg_backend_pid()
+			""";
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private WalletLedgerJdbcRepository walletLedgerRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private final List<UUID> trips = new ArrayList<>();
+
+	interface WalletPath {
+		boolean deposit(UUID tripId, String currency);
+
+		boolean expense(UUID tripId, UUID expenseId, String currency);
+	}
+
+	record RunResult(double opsPerSecond, long failures, Map<String, Integer> lockWaits) {}
+
+	@AfterEach
+	void tearDown() {
+		for (var tripId : trips) {
+			// ledger rows first: dropping the expenses would null their expense_id, which EXPENSE rows forbid
+			jdbcTemplate.update("""
+					DELETE FROM wallet_transactions
+					WHERE wallet_id = (SELECT id FROM shared_wallets WHERE trip_id = ?)
+					""", tripId);
+			jdbcTemplate.update("DELETE FROM trips WHERE id = ?", tripId);
+		}
+	}
+
+	@Test
+	void concurrentDepositsAndExpensesOnOneWallet() throws Exception {
+		var singleStatement = new SingleStatementPath();
+		var findUpsertSave = new FindUpsertSavePath();
+
+		// first round warms the JIT, the pool and the plan cache; only the second is reported
+		run(singleStatement);
+		run(findUpsertSave);
+		var after = run(singleStatement);
+		var before = run(findUpsertSave);
+
+		log.info("wallet writes, {} threads x {} ops: single statement {} ops/s, lock waits {}; "
+						+ "find/upsert/save {} ops/s, lock waits {}",
+				THREADS, OPS_PER_THREAD,
+				Math.round(after.opsPerSecond()), after.lockWaits(),
+				Math.round(before.opsPerSecond()), before.lockWaits());
+		assertThat(after.failures()).isZero();
+		assertThat(before.failures()).isZero();
+	}
+
+	private RunResult run(WalletPath path) throws Exception {
+		var tripId = tripService.createTrip("wallet contention", null, null, null, null).trip().getId();
+		trips.add(tripId);
+		for (var currency : CURRENCIES) {
+			transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.deposit(
+					tripId, currency, SEED, BigDecimal.ONE, SEED, null, "seed", null));
+		}
+		var expenseIds = jdbcTemplate.queryForList("""
+				INSERT INTO expenses (trip_id, title, amount, payment_source)
+				SELECT ?, 'Wallet expense ' || g, 1.25, 'SHARED_WALLET'
+				FROM generate_series(1, ?) g
+				RETURNING id
+				""", UUID.class, tripId, THREADS * OPS_PER_THREAD);
+
+		var lockWaits = new ConcurrentHashMap<String, Integer>();
+		var sampling = new AtomicBoolean(true);
+		var start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+		try {
+			var sampler = pool.submit(() -> {
+				while (sampling.get()) {
+					for (var event : jdbcTemplate.queryForList(LOCK_WAITS_SQL, String.class)) {
+						lockWaits.merge(event, 1, Integer::sum);
+					}
+					Thread.sleep(1);
+				}
+				return null;
+			});
+
+			var workers = new ArrayList<Future<Long>>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				workers.add(pool.submit(() -> {
+					start.await();
+					long failures = 0;
+					for (int i = 0; i < OPS_PER_THREAD; i++) {
+						String currency = CURRENCIES.get((thread + i) % CURRENCIES.size());
+						boolean ok = i % 2 == 0
+								? path.deposit(tripId, currency)
+								: path.expense(tripId, expenseIds.get(thread * OPS_PER_THREAD + i), currency);
+						if (!ok) failures++;
+					}
+					return failures;
+				}));
+			}
+
+			long startNanos = System.nanoTime();
+			start.countDown();
+			long failures = 0;
+			for (var worker : workers) failures += worker.get();
+			long elapsedNanos = System.nanoTime() - startNanos;
+			sampling.set(false);
+			sampler.get();
+
+			assertBalances(tripId);
+			return new RunResult(THREADS * OPS_PER_THREAD * 1e9 / elapsedNanos, failures, new TreeMap<>(lockWaits));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// deposits and expenses alternate, so every currency nets to its seed
+	private void assertBalances(UUID tripId) {
+		var balances = jdbcTemplate.queryForList("""
+				SELECT b.balance FROM wallet_balances b
+				JOIN shared_wallets w ON w.id = b.wallet_id
+				WHERE w.trip_id = ?
+				""", BigDecimal.class, tripId);
+		assertThat(balances).hasSize(CURRENCIES.size())
+				.allSatisfy(balance -> assertThat(balance).isEqualByComparingTo(SEED));
+	}
+
+	private class SingleStatementPath implements WalletPath {
+		@Override
+		public boolean deposit(UUID tripId, String currency) {
+			return Boolean.TRUE.equals(transactionTemplate.execute(status -> !walletLedgerRepository.deposit(
+					tripId, currency, AMOUNT, BigDecimal.ONE, AMOUNT, null, "bench", null).isEmpty()));
+		}
+
+		@Override
+		public boolean expense(UUID tripId, UUID expenseId, String currency) {
+			return Boolean.TRUE.equals(transactionTemplate.execute(status -> !walletLedgerRepository.recordExpense(
+					tripId, expenseId, currency, AMOUNT, BigDecimal.ONE, AMOUNT, null, "bench", null).isEmpty()));
+		}
+	}
+
+	/** The statements each command sent before the single-statement rewrite, in the same order. */
+	private class FindUpsertSavePath implements WalletPath {
+		@Override
+		public boolean deposit(UUID tripId, String currency) {
+			return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+				Long walletId = findWallet(tripId);
+				insertRow(walletId, "DEPOSIT", "IN", currency, null);
+				jdbcTemplate.update("""
+						INSERT INTO wallet_balances (wallet_id, currency, balance, created_at, updated_at)
+						VALUES (?, ?, ?, NOW(), NOW())
+						ON CONFLICT (wallet_id, currency)
+						DO UPDATE SET
+						  balance = wallet_balances.balance + EXCLUDED.balance,
+						  updated_at = NOW()
+						""", walletId, currency, AMOUNT);
+				touchWallet(walletId);
+				return true;
+			}));
+		}
+
+		@Override
+		public boolean expense(UUID tripId, UUID expenseId, String currency) {
+			return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+				Long walletId = findWallet(tripId);
+				jdbcTemplate.queryForObject(
+						"SELECT EXISTS (SELECT 1 FROM wallet_transactions WHERE expense_id = ? AND txn_type = 'EXPENSE')",
+						Boolean.class, expenseId);
+				int debited = jdbcTemplate.update("""
+						UPDATE wallet_balances
+						SET balance = balance - ?,
+						    updated_at = NOW()
+						WHERE wallet_id = ?
+						  AND currency = ?
+						  AND balance >= ?
+						""", AMOUNT, walletId, currency, AMOUNT);
+				if (debited == 0) return false;
+				insertRow(walletId, "EXPENSE", "OUT", currency, expenseId);
+				touchWallet(walletId);
+				return true;
+			}));
+		}
+
+		private Long findWallet(UUID tripId) {
+			return jdbcTemplate.queryForObject("SELECT id FROM shared_wallets WHERE trip_id = ?", Long.class, tripId);
+		}
+
+		private void insertRow(Long walletId, String type, String direction, String currency, UUID expenseId) {
+			jdbcTemplate.update("""
+					INSERT INTO wallet_transactions (
+					  wallet_id, txn_type, direction, original_amount, original_currency, fx_rate,
+					  computed_base_amount, expense_id, fx_source, created_at, updated_at
+					)
+					VALUES (?, ?, ?, ?, ?, 1, ?, ?, 'bench', NOW(), NOW())
+					""", walletId, type, direction, AMOUNT, currency, AMOUNT, expenseId);
+		}
+
+		// sharedWalletRepository.save(wallet) after setUpdatedAt: the row lock every command queued on
+		private void touchWallet(Long walletId) {
+			jdbcTemplate.update("UPDATE shared_wallets SET updated_at = NOW() WHERE id = ?", walletId);
+		}
+	}
+}
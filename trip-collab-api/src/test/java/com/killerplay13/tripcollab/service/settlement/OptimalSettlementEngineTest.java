@@ -0,0 +1,97 @@
+package com.killerplay13.tripcollab.service.settlement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.killerplay13.tripcollab.service.settlement.SettlementEngine.Transfer;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class OptimalSettlementEngineTest {
+
+	private final OptimalSettlementEngine optimal = new OptimalSettlementEngine(16, 16);
+	private final GreedySettlementEngine greedy = new GreedySettlementEngine();
+
+	@Test
+	void settlesEachZeroSumGroupSeparately() {
+		// {0,3} and {1,2} cancel out: two transfers, where pairing in index order needs three
+		long[] nets = {-500, -300, 300, 500};
+
+		List<Transfer> transfers = optimal.settle(nets);
+
+		assertThat(transfers).containsExactlyInAnyOrder(new Transfer(0, 3, 500), new Transfer(1, 2, 300));
+		assertThat(greedy.settle(nets)).hasSize(3);
+	}
+
+	@Test
+	void neverNeedsMoreTransfersThanGreedy() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			long[] nets = randomNets(random, 2 + random.nextInt(11));
+
+			List<Transfer> transfers = optimal.settle(nets);
+
+			assertSettles(nets, transfers);
+			assertThat(transfers.size()).isLessThanOrEqualTo(greedy.settle(nets).size());
+		}
+	}
+
+	@Test
+	void fallsBackAboveTheExactLimit() {
+		OptimalSettlementEngine capped = new OptimalSettlementEngine(4, 0);
+		long[] nets = {-700, -200, 200, -100, 300, 500, 0};
+
+		List<Transfer> transfers = capped.settle(nets);
+
+		assertSettles(nets, transfers);
+		assertThat(transfers).contains(new Transfer(1, 2, 200));
+		assertThat(transfers.size()).isLessThanOrEqualTo(greedy.settle(nets).size());
+	}
+
+	@Test
+	void largeTripsStayOnTheHeuristic() {
+		long[] nets = randomNets(new Random(7), 500);
+
+		assertSettles(nets, optimal.settle(nets));
+	}
+
+	@Test
+	void repeatedNetsReuseTheResult() {
+		long[] nets = {-500, -300, 300, 500};
+
+		List<Transfer> first = optimal.settle(nets);
+		nets[0] = -400;
+		nets[3] = 400;
+
+		assertThat(optimal.settle(new long[]{-500, -300, 300, 500})).isSameAs(first);
+		assertSettles(nets, optimal.settle(nets));
+	}
+
+	@Test
+	void nothingToSettle() {
+		assertThat(optimal.settle(new long[]{0, 0, 0})).isEmpty();
+		assertThat(optimal.settle(new long[0])).isEmpty();
+	}
+
+	static long[] randomNets(Random random, int members) {
+		long[] nets = new long[members];
+		long sum = 0;
+		for (int k = 0; k < members - 1; k++) {
+			// small amounts so zero-sum subgroups actually occur
+			nets[k] = (random.nextInt(21) - 10) * 100L;
+			sum += nets[k];
+		}
+		nets[members - 1] = -sum;
+		return nets;
+	}
+
+	private static void assertSettles(long[] nets, List<Transfer> transfers) {
+		long[] after = nets.clone();
+		for (Transfer t : transfers) {
+			assertThat(t.cents()).isPositive();
+			after[t.from()] += t.cents();
+			after[t.to()] -= t.cents();
+		}
+		assertThat(after).containsOnly(0L);
+	}
+}
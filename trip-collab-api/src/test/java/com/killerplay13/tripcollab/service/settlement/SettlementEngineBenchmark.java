@@ -0,0 +1,58 @@
+package com.killerplay13.tripcollab.service.settlement;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One GET /settlements worth of engine work. Trips above the exact limit (16) measure the
+ * heuristic fallback; "cached" is the optimal engine answering an unchanged trip. Run with
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main SettlementEngineBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SettlementEngineBenchmark {
+
+	@Param({"5", "16", "50", "500"})
+	public int members;
+
+	private final GreedySettlementEngine greedy = new GreedySettlementEngine();
+	private final OptimalSettlementEngine optimal = new OptimalSettlementEngine(16, 0);
+	private final OptimalSettlementEngine cached = new OptimalSettlementEngine(16, 256);
+	private long[] nets;
+
+	@Setup
+	public void setUp() {
+		nets = OptimalSettlementEngineTest.randomNets(new Random(members), members);
+	}
+
+	@Benchmark
+	public Object greedy() {
+		return greedy.settle(nets);
+	}
+
+	@Benchmark
+	public Object optimal() {
+		return optimal.settle(nets);
+	}
+
+	@Benchmark
+	public Object optimalCached() {
+		return cached.settle(nets);
+	}
+}
@@ -0,0 +1,120 @@
+package com.killerplay13.tripcollab.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class BoundedTtlCacheTest {
+
+	@Test
+	void returnsValueUntilTtlExpires() throws InterruptedException {
+		BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, Duration.ofMillis(50));
+		cache.put("a", "1");
+
+		assertThat(cache.get("a")).isEqualTo("1");
+		Thread.sleep(80);
+		assertThat(cache.get("a")).isNull();
+
+		BoundedTtlCache.Stats stats = cache.stats();
+		assertThat(stats.hits()).isEqualTo(1);
+		assertThat(stats.misses()).isEqualTo(1);
+		assertThat(stats.evictions()).isEqualTo(1);
+		assertThat(stats.size()).isZero();
+	}
+
+	@Test
+	void putRefreshesTtl() throws InterruptedException {
+		BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, Duration.ofMillis(150));
+		cache.put("a", "1");
+		Thread.sleep(100);
+		cache.put("a", "2");
+		Thread.sleep(100);
+
+		assertThat(cache.get("a")).isEqualTo("2");
+	}
+
+	@Test
+	void neverGrowsPastMaxSize() {
+		BoundedTtlCache<Integer, Integer> cache = new BoundedTtlCache<>(10, Duration.ofMinutes(1));
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+			assertThat(cache.stats().size()).isLessThanOrEqualTo(10);
+		}
+		assertThat(cache.stats().evictions()).isPositive();
+		assertThat(cache.get(99)).isEqualTo(99);
+	}
+
+	@Test
+	void sweepDropsExpiredEntriesBeforeLiveOnes() throws InterruptedException {
+		BoundedTtlCache<Integer, Integer> cache = new BoundedTtlCache<>(4, Duration.ofMillis(50));
+		cache.put(1, 1);
+		cache.put(2, 2);
+		Thread.sleep(80);
+		cache.put(3, 3);
+		cache.put(4, 4);
+		cache.put(5, 5);
+
+		assertThat(cache.stats().evictions()).isEqualTo(2);
+		assertThat(cache.get(3)).isEqualTo(3);
+		assertThat(cache.get(4)).isEqualTo(4);
+		assertThat(cache.get(5)).isEqualTo(5);
+	}
+
+	@Test
+	void overwritingAKeyAtCapacityDoesNotEvict() {
+		BoundedTtlCache<Integer, Integer> cache = new BoundedTtlCache<>(2, Duration.ofMinutes(1));
+		cache.put(1, 1);
+		cache.put(2, 2);
+		cache.put(2, 20);
+
+		assertThat(cache.stats().evictions()).isZero();
+		assertThat(cache.get(1)).isEqualTo(1);
+		assertThat(cache.get(2)).isEqualTo(20);
+	}
+
+	@Test
+	void invalidateIfDropsMatchingValues() {
+		BoundedTtlCache<String, Integer> cache = new BoundedTtlCache<>(10, Duration.ofMinutes(1));
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("c", 1);
+		cache.invalidateIf(v -> v == 1);
+
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.get("b")).isEqualTo(2);
+		assertThat(cache.get("c")).isNull();
+	}
+
+	@Test
+	void getOrCreateCreatesOnceAndKeepsAValueInUseAlive() throws InterruptedException {
+		BoundedTtlCache<String, Object> cache = new BoundedTtlCache<>(10, Duration.ofMillis(150));
+		Object first = cache.getOrCreate("a", k -> new Object());
+		for (int i = 0; i < 4; i++) {
+			Thread.sleep(60);
+			assertThat(cache.getOrCreate("a", k -> new Object())).isSameAs(first);
+		}
+
+		Thread.sleep(200);
+		assertThat(cache.getOrCreate("a", k -> new Object())).isNotSameAs(first);
+		assertThat(cache.stats().evictions()).isEqualTo(1);
+	}
+
+	@Test
+	void getOrCreateRespectsMaxSize() {
+		BoundedTtlCache<Integer, Integer> cache = new BoundedTtlCache<>(10, Duration.ofMinutes(1));
+		for (int i = 0; i < 100; i++) {
+			cache.getOrCreate(i, k -> k);
+		}
+		assertThat(cache.stats().size()).isLessThanOrEqualTo(10);
+	}
+
+	@Test
+	void rejectsNonPositiveBounds() {
+		assertThatThrownBy(() -> new BoundedTtlCache<>(0, Duration.ofSeconds(1)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new BoundedTtlCache<>(1, Duration.ZERO))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}